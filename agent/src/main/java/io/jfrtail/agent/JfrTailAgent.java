@@ -1,12 +1,14 @@
 package io.jfrtail.agent;
 
 import io.jfrtail.agent.api.JfrTailMonitor;
+import io.jfrtail.common.CollectorProfile;
 
 import java.lang.instrument.Instrumentation;
 
 public class JfrTailAgent {
     private static int tcpPort = 7099;
     private static int webPort = 8080;
+    private static CollectorProfile profile = CollectorProfile.BALANCED;
 
     public static void premain(String args, Instrumentation inst) {
         start(args);
@@ -20,7 +22,7 @@ public class JfrTailAgent {
         parseArgs(args);
         try {
             System.out.println("[JfrTailAgent] Initializing Monitor...");
-            JfrTailMonitor.getInstance().start(webPort, tcpPort);
+            JfrTailMonitor.getInstance().start(webPort, tcpPort, null, true, true, profile);
         } catch (Exception e) {
             System.err.println("[JfrTailAgent] Failed to start: " + e.getMessage());
             e.printStackTrace();
@@ -32,13 +34,26 @@ public class JfrTailAgent {
             for (String arg : args.split(";")) {
                 String[] parts = arg.split("=");
                 if (parts.length == 2) {
-                    if ("port".equals(parts[0])) {
-                        tcpPort = Integer.parseInt(parts[1]);
-                    } else if ("webPort".equals(parts[0])) {
-                        webPort = Integer.parseInt(parts[1]);
+                    // A bad value must not stop the application: keep the default and go on
+                    try {
+                        parseArg(parts[0], parts[1]);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("[JfrTailAgent] Ignoring invalid argument " + arg + ": " + e.getMessage());
                     }
                 }
             }
         }
     }
+
+    private static void parseArg(String name, String value) {
+        if ("port".equals(name)) {
+            tcpPort = Integer.parseInt(value);
+        } else if ("webPort".equals(name)) {
+            webPort = Integer.parseInt(value);
+        } else if ("profile".equals(name)) {
+            profile = CollectorProfile.valueOf(value.toUpperCase());
+        } else if (!JfrTailMonitor.getInstance().getConfig().apply(name, value)) {
+            System.err.println("[JfrTailAgent] Ignoring unknown argument: " + name);
+        }
+    }
 }
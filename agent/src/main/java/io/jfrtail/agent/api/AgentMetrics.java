@@ -0,0 +1,126 @@
+package io.jfrtail.agent.api;
+
+import io.jfrtail.agent.pipeline.EventRing;
+import io.jfrtail.agent.pipeline.LatencyHistogram;
+import io.jfrtail.agent.pipeline.RingConsumer;
+import io.jfrtail.agent.pipeline.SamplingPolicy;
+import io.jfrtail.agent.server.EmbeddedServer;
+import io.jfrtail.agent.server.TcpStreamServer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What jfr-tail itself costs: per-event processing time on the JFR thread,
+ * stream lag, drops at every stage, serialization time (TCP and SSE), bytes
+ * and queue depth towards TCP clients. Histograms are recorded on the JFR thread; everything
+ * else is read from the components that already count it, so there is no
+ * extra work per event beyond two histogram updates.
+ */
+public class AgentMetrics {
+    private final LatencyHistogram processing = new LatencyHistogram();
+    private final LatencyHistogram streamLag = new LatencyHistogram();
+    private final EventRing ring;
+    private final TcpStreamServer tcpServer;
+    private final EmbeddedServer webServer;
+    private final SamplingPolicy sampling;
+
+    public AgentMetrics(EventRing ring, TcpStreamServer tcpServer, EmbeddedServer webServer, SamplingPolicy sampling) {
+        this.ring = ring;
+        this.tcpServer = tcpServer;
+        this.webServer = webServer;
+        this.sampling = sampling;
+    }
+
+    /** Events encoded for TCP clients and {@code /jfr/stream} subscribers. */
+    public long getSerializedEvents() {
+        return tcpServer.getSerializedEvents() + webServer.getStreamSerializedEvents();
+    }
+
+    /** Time spent encoding for TCP clients and {@code /jfr/stream} subscribers, on any thread. */
+    public long getSerializationNanos() {
+        return tcpServer.getSerializationNanos() + webServer.getStreamSerializationNanos();
+    }
+
+    /** Time spent in the JFR callback for one event, from entry to publish. */
+    public void recordProcessing(long nanos) {
+        processing.record(nanos);
+    }
+
+    /** Wall clock at capture minus the event's start time. */
+    public void recordStreamLag(long nanos) {
+        streamLag.record(nanos);
+    }
+
+    public long getRingDropped() {
+        long total = 0;
+        for (RingConsumer consumer : ring.getConsumers()) {
+            total += consumer.getDropped();
+        }
+        return total;
+    }
+
+    public long getRingBacklog() {
+        long max = 0;
+        for (RingConsumer consumer : ring.getConsumers()) {
+            max = Math.max(max, consumer.getLag());
+        }
+        return max;
+    }
+
+    public Map<String, Object> getStats() {
+        long sampled = sampling.getRejected();
+        long ringDropped = getRingDropped();
+        long clientDropped = tcpServer.getDropped();
+        long serializedEvents = getSerializedEvents();
+        long serializationNanos = getSerializationNanos();
+
+        Map<String, Object> dropped = new LinkedHashMap<>();
+        dropped.put("total", sampled + ringDropped + clientDropped);
+        dropped.put("sampling", sampled);
+        dropped.put("ring", ringDropped);
+        dropped.put("client_queue", clientDropped);
+
+        Map<String, Object> serialization = new LinkedHashMap<>();
+        serialization.put("events", serializedEvents);
+        serialization.put("total_ms", serializationNanos / 1_000_000);
+        serialization.put("avg_us", serializedEvents > 0
+                ? Math.round(serializationNanos / 10.0 / serializedEvents) / 100.0 : 0);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("processing_latency", processing.getStats());
+        stats.put("stream_lag", streamLag.getStats());
+        stats.put("dropped", dropped);
+        stats.put("serialization", serialization);
+        stats.put("bytes_sent", tcpServer.getBytesSent());
+        stats.put("client_queue_depth", tcpServer.getQueueDepth());
+        stats.put("ring_backlog", getRingBacklog());
+        stats.put("clients", tcpServer.getClientStats());
+        stats.put("rejected_clients", tcpServer.getRejectedClients());
+        return stats;
+    }
+
+    /** Appends the metrics in Prometheus text format. */
+    public void writePrometheus(PrometheusWriter out) {
+        out.histogram("jfr_tail_agent_processing_seconds", "Time spent in the JFR callback per event.", processing);
+        out.histogram("jfr_tail_agent_stream_lag_seconds", "Wall clock at capture minus event start time.",
+                streamLag);
+        out.family("jfr_tail_agent_dropped_total", "counter", "Events dropped, per pipeline stage.")
+                .sample("jfr_tail_agent_dropped_total", "stage", "sampling", sampling.getRejected())
+                .sample("jfr_tail_agent_dropped_total", "stage", "ring", getRingDropped())
+                .sample("jfr_tail_agent_dropped_total", "stage", "client_queue", tcpServer.getDropped());
+        out.single("jfr_tail_agent_serialized_events_total", "counter",
+                "Events serialized for TCP and SSE clients.", getSerializedEvents());
+        out.single("jfr_tail_agent_serialization_seconds_total", "counter", "Time spent serializing events.",
+                getSerializationNanos() / 1e9);
+        out.single("jfr_tail_agent_bytes_sent_total", "counter", "Bytes sent to TCP clients.",
+                tcpServer.getBytesSent());
+        out.single("jfr_tail_agent_client_queue_depth", "gauge", "Events queued for TCP clients.",
+                tcpServer.getQueueDepth());
+        out.single("jfr_tail_agent_ring_backlog", "gauge", "Events published but not yet read by the slowest consumer.",
+                getRingBacklog());
+        out.single("jfr_tail_agent_clients", "gauge", "Connected TCP clients.", tcpServer.getClientCount());
+        out.single("jfr_tail_agent_rejected_clients_total", "counter", "TCP connections refused at the client limit.",
+                tcpServer.getRejectedClients());
+    }
+}
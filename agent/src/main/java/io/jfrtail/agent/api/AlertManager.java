@@ -1,12 +1,13 @@
 package io.jfrtail.agent.api;
 
-import io.jfrtail.common.JfrEvent;
-import java.util.ArrayList;
+import io.jfrtail.agent.pipeline.CapturedEvent;
+
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 public class AlertManager {
-    private final List<Consumer<String>> listeners = new ArrayList<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
 
     // Thresholds (hardcoded for now, can be made configurable later)
     private double gcPauseThresholdMs = 500.0;
@@ -16,24 +17,24 @@ public class AlertManager {
         listeners.add(listener);
     }
 
-    public void check(JfrEvent event) {
-        String type = event.getEvent();
-
-        if (type.contains("GarbageCollection") && event.getDurationMs() != null) {
-            if (event.getDurationMs() > gcPauseThresholdMs) {
-                notifyListeners("ALERT: GC Pause too high! " + event.getDurationMs() + "ms");
-            }
-        }
-
-        if (type.contains("ExceptionThrown")) {
-            notifyListeners("ALERT: Exception detected: " + event.getFields().get("className"));
-        }
-
-        if (type.contains("JavaMonitor") || type.contains("ThreadPark")) {
-            if (event.getDurationMs() != null && event.getDurationMs() > 1000) {
-                notifyListeners("ALERT: High lock contention / park: " + event.getDurationMs() + "ms on thread "
-                        + event.getThread());
-            }
+    public void check(CapturedEvent event) {
+        switch (event.getCategory()) {
+            case GC:
+                if (event.hasDuration() && event.getDurationMs() > gcPauseThresholdMs) {
+                    notifyListeners("ALERT: GC Pause too high! " + event.getDurationMs() + "ms");
+                }
+                break;
+            case EXCEPTION:
+                notifyListeners("ALERT: Exception detected: " + event.getFields().getString("thrownClass"));
+                break;
+            case LOCK:
+                if (event.hasDuration() && event.getDurationMs() > 1000) {
+                    notifyListeners("ALERT: High lock contention / park: " + event.getDurationMs()
+                            + "ms on thread " + event.getThread());
+                }
+                break;
+            default:
+                break;
         }
     }
 
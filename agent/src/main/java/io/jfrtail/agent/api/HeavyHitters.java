@@ -0,0 +1,157 @@
+package io.jfrtail.agent.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving top-K: at most {@code capacity} counters, however many
+ * distinct keys are seen. A key that is not tracked takes over the smallest
+ * counter and inherits its count, so a count overestimates by at most that
+ * inherited amount, itself at most total / capacity. Reported counts have it
+ * taken off: they are lower bounds, exact for keys tracked from the start,
+ * and a key that only won a counter by churn reports next to nothing.
+ * Tracking a few times K counters keeps the top K accurate. Counters are
+ * reused once the table is full, so memory stays fixed; re-keying a counter
+ * still allocates a map node, so replacements are not allocation free.
+ * <p>
+ * Counts halve every {@code halfLifeMillis} (0 keeps them forever), so the
+ * ranking reflects recent behavior and a key that stopped is eventually
+ * displaced. Scaling every counter keeps the heap order, so decay is a
+ * linear pass.
+ * <p>
+ * Synchronized: written by the stats consumer thread, read by snapshots.
+ */
+final class HeavyHitters<K> {
+    // Decay in steps rather than per event
+    private static final long DECAY_INTERVAL_MILLIS = 1000;
+    // Decayed below this, a counter is not reported
+    private static final double MIN_REPORTED = 0.5;
+
+    private final Map<K, Counter<K>> index;
+    private final Counter<K>[] heap; // min-heap on count
+    private final long halfLifeMillis;
+    private int size;
+    private long lastDecayMillis;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    HeavyHitters(int capacity, long halfLifeMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.index = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+        this.halfLifeMillis = halfLifeMillis;
+    }
+
+    synchronized void add(K key, double weight) {
+        Counter<K> counter = index.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+            return;
+        }
+        if (size < heap.length) {
+            counter = new Counter<>();
+            counter.key = key;
+            counter.count = weight;
+            counter.position = size;
+            heap[size++] = counter;
+            index.put(key, counter);
+            siftUp(counter.position);
+            return;
+        }
+        // Take over the smallest counter, keeping its count
+        counter = heap[0];
+        index.remove(counter.key);
+        counter.key = key;
+        counter.error = counter.count;
+        counter.count += weight;
+        index.put(key, counter);
+        siftDown(0);
+    }
+
+    /** Applies the decay due since the last call. */
+    synchronized void decay(long nowMillis) {
+        if (halfLifeMillis <= 0) {
+            return;
+        }
+        if (lastDecayMillis == 0) {
+            lastDecayMillis = nowMillis;
+            return;
+        }
+        long elapsed = nowMillis - lastDecayMillis;
+        if (elapsed < DECAY_INTERVAL_MILLIS) {
+            return;
+        }
+        double factor = Math.pow(0.5, (double) elapsed / halfLifeMillis);
+        for (int i = 0; i < size; i++) {
+            heap[i].count *= factor;
+            heap[i].error *= factor;
+        }
+        lastDecayMillis = nowMillis;
+    }
+
+    /** @return up to {@code k} keys with their guaranteed (decayed) counts, highest first. */
+    synchronized List<Map.Entry<K, Long>> top(int k) {
+        List<Counter<K>> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (heap[i].guaranteed() >= MIN_REPORTED) {
+                counters.add(heap[i]);
+            }
+        }
+        counters.sort((a, b) -> Double.compare(b.guaranteed(), a.guaranteed()));
+        List<Map.Entry<K, Long>> top = new ArrayList<>(Math.min(k, counters.size()));
+        for (int i = 0; i < counters.size() && i < k; i++) {
+            top.add(Map.entry(counters.get(i).key, Math.round(counters.get(i).guaranteed())));
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent].count <= heap[i].count) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && heap[left + 1].count < heap[left].count ? left + 1 : left;
+            if (heap[i].count <= heap[smallest].count) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Counter<K> tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+        heap[a].position = a;
+        heap[b].position = b;
+    }
+
+    private static final class Counter<K> {
+        K key;
+        double count;
+        // Count inherited from the key this counter was taken from
+        double error;
+        int position;
+
+        double guaranteed() {
+            return count - error;
+        }
+    }
+}
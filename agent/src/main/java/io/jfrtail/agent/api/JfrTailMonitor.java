@@ -1,32 +1,68 @@
 package io.jfrtail.agent.api;
 
+import io.jfrtail.agent.control.OverheadGovernor;
+import io.jfrtail.agent.control.RecordingController;
+import io.jfrtail.agent.control.RollingRecording;
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.EventPlan;
+import io.jfrtail.agent.pipeline.EventRing;
+import io.jfrtail.agent.pipeline.PlanCache;
+import io.jfrtail.agent.pipeline.RingConsumer;
+import io.jfrtail.agent.pipeline.SamplingPolicy;
+import io.jfrtail.agent.pipeline.StackInterner;
 import io.jfrtail.agent.server.EmbeddedServer;
+import io.jfrtail.agent.server.ServerExecutors;
+import io.jfrtail.agent.server.TcpStreamServer;
 import io.jfrtail.common.CollectorProfile;
-import io.jfrtail.common.JfrEvent;
-import io.jfrtail.common.JsonUtils;
 import jdk.jfr.consumer.RecordedEvent;
 import jdk.jfr.consumer.RecordingStream;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.text.ParseException;
 import java.time.Duration;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JfrTailMonitor {
+    private static final int RING_CAPACITY = 8192;
+    // Prefix of every thread the agent starts (JFR stream, consumers, TCP selector, HTTP)
+    private static final String AGENT_THREAD_PREFIX = "jfr-tail-";
+
     private static JfrTailMonitor instance;
     private final StatsManager statsManager = new StatsManager();
     private AlertManager alertManager;
 
+    // JFR thread only publishes here; stats, alerts and TCP fan-out consume on their own threads
+    private final EventRing ring = new EventRing(RING_CAPACITY);
+    private final List<RingConsumer> consumers = new CopyOnWriteArrayList<>();
+
     private EmbeddedServer webServer;
     private RecordingStream recordingStream;
-    private final Set<PrintWriter> tcpClients = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private RecordingController recordingController;
+    private OverheadGovernor governor;
+    private RollingRecording rollingRecording;
+    // Set by the JFR stream thread on its first event, for CPU accounting
+    private volatile long streamThreadId = -1;
+    // Time the network consumer spends encoding and enqueueing for clients
+    private final AtomicLong broadcastNanos = new AtomicLong(0);
+    // Platform HTTP threads (they encode SSE replays), for CPU accounting
+    private final Set<Thread> httpThreads = ConcurrentHashMap.newKeySet();
+    private TcpStreamServer tcpServer;
+    // Only used from the JFR stream thread
+    private final PlanCache plans = new PlanCache();
+    private SamplingPolicy sampling = SamplingPolicy.NONE;
+    // Null when stack capture is disabled
+    private StackInterner stacks;
+    private AgentMetrics metrics;
+    private final MonitorConfig config = new MonitorConfig();
+    private Thread streamThread;
     private CollectorProfile profile = CollectorProfile.BALANCED;
 
     public static synchronized JfrTailMonitor getInstance() {
@@ -69,97 +105,44 @@ public class JfrTailMonitor {
             System.out.println("[SECURITY] Use this secret to connect via CLI --secret\n");
         }
         this.secret = secret;
+        statsManager.setPipelineStats(this::getPipelineStats);
+        statsManager.setHistoryCapacity(config.getHistorySize());
+        statsManager.setTopTracking(config.getTopK(), config.getTopHalfLifeSeconds());
+        statsManager.setSnapshotIntervalMillis(config.getSnapshotIntervalMillis());
 
         // 1. Start Web Server
         webServer = new EmbeddedServer(webPort, statsManager, secret, statsEnabled, dashboardEnabled);
+        webServer.setExecutor(ServerExecutors.bounded("jfr-tail-http", config.isVirtualThreads(),
+                config.getMaxSessions(), httpThreads::add));
+        webServer.setGzip(config.isHttpGzip());
+        // Streams hold an HTTP thread each: leave the other half for requests
+        webServer.setStreamLimits(Math.max(1, config.getMaxSessions() / 2), config.getClientQueueCapacity());
         webServer.start();
 
         // 2. Start TCP Server (for converting CLI)
-        startTcpServer(tcpPort);
+        tcpServer = new TcpStreamServer(tcpPort, secret, config.getClientQueueCapacity(), config.getOverflowPolicy(),
+                config.getFlushPolicy());
+        tcpServer.setMaxClients(config.getMaxSessions());
+        tcpServer.start();
+        statsManager.addSummaryListener(tcpServer::broadcastSummary);
 
         // 3. Start JFR Recording
         startRecording();
     }
 
-    private void startTcpServer(int port) {
-        executor.submit(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(port)) {
-                System.out.println("[JfrTail] TCP Server started on port " + port);
-                while (true) {
-                    Socket client = serverSocket.accept();
-                    executor.submit(() -> handleTcpClient(client));
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        });
-    }
-
-    private void handleTcpClient(Socket client) {
-        PrintWriter writer = null;
-        try {
-            client.setSoTimeout(5000); // 5s to auth
-            java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(client.getInputStream()));
-            writer = new PrintWriter(client.getOutputStream(), true);
-
-            // Handshake
-            String line = reader.readLine();
-            if (line == null || !line.startsWith("AUTH ")) {
-                writer.println("ERR Auth Required");
-                client.close();
-                return;
-            }
-
-            String token = line.substring(5).trim();
-            if (!io.jfrtail.common.security.JwtLite.verifyToken(token, this.secret)) {
-                writer.println("ERR Invalid Token");
-                client.close();
-                return;
-            }
-
-            // Auth Success
-            client.setSoTimeout(0); // Infinite
-            writer.println("OK Welcome");
-            tcpClients.add(writer);
-            System.out.println("[JfrTail] TCP Client authenticated and added. Current clients: " + tcpClients.size());
-
-            // Wait for disconnect
-            while (reader.readLine() != null) {
-            }
-
-        } catch (IOException e) {
-            // Disconnect
-        } finally {
-            if (writer != null) {
-                tcpClients.remove(writer);
-                System.out.println("[JfrTail] TCP Client disconnected. Remaining clients: " + tcpClients.size());
-            }
-            try {
-                client.close();
-            } catch (Exception e) {
-            }
-        }
-    }
-
     private void startRecording() {
-        recordingStream = new RecordingStream();
-        // Lower thresholds to zero (capture all) for maximum visibility into contention
-        recordingStream.enable("jdk.GarbageCollection");
-        recordingStream.enable("jdk.GCHeapSummary").withPeriod(Duration.ofSeconds(1));
-
-        if (profile == CollectorProfile.HIGH || profile == CollectorProfile.BALANCED) {
-            recordingStream.enable("jdk.ExceptionThrown");
-            recordingStream.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO);
-            recordingStream.enable("jdk.ThreadPark").withThreshold(Duration.ZERO);
-        }
+        sampling = new SamplingPolicy(config.getRateLimits(), config.getSampleProbabilities());
+        plans.setSamplingPolicy(sampling);
+        stacks = config.getStackDepth() > 0 ? new StackInterner(config.getStackDepth()) : null;
+        metrics = new AgentMetrics(ring, tcpServer, webServer, sampling);
+        statsManager.putSection("agent", metrics::getStats);
+        webServer.setAgentMetrics(metrics);
 
-        if (profile == CollectorProfile.HIGH) {
-            recordingStream.enable("jdk.ObjectAllocationOutsideTLAB").withThreshold(Duration.ZERO);
-            recordingStream.enable("jdk.MetaspaceSummary").withPeriod(Duration.ofSeconds(5));
-        }
-
-        recordingStream.enable("jdk.CPULoad").withPeriod(Duration.ofSeconds(1));
+        recordingStream = new RecordingStream();
+        // Event settings per profile live in the controller so they can change at runtime
+        recordingController = new RecordingController(recordingStream, profile);
+        recordingController.apply();
+        webServer.setRecordingController(recordingController);
         recordingStream.setOrdered(false);
 
         recordingStream.onEvent(this::processEvent);
@@ -167,94 +150,134 @@ public class JfrTailMonitor {
         // 4. Initialize AlertManager if configuration exists (placeholder for now)
         this.alertManager = new AlertManager();
 
-        executor.submit(() -> {
+        startConsumers();
+        if (config.isGovernorEnabled()) {
+            startGovernor();
+        }
+        if (config.getBundleJfrMinutes() > 0) {
+            startRollingRecording();
+        }
+
+        // Dedicated platform thread: it runs for the life of the agent and must never be a virtual one
+        streamThread = new Thread(() -> {
             try {
                 recordingStream.start();
             } catch (Exception e) {
                 System.err.println("[JfrTail] RecordingStream FAILED: " + e.getMessage());
                 e.printStackTrace();
             }
-        });
+        }, AGENT_THREAD_PREFIX + "stream");
+        streamThread.setDaemon(true);
+        streamThread.start();
         System.out.println("[JfrTail] JFR Stream started");
     }
 
-    private void processEvent(RecordedEvent event) {
-        System.out.println("[DEBUG] Captured JFR Event: " + event.getEventType().getName());
-        JfrEvent jfrEvent = new JfrEvent();
-        jfrEvent.setTs(event.getStartTime());
-        jfrEvent.setPid(ProcessHandle.current().pid());
-        jfrEvent.setEvent(event.getEventType().getName());
-
-        if (event.getThread() != null) {
-            jfrEvent.setThread(event.getThread().getJavaName());
-        } else {
-            jfrEvent.setThread("System");
-        }
+    private void startConsumers() {
+        consumers.add(ring.addConsumer("stats", statsManager::accept).withTick(statsManager::tick, 100).start());
+        consumers.add(ring.addConsumer("alerts", alertManager::check).start());
+        consumers.add(ring.addConsumer("network", this::broadcast).start());
+    }
 
-        if (event.hasField("duration")) {
-            jfrEvent.setDurationMs(event.getDuration("duration").toNanos() / 1_000_000.0);
-        }
+    private void startGovernor() {
+        governor = new OverheadGovernor(recordingController, config.getOverheadBudgetPercent(),
+                config.getGovernorIntervalMillis(), this::getAgentThreadIds, ring::getCursor,
+                () -> broadcastNanos.get() + webServer.getStreamWriterSerializationNanos()).start();
+        statsManager.putSection("governor", governor::getStats);
+        System.out.println("[JfrTail] Overhead governor enabled, budget " + config.getOverheadBudgetPercent()
+                + "% of a core");
+    }
 
-        // Extract detailed fields for better visibility
-        java.util.Map<String, Object> fields = new java.util.HashMap<>();
-        for (jdk.jfr.ValueDescriptor descriptor : event.getEventType().getFields()) {
-            String name = descriptor.getName();
-            if ("startTime".equals(name) || "duration".equals(name) || "eventThread".equals(name)
-                    || "stackTrace".equals(name)) {
-                continue;
-            }
-            fields.put(name, extractValue(event.getValue(name)));
+    private void startRollingRecording() {
+        try {
+            rollingRecording = new RollingRecording(Duration.ofMinutes(config.getBundleJfrMinutes())).start();
+            webServer.setRollingRecording(rollingRecording);
+        } catch (IOException | ParseException | RuntimeException e) {
+            // Bundles still work, without the .jfr
+            System.err.println("[JfrTail] Rolling recording not started: " + e.getMessage());
         }
-        jfrEvent.setFields(fields);
+    }
 
-        // Update Stats
-        statsManager.accept(jfrEvent);
+    private Collection<Long> getAgentThreadIds() {
+        List<Long> ids = new ArrayList<>();
+        if (streamThreadId >= 0) {
+            ids.add(streamThreadId);
+        }
+        for (RingConsumer consumer : consumers) {
+            ids.add(consumer.getThreadId());
+        }
+        if (tcpServer != null) {
+            ids.add(tcpServer.getThreadId());
+        }
+        for (Thread thread : httpThreads) {
+            ids.add(thread.getId());
+        }
+        return ids;
+    }
 
-        // Check Alerts
-        if (alertManager != null) {
-            alertManager.check(jfrEvent);
+    private void processEvent(RecordedEvent event) {
+        long start = System.nanoTime();
+        if (streamThreadId < 0) {
+            streamThreadId = Thread.currentThread().getId();
         }
+        EventPlan plan = plans.get(event);
+        if (rollingRecording != null && !recordingController.isStreamed(plan.getTypeName())) {
+            // Only enabled for the rolling recording
+            return;
+        }
+        String thread = CapturedEvent.threadName(event);
+        if (thread.startsWith(AGENT_THREAD_PREFIX) && !plan.isAgentEvent()) {
+            // Our own threads park and contend by design; feeding that back would loop
+            return;
+        }
+        long weight = plan.admit();
+        if (weight == 0) {
+            // Sampled out or over its rate limit: never captured
+            return;
+        }
+        CapturedEvent captured = CapturedEvent.capture(plan, event, thread, weight,
+                stacks != null && plan.hasStackTrace() ? stacks.intern(event.getStackTrace()) : null);
+        ring.publish(captured);
+        metrics.recordStreamLag((System.currentTimeMillis() - captured.getStartTime().toEpochMilli()) * 1_000_000);
+        metrics.recordProcessing(System.nanoTime() - start);
+    }
 
-        // Broadcast to TCP Clients
-        if (!tcpClients.isEmpty()) {
+    private void broadcast(CapturedEvent event) {
+        // Broadcast to TCP Clients and HTTP streams: each encodes once per wire format
+        boolean tcp = tcpServer != null && tcpServer.hasClients();
+        boolean sse = webServer != null && webServer.hasStreams();
+        if (tcp || sse) {
             try {
-                String json = JsonUtils.toJson(jfrEvent);
-                for (PrintWriter writer : tcpClients) {
-                    writer.println(json);
-                    writer.flush();
+                long start = System.nanoTime();
+                if (tcp) {
+                    tcpServer.broadcast(event);
                 }
-                System.out.println("[DEBUG] Broadcasted to " + tcpClients.size() + " clients. JSON: "
-                        + json.substring(0, Math.min(json.length(), 50)) + "...");
+                if (sse) {
+                    webServer.broadcast(event);
+                }
+                broadcastNanos.addAndGet(System.nanoTime() - start);
             } catch (Exception e) {
                 System.err.println("[JfrTail] ERROR broadcasting event: " + e.getMessage());
             }
         }
     }
 
-    private Object extractValue(Object value) {
-        if (value == null)
-            return null;
-        if (value instanceof jdk.jfr.consumer.RecordedClass) {
-            return ((jdk.jfr.consumer.RecordedClass) value).getName();
-        } else if (value instanceof jdk.jfr.consumer.RecordedThread) {
-            return ((jdk.jfr.consumer.RecordedThread) value).getJavaName();
-        } else if (value instanceof jdk.jfr.consumer.RecordedObject) {
-            jdk.jfr.consumer.RecordedObject ro = (jdk.jfr.consumer.RecordedObject) value;
-            java.util.Map<String, Object> map = new java.util.HashMap<>();
-            for (jdk.jfr.ValueDescriptor v : ro.getFields()) {
-                map.put(v.getName(), extractValue(ro.getValue(v.getName())));
-            }
-            return map;
-        }
-        return value.toString();
-    }
-
     public void stop() {
+        if (governor != null)
+            governor.stop();
+        if (recordingController != null)
+            recordingController.shutdown();
         if (recordingStream != null)
             recordingStream.close();
+        if (rollingRecording != null)
+            rollingRecording.stop();
+        for (RingConsumer consumer : consumers) {
+            consumer.stop();
+        }
+        consumers.clear();
         if (webServer != null)
             webServer.stop();
-        executor.shutdownNow();
+        if (tcpServer != null)
+            tcpServer.stop();
     }
 
     public StatsManager getStatsManager() {
@@ -264,4 +287,26 @@ public class JfrTailMonitor {
     public AlertManager getAlertManager() {
         return alertManager;
     }
+
+    public MonitorConfig getConfig() {
+        return config;
+    }
+
+    public AgentMetrics getAgentMetrics() {
+        return metrics;
+    }
+
+    public RecordingController getRecordingController() {
+        return recordingController;
+    }
+
+    public Map<String, Object> getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(ring.getStats());
+        stats.put("clients", tcpServer != null ? tcpServer.getClientStats() : List.of());
+        stats.put("sampling", sampling.getStats());
+        if (stacks != null) {
+            stats.put("stacks", stacks.getStats());
+        }
+        return stats;
+    }
 }
@@ -0,0 +1,169 @@
+package io.jfrtail.agent.api;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Windowed history of the headline metrics, so clients get real rates and
+ * "last N minutes" counts instead of deriving them from cumulative totals.
+ * <p>
+ * Three tiers of fixed circular arrays, each written directly rather than
+ * downsampled, so a coarse bucket is exact: 5 minutes of 1 s buckets, 1 hour
+ * of 10 s buckets and 24 hours of 1 minute buckets (about 200 KB in all).
+ * Values are attributed to the second the event ended in; late events still
+ * land in their bucket as long as it is in the tier. A query reads the
+ * finest tier covering the window and only complete buckets, the one being
+ * filled is left out.
+ * <p>
+ * Counters are summed per bucket; gauges (heap, CPU) are averaged over the
+ * samples in the bucket.
+ */
+class MetricSeries {
+    enum Metric {
+        EVENTS("events", false),
+        GC("gc", false),
+        GC_PAUSE_MS("gc_pause_ms", false),
+        EXCEPTIONS("exceptions", false),
+        LOCKS("locks", false),
+        LOCK_WAIT_MS("lock_wait_ms", false),
+        HEAP_USED_MB("heap_used_mb", true),
+        CPU_JVM_PERCENT("cpu_jvm_percent", true),
+        CPU_MACHINE_PERCENT("cpu_machine_percent", true);
+
+        final String key;
+        final boolean gauge;
+
+        Metric(String key, boolean gauge) {
+            this.key = key;
+            this.gauge = gauge;
+        }
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+    static final long MAX_WINDOW_SECONDS = 24 * 3600;
+
+    private final Tier[] tiers = { new Tier(1, 300), new Tier(10, 360), new Tier(60, 1440) };
+
+    synchronized void add(Metric metric, long epochMillis, double value) {
+        long second = Math.floorDiv(epochMillis, 1000);
+        for (Tier tier : tiers) {
+            tier.add(metric.ordinal(), second, value);
+        }
+    }
+
+    /**
+     * @param windowSeconds how far back to look, capped at 24 hours
+     * @param withSeries    include the per-bucket values, not just the window totals
+     */
+    synchronized Map<String, Object> query(long windowSeconds, boolean withSeries, long nowMillis) {
+        long window = Math.max(1, Math.min(windowSeconds, MAX_WINDOW_SECONDS));
+        Tier tier = tiers[tiers.length - 1];
+        for (Tier candidate : tiers) {
+            if (candidate.step * candidate.length() >= window) {
+                tier = candidate;
+                break;
+            }
+        }
+        long buckets = Math.min(tier.length(), (window + tier.step - 1) / tier.step);
+        long last = Math.floorDiv(Math.floorDiv(nowMillis, 1000), tier.step) - 1;
+        long first = last - buckets + 1;
+
+        Map<String, Object> totals = new LinkedHashMap<>();
+        Map<String, Object> rates = new LinkedHashMap<>();
+        Map<String, Object> averages = new LinkedHashMap<>();
+        Map<String, Object> series = new LinkedHashMap<>();
+        double seconds = buckets * tier.step;
+        for (Metric metric : METRICS) {
+            int m = metric.ordinal();
+            double sum = 0;
+            long samples = 0;
+            List<Double> values = withSeries ? new ArrayList<>((int) buckets) : null;
+            for (long index = first; index <= last; index++) {
+                int slot = tier.slotOf(index);
+                boolean present = tier.start[slot] == index && tier.samples[m][slot] > 0;
+                double value = present ? tier.sums[m][slot] : 0;
+                sum += value;
+                samples += present ? tier.samples[m][slot] : 0;
+                if (values != null) {
+                    if (metric.gauge) {
+                        values.add(present ? round(value / tier.samples[m][slot]) : null);
+                    } else {
+                        values.add(round(value));
+                    }
+                }
+            }
+            if (metric.gauge) {
+                averages.put(metric.key, samples > 0 ? round(sum / samples) : null);
+            } else {
+                totals.put(metric.key, round(sum));
+                rates.put(metric.key, round(sum / seconds));
+            }
+            if (values != null) {
+                series.put(metric.key, values);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("window_seconds", buckets * tier.step);
+        result.put("step_seconds", tier.step);
+        result.put("from", Instant.ofEpochSecond(first * tier.step).toString());
+        result.put("to", Instant.ofEpochSecond((last + 1) * tier.step).toString());
+        result.put("totals", totals);
+        result.put("rates_per_second", rates);
+        result.put("averages", averages);
+        if (withSeries) {
+            result.put("series", series);
+        }
+        return result;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static final class Tier {
+        final long step;
+        // Bucket index (epoch second / step) held by each slot, -1 when unused
+        final long[] start;
+        final double[][] sums;
+        final int[][] samples;
+
+        Tier(long step, int length) {
+            this.step = step;
+            this.start = new long[length];
+            Arrays.fill(start, -1);
+            this.sums = new double[METRICS.length][length];
+            this.samples = new int[METRICS.length][length];
+        }
+
+        int length() {
+            return start.length;
+        }
+
+        int slotOf(long index) {
+            return (int) Math.floorMod(index, (long) start.length);
+        }
+
+        void add(int metric, long second, double value) {
+            long index = Math.floorDiv(second, step);
+            int slot = slotOf(index);
+            if (start[slot] != index) {
+                if (start[slot] > index) {
+                    // Older than the tier holds
+                    return;
+                }
+                start[slot] = index;
+                for (int m = 0; m < sums.length; m++) {
+                    sums[m][slot] = 0;
+                    samples[m][slot] = 0;
+                }
+            }
+            sums[metric][slot] += value;
+            samples[metric][slot]++;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package io.jfrtail.agent.api;
+
+import io.jfrtail.agent.server.FlushPolicy;
+import io.jfrtail.agent.server.OverflowPolicy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tuning knobs for the monitor pipeline. Must be set before
+ * {@link JfrTailMonitor#start}; agent args and Spring properties both end up here.
+ */
+public class MonitorConfig {
+    private int clientQueueCapacity = 4096;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    // TCP writes: flush after N events, M bytes or T ms, whichever comes first
+    private int batchEvents = FlushPolicy.DEFAULT.getMaxEvents();
+    private int batchBytes = FlushPolicy.DEFAULT.getMaxBytes();
+    private long batchMillis = FlushPolicy.DEFAULT.getMaxDelayMillis();
+    // Event type -> max events/s, and event type -> fraction kept
+    private final Map<String, Double> rateLimits = new LinkedHashMap<>();
+    private final Map<String, Double> sampleProbabilities = new LinkedHashMap<>();
+    // Adaptive profile: step down while agent CPU exceeds the budget (% of one core)
+    private boolean governorEnabled = false;
+    private double overheadBudgetPercent = 5.0;
+    private long governorIntervalMillis = 5000;
+    // Frames kept per captured stack trace; 0 disables stack capture
+    private int stackDepth = 16;
+    // Recent events kept for /jfr/history and the snapshot
+    private int historySize = StatsManager.DEFAULT_HISTORY_CAPACITY;
+    // Entries in the top exception / blocked thread lists, and how fast their counts fade
+    private int topK = StatsManager.DEFAULT_TOP_K;
+    private long topHalfLifeSeconds = StatsManager.DEFAULT_TOP_HALF_LIFE_SECONDS;
+    // HTTP reads share one snapshot per interval, sent gzipped to clients that accept it
+    private long snapshotIntervalMillis = StatsManager.DEFAULT_SNAPSHOT_INTERVAL_MILLIS;
+    private boolean httpGzip = true;
+    // Minutes of plain JFR data kept on disk for incident bundles; 0 records none
+    private int bundleJfrMinutes = 0;
+    // Viewer sessions: TCP connections and concurrent HTTP exchanges, each capped
+    private int maxSessions = 16;
+    private boolean virtualThreads = false;
+
+    /**
+     * Applies a single {@code key=value} agent argument.
+     *
+     * @return false if the key is not a monitor setting.
+     */
+    public boolean apply(String key, String value) {
+        switch (key) {
+            case "queueSize":
+                setClientQueueCapacity(Integer.parseInt(value));
+                return true;
+            case "overflow":
+                setOverflowPolicy(OverflowPolicy.parse(value));
+                return true;
+            case "batchEvents":
+                setBatchEvents(Integer.parseInt(value));
+                return true;
+            case "batchBytes":
+                setBatchBytes(Integer.parseInt(value));
+                return true;
+            case "batchMillis":
+                setBatchMillis(Long.parseLong(value));
+                return true;
+            case "rateLimit":
+                // rateLimit=jdk.JavaMonitorEnter:200,jdk.ThreadPark:100
+                parseTypeValues(value).forEach(this::setRateLimit);
+                return true;
+            case "sample":
+                // sample=jdk.ThreadPark:0.1
+                parseTypeValues(value).forEach(this::setSampleProbability);
+                return true;
+            case "governor":
+                setGovernorEnabled(Boolean.parseBoolean(value));
+                return true;
+            case "overheadBudget":
+                setOverheadBudgetPercent(Double.parseDouble(value));
+                return true;
+            case "stackDepth":
+                setStackDepth(Integer.parseInt(value));
+                return true;
+            case "historySize":
+                setHistorySize(Integer.parseInt(value));
+                return true;
+            case "topK":
+                setTopK(Integer.parseInt(value));
+                return true;
+            case "topHalfLife":
+                setTopHalfLifeSeconds(Long.parseLong(value));
+                return true;
+            case "snapshotMillis":
+                setSnapshotIntervalMillis(Long.parseLong(value));
+                return true;
+            case "httpGzip":
+                setHttpGzip(Boolean.parseBoolean(value));
+                return true;
+            case "bundleJfrMinutes":
+                setBundleJfrMinutes(Integer.parseInt(value));
+                return true;
+            case "maxSessions":
+                setMaxSessions(Integer.parseInt(value));
+                return true;
+            case "virtualThreads":
+                setVirtualThreads(Boolean.parseBoolean(value));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Map<String, Double> parseTypeValues(String value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected <event type>:<value>, got: " + entry);
+            }
+            values.put(entry.substring(0, colon).trim(), Double.parseDouble(entry.substring(colon + 1).trim()));
+        }
+        return values;
+    }
+
+    public int getClientQueueCapacity() {
+        return clientQueueCapacity;
+    }
+
+    public void setClientQueueCapacity(int clientQueueCapacity) {
+        if (clientQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Client queue capacity must be positive");
+        }
+        this.clientQueueCapacity = clientQueueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return new FlushPolicy(batchEvents, batchBytes, batchMillis);
+    }
+
+    public int getBatchEvents() {
+        return batchEvents;
+    }
+
+    /** Events queued for a TCP client before they are written out; 1 writes every event at once. */
+    public void setBatchEvents(int batchEvents) {
+        if (batchEvents <= 0) {
+            throw new IllegalArgumentException("Batch events must be positive");
+        }
+        this.batchEvents = batchEvents;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    /** Bytes queued for a TCP client before they are written out. */
+    public void setBatchBytes(int batchBytes) {
+        if (batchBytes <= 0) {
+            throw new IllegalArgumentException("Batch bytes must be positive");
+        }
+        this.batchBytes = batchBytes;
+    }
+
+    public long getBatchMillis() {
+        return batchMillis;
+    }
+
+    /** Longest time an event waits in a batch before it is written out. */
+    public void setBatchMillis(long batchMillis) {
+        if (batchMillis < 0) {
+            throw new IllegalArgumentException("Batch delay must not be negative");
+        }
+        this.batchMillis = batchMillis;
+    }
+
+    public Map<String, Double> getRateLimits() {
+        return rateLimits;
+    }
+
+    /**
+     * Caps how many events of a type per second enter the pipeline. Events over
+     * the limit are dropped before being captured; their count is carried by
+     * the next admitted event's weight.
+     */
+    public void setRateLimit(String eventType, double eventsPerSecond) {
+        if (eventsPerSecond <= 0) {
+            rateLimits.remove(eventType);
+        } else {
+            rateLimits.put(eventType, eventsPerSecond);
+        }
+    }
+
+    public Map<String, Double> getSampleProbabilities() {
+        return sampleProbabilities;
+    }
+
+    /**
+     * Keeps each event of a type with the given probability; kept events are
+     * weighted by its inverse so statistics stay unbiased.
+     */
+    public void setSampleProbability(String eventType, double probability) {
+        if (probability <= 0 || probability > 1) {
+            throw new IllegalArgumentException("Sample probability must be in (0, 1]: " + probability);
+        }
+        if (probability == 1) {
+            sampleProbabilities.remove(eventType);
+        } else {
+            sampleProbabilities.put(eventType, probability);
+        }
+    }
+
+    public boolean isGovernorEnabled() {
+        return governorEnabled;
+    }
+
+    public void setGovernorEnabled(boolean governorEnabled) {
+        this.governorEnabled = governorEnabled;
+    }
+
+    public double getOverheadBudgetPercent() {
+        return overheadBudgetPercent;
+    }
+
+    /**
+     * CPU the agent's own threads may use, in percent of one core, before the
+     * governor steps the collector profile down.
+     */
+    public void setOverheadBudgetPercent(double overheadBudgetPercent) {
+        if (overheadBudgetPercent <= 0) {
+            throw new IllegalArgumentException("Overhead budget must be positive");
+        }
+        this.overheadBudgetPercent = overheadBudgetPercent;
+    }
+
+    public long getGovernorIntervalMillis() {
+        return governorIntervalMillis;
+    }
+
+    public void setGovernorIntervalMillis(long governorIntervalMillis) {
+        if (governorIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Governor interval must be positive");
+        }
+        this.governorIntervalMillis = governorIntervalMillis;
+    }
+
+    public int getStackDepth() {
+        return stackDepth;
+    }
+
+    /**
+     * Frames kept per stack trace, innermost first. Stacks are interned and
+     * sent once per connection, so depth mostly costs capture time on the JFR
+     * thread. 0 disables stack capture.
+     */
+    public void setStackDepth(int stackDepth) {
+        if (stackDepth < 0) {
+            throw new IllegalArgumentException("Stack depth must not be negative");
+        }
+        this.stackDepth = stackDepth;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Recent events kept in memory for {@code /jfr/history}. The buffer is
+     * allocated once, one slot per event, so large values are cheap to write
+     * to but make unfiltered history requests bigger.
+     */
+    public void setHistorySize(int historySize) {
+        if (historySize <= 0) {
+            throw new IllegalArgumentException("History size must be positive");
+        }
+        this.historySize = historySize;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * Entries reported in the top exception and blocked thread lists. The
+     * sketches behind them hold a fixed multiple of this many counters, so
+     * memory stays bounded however many classes or threads show up.
+     */
+    public void setTopK(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("Top K must be positive");
+        }
+        this.topK = topK;
+    }
+
+    public long getTopHalfLifeSeconds() {
+        return topHalfLifeSeconds;
+    }
+
+    /** Half-life of the top list counts, so they follow recent behavior; 0 never decays. */
+    public void setTopHalfLifeSeconds(long topHalfLifeSeconds) {
+        if (topHalfLifeSeconds < 0) {
+            throw new IllegalArgumentException("Top half-life must not be negative");
+        }
+        this.topHalfLifeSeconds = topHalfLifeSeconds;
+    }
+
+    public long getSnapshotIntervalMillis() {
+        return snapshotIntervalMillis;
+    }
+
+    /**
+     * How long the stats, history and metrics endpoints reuse one snapshot
+     * (and its serialized, gzipped body) before building a new one. Polling
+     * clients then cost a lookup, or a 304 when their ETag still matches;
+     * 0 builds a snapshot per request.
+     */
+    public void setSnapshotIntervalMillis(long snapshotIntervalMillis) {
+        if (snapshotIntervalMillis < 0) {
+            throw new IllegalArgumentException("Snapshot interval must not be negative");
+        }
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    public boolean isHttpGzip() {
+        return httpGzip;
+    }
+
+    public void setHttpGzip(boolean httpGzip) {
+        this.httpGzip = httpGzip;
+    }
+
+    public int getBundleJfrMinutes() {
+        return bundleJfrMinutes;
+    }
+
+    /**
+     * Keeps a background JFR recording of the last {@code minutes} on disk,
+     * with the JDK's default settings, so incident bundles can include it as
+     * a {@code .jfr} file. JFR applies the most detailed settings of all
+     * running recordings: the live stream skips the events only the rolling
+     * recording wants, while the file gets the stream's lower thresholds too.
+     * 0 disables it.
+     */
+    public void setBundleJfrMinutes(int bundleJfrMinutes) {
+        if (bundleJfrMinutes < 0) {
+            throw new IllegalArgumentException("Bundle JFR minutes must not be negative");
+        }
+        this.bundleJfrMinutes = bundleJfrMinutes;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * Caps open TCP connections and, separately, HTTP exchanges handled at
+     * the same time. With platform threads this is also the size of the HTTP
+     * pool, so the agent's thread count stays fixed however many viewers connect.
+     */
+    public void setMaxSessions(int maxSessions) {
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("Max sessions must be positive");
+        }
+        this.maxSessions = maxSessions;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** Handles HTTP exchanges on virtual threads (Java 21+; ignored on older JVMs). */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+}
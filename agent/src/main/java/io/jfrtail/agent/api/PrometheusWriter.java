@@ -0,0 +1,135 @@
+package io.jfrtail.agent.api;
+
+import io.jfrtail.agent.pipeline.LatencyHistogram;
+
+import java.util.Map;
+
+/**
+ * Prometheus text exposition (format 0.0.4) into a caller-owned builder, so
+ * the builder can be reused from one scrape to the next. Each metric family
+ * gets its {@code # HELP} and {@code # TYPE} lines once, before its samples.
+ * <p>
+ * Labeled families take a cap on their series count: a family labeled by
+ * something the application controls (event types, exception classes, thread
+ * names) cannot grow the scrape, or the Prometheus TSDB, without bound.
+ */
+public final class PrometheusWriter {
+    static final String OTHER = "other";
+
+    private final StringBuilder sb;
+
+    public PrometheusWriter(StringBuilder sb) {
+        this.sb = sb;
+    }
+
+    /** Writes the {@code # HELP} and {@code # TYPE} lines of a family. */
+    public PrometheusWriter family(String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value) {
+        return sample(name, null, null, value);
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue, double value) {
+        sb.append(name);
+        if (label != null) {
+            sb.append('{').append(label).append("=\"");
+            appendEscaped(sb, labelValue);
+            sb.append("\"}");
+        }
+        sb.append(' ');
+        appendValue(value);
+        sb.append('\n');
+        return this;
+    }
+
+    /** A family without labels, HELP and TYPE included. */
+    public PrometheusWriter single(String name, String type, String help, double value) {
+        return family(name, type, help).sample(name, value);
+    }
+
+    /**
+     * A family with one label, HELP and TYPE included. Beyond
+     * {@code maxSeries} values, the rest are summed into {@code other}. A real
+     * value named {@code other} goes into that same sum, so the family never
+     * has two series with the same label.
+     */
+    public PrometheusWriter labeled(String name, String type, String help, String label,
+            Map<String, ? extends Number> values, int maxSeries) {
+        family(name, type, help);
+        int written = 0;
+        double other = 0;
+        boolean folded = false;
+        for (Map.Entry<String, ? extends Number> entry : values.entrySet()) {
+            if (OTHER.equals(entry.getKey())) {
+                other += entry.getValue().doubleValue();
+                folded = true;
+            } else if (written < maxSeries) {
+                sample(name, label, entry.getKey(), entry.getValue().doubleValue());
+                written++;
+            } else {
+                other += entry.getValue().doubleValue();
+                folded = true;
+            }
+        }
+        if (folded) {
+            sample(name, label, OTHER, other);
+        }
+        return this;
+    }
+
+    /** A histogram family labeled by {@code label}, at most {@code maxSeries} series. */
+    public PrometheusWriter histograms(String name, String help, String label,
+            Map<String, LatencyHistogram> histograms, int maxSeries) {
+        family(name, "histogram", help);
+        int written = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (written++ == maxSeries) {
+                // Histograms cannot be folded by adding their sums alone; the rest is left out
+                break;
+            }
+            StringBuilder labels = new StringBuilder(label).append("=\"");
+            appendEscaped(labels, entry.getKey());
+            entry.getValue().writePrometheus(sb, name, labels.append('"').toString());
+        }
+        return this;
+    }
+
+    /** A histogram family without labels. */
+    public PrometheusWriter histogram(String name, String help, LatencyHistogram histogram) {
+        family(name, "histogram", help);
+        histogram.writePrometheus(sb, name, "");
+        return this;
+    }
+
+    private void appendValue(double value) {
+        if (value == (long) value) {
+            sb.append((long) value);
+        } else if (Double.isNaN(value)) {
+            sb.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            sb.append(value > 0 ? "+Inf" : "-Inf");
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
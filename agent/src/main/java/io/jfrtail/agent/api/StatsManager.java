@@ -1,132 +1,612 @@
 package io.jfrtail.agent.api;
 
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.CapturedObject;
+import io.jfrtail.agent.pipeline.CapturedStack;
+import io.jfrtail.agent.pipeline.EventHistory;
+import io.jfrtail.agent.pipeline.EventPlan;
+import io.jfrtail.agent.pipeline.LatencyHistogram;
+import io.jfrtail.common.EventSummary;
 import io.jfrtail.common.JfrEvent;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class StatsManager {
-    private final AtomicLong gcCount = new AtomicLong(0);
-    private final AtomicLong lockCount = new AtomicLong(0);
-    private final AtomicLong exceptionCount = new AtomicLong(0);
-    private final AtomicLong totalEvents = new AtomicLong(0);
-    private final Map<String, AtomicLong> topExceptions = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> topBlockedThreads = new ConcurrentHashMap<>();
+    private final LongAdder gcCount = new LongAdder();
+    private final LongAdder lockCount = new LongAdder();
+    private final LongAdder exceptionCount = new LongAdder();
+    private final LongAdder totalEvents = new LongAdder();
+
+    // Per event type state, indexed by EventPlan.getIndex(). Written by the stats consumer
+    // thread only; the array is republished on each new type so readers see the entry
+    private volatile TypeStats[] types = new TypeStats[64];
+
+    // Top exceptions, blocked threads and stacks: fixed-size heavy hitter sketches with decay,
+    // replaced only before events flow
+    public static final int DEFAULT_TOP_K = 10;
+    public static final long DEFAULT_TOP_HALF_LIFE_SECONDS = 300;
+    // Counters tracked per reported entry; more makes the reported counts more accurate
+    private static final int TRACKED_PER_TOP = 8;
+    private static final int TOP_STACKS = 5;
+    private volatile int topK = DEFAULT_TOP_K;
+    private volatile long topHalfLifeMillis = DEFAULT_TOP_HALF_LIFE_SECONDS * 1000;
+    private volatile HeavyHitters<String> topExceptions = newTopTracker(DEFAULT_TOP_K);
+    private volatile HeavyHitters<String> topBlockedThreads = newTopTracker(DEFAULT_TOP_K);
 
     // Memory and GC details
     private final AtomicLong heapUsed = new AtomicLong(0);
     private final AtomicLong heapCommitted = new AtomicLong(0);
     private final AtomicLong lastGcPauseMs = new AtomicLong(0);
+    // Latest CPU load, as a fraction of all cores; -1 until the first sample
+    private volatile double cpuJvmLoad = -1;
+    private volatile double cpuMachineLoad = -1;
 
-    // Last minute metrics
-    private final Map<String, AtomicLong> eventCounts = new ConcurrentHashMap<>();
+    // GC pause time of each collection; per type durations are in TypeStats
+    private final LatencyHistogram gcPauses = new LatencyHistogram();
+    private final List<Consumer<String>> latencyTypeListeners = new CopyOnWriteArrayList<>();
 
-    // History Buffer (Circular)
-    private static final int MAX_HISTORY = 500; // Increased for better persistence
-    private final List<JfrEvent> history = Collections.synchronizedList(new ArrayList<>());
+    // 1 s / 10 s / 1 min buckets of the headline metrics, for windowed counts and rates
+    private final MetricSeries series = new MetricSeries();
+    // Per-second rollups for summary mode clients; stats consumer thread only
+    private final SummaryAggregator summaries = new SummaryAggregator();
+
+    // History Buffer (Circular), lock-free; replaced only before events flow
+    public static final int DEFAULT_HISTORY_CAPACITY = 500;
+    private volatile EventHistory history = new EventHistory(DEFAULT_HISTORY_CAPACITY);
 
     // Latest event for display
-    private volatile JfrEvent lastEvent;
+    private volatile CapturedEvent lastEvent;
+
+    // Ring buffer lag / drop counters, provided by the monitor pipeline
+    private volatile Supplier<Map<String, Object>> pipelineStats = Map::of;
+    // Extra snapshot sections contributed by other components (e.g. the governor)
+    private final Map<String, Supplier<?>> sections = Collections.synchronizedMap(new LinkedHashMap<>());
 
-    public void accept(JfrEvent event) {
-        totalEvents.incrementAndGet();
+    // Snapshot shared by readers, rebuilt at most once per interval
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 1000;
+    private volatile long snapshotIntervalNanos = DEFAULT_SNAPSHOT_INTERVAL_MILLIS * 1_000_000;
+    private volatile CachedSnapshot cachedSnapshot;
+
+    /**
+     * Counters are incremented by the event's weight, so they keep estimating
+     * raw volumes when a type is sampled or rate limited. Per type state is
+     * found by the plan's index and type specific work by its category, both
+     * resolved once per type, so nothing here hashes or matches the type name.
+     * <p>
+     * The event goes into the history last: a reader that sees it there (and
+     * has its cursor move past it) also sees every counter it updated.
+     */
+    public void accept(CapturedEvent event) {
+        long weight = event.getWeight();
+        totalEvents.add(weight);
         lastEvent = event;
-        addToHistory(event);
 
-        String type = event.getEvent();
-        eventCounts.computeIfAbsent(type, k -> new AtomicLong(0)).incrementAndGet();
+        TypeStats stats = typeStats(event.getEventPlan());
+        stats.count.add(weight);
+        stats.lastSequence = history.sequenceOf(event);
+        long endMillis = event.getStartTime().toEpochMilli()
+                + (event.hasDuration() ? event.getDurationNanos() / 1_000_000 : 0);
+        series.add(MetricSeries.Metric.EVENTS, endMillis, weight);
+        summaries.record(event, endMillis);
+        if (event.hasDuration()) {
+            recordDuration(stats, event.getDurationNanos(), weight);
+        }
+        if (event.getStack() != null) {
+            countStack(stats, event.getStack(), weight);
+        }
+
+        switch (event.getCategory()) {
+            case GC:
+                acceptGc(event, endMillis, weight);
+                break;
+            case HEAP_SUMMARY:
+                acceptHeapSummary(event, endMillis);
+                break;
+            case LOCK:
+                acceptLock(event, endMillis, weight);
+                break;
+            case EXCEPTION:
+                acceptException(event, endMillis, weight);
+                break;
+            case CPU_LOAD:
+                acceptCpuLoad(event, endMillis);
+                break;
+            default:
+                break;
+        }
+        history.add(event);
+    }
+
+    private void acceptGc(CapturedEvent event, long endMillis, long weight) {
+        gcCount.add(weight);
+        series.add(MetricSeries.Metric.GC, endMillis, weight);
+        if (event.hasDuration()) {
+            lastGcPauseMs.set((long) event.getDurationMs());
+        }
+        // A @Timespan in ticks, captured in nanoseconds
+        long pauses = event.getFields().getLong("sumOfPauses", -1);
+        if (pauses >= 0 && pauses != Long.MAX_VALUE) {
+            gcPauses.record(pauses, weight);
+            series.add(MetricSeries.Metric.GC_PAUSE_MS, endMillis, pauses / 1_000_000.0 * weight);
+        }
+    }
+
+    private void acceptHeapSummary(CapturedEvent event, long endMillis) {
+        CapturedObject fields = event.getFields();
+        long used = fields.getLong("heapUsed", -1);
+        if (used >= 0) {
+            heapUsed.set(used);
+            series.add(MetricSeries.Metric.HEAP_USED_MB, endMillis, used / (1024.0 * 1024.0));
+        }
+        CapturedObject heapSpace = fields.getObject("heapSpace");
+        if (heapSpace != null) {
+            long committed = heapSpace.getLong("committedSize", -1);
+            if (committed >= 0)
+                heapCommitted.set(committed);
+        }
+    }
 
-        if (type.contains("GarbageCollection")) {
-            gcCount.incrementAndGet();
-            if (event.getDurationMs() != null) {
-                lastGcPauseMs.set(event.getDurationMs().longValue());
+    private void acceptLock(CapturedEvent event, long endMillis, long weight) {
+        lockCount.add(weight);
+        series.add(MetricSeries.Metric.LOCKS, endMillis, weight);
+        if (event.hasDuration()) {
+            series.add(MetricSeries.Metric.LOCK_WAIT_MS, endMillis, event.getDurationMs() * weight);
+            if (event.getThread() != null) {
+                topBlockedThreads.add(event.getThread(), event.getDurationMs() * weight);
             }
-        } else if (type.contains("GCHeapSummary")) {
-            Map<String, Object> fields = event.getFields();
-            if (fields != null && fields.containsKey("heapUsed")) {
-                Object used = fields.get("heapUsed");
-                if (used instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Object val = ((Map<String, Object>) used).get("used");
-                    if (val != null)
-                        heapUsed.set(Long.parseLong(val.toString()));
-                }
+        }
+    }
+
+    private void acceptException(CapturedEvent event, long endMillis, long weight) {
+        exceptionCount.add(weight);
+        series.add(MetricSeries.Metric.EXCEPTIONS, endMillis, weight);
+        String className = event.getFields().getString("thrownClass");
+        if (className != null) {
+            topExceptions.add(className, weight);
+        }
+    }
+
+    private void acceptCpuLoad(CapturedEvent event, long endMillis) {
+        CapturedObject fields = event.getFields();
+        double jvm = fields.getDouble("jvmUser", -1) + fields.getDouble("jvmSystem", 0);
+        double machine = fields.getDouble("machineTotal", -1);
+        if (jvm >= 0) {
+            cpuJvmLoad = jvm;
+            series.add(MetricSeries.Metric.CPU_JVM_PERCENT, endMillis, jvm * 100);
+        }
+        if (machine >= 0) {
+            cpuMachineLoad = machine;
+            series.add(MetricSeries.Metric.CPU_MACHINE_PERCENT, endMillis, machine * 100);
+        }
+    }
+
+    private TypeStats typeStats(EventPlan plan) {
+        TypeStats[] table = types;
+        int index = plan.getIndex();
+        if (index < table.length) {
+            TypeStats stats = table[index];
+            if (stats != null) {
+                return stats;
             }
-            if (fields != null && fields.containsKey("heapCommitted")) {
-                Object comm = fields.get("heapCommitted");
-                if (comm instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Object val = ((Map<String, Object>) comm).get("committed");
-                    if (val != null)
-                        heapCommitted.set(Long.parseLong(val.toString()));
-                }
+        } else {
+            table = Arrays.copyOf(table, Math.max(index + 1, table.length * 2));
+        }
+        TypeStats stats = new TypeStats(plan.getTypeName());
+        table[index] = stats;
+        types = table;
+        return stats;
+    }
+
+    /**
+     * Publishes the per-second rollups that are due. Must be called
+     * periodically from the thread that calls {@link #accept}.
+     */
+    public void tick() {
+        long now = System.currentTimeMillis();
+        summaries.tick(now);
+        topExceptions.decay(now);
+        topBlockedThreads.decay(now);
+        for (TypeStats stats : types) {
+            if (stats != null && stats.stacks != null) {
+                stats.stacks.decay(now);
             }
-        } else if (type.contains("JavaMonitor") || type.contains("ThreadPark")) {
-            lockCount.incrementAndGet();
-            if (event.getThread() != null && event.getDurationMs() != null) {
-                topBlockedThreads.computeIfAbsent(event.getThread(), k -> new AtomicLong(0))
-                        .addAndGet(event.getDurationMs().longValue());
+        }
+    }
+
+    /**
+     * Sets how many entries the top lists report and the half-life of their
+     * counts (0 never forgets); call before the first event. Memory is fixed by
+     * {@code k}, whatever the number of distinct exceptions or threads.
+     */
+    public void setTopTracking(int k, long halfLifeSeconds) {
+        topK = k;
+        topHalfLifeMillis = halfLifeSeconds * 1000;
+        topExceptions = newTopTracker(k);
+        topBlockedThreads = newTopTracker(k);
+        for (TypeStats stats : types) {
+            if (stats != null) {
+                stats.stacks = null;
             }
-        } else if (type.contains("ExceptionThrown")) {
-            exceptionCount.incrementAndGet();
-            Object className = event.getFields().get("className");
-            if (className != null) {
-                topExceptions.computeIfAbsent(className.toString(), k -> new AtomicLong(0)).incrementAndGet();
+        }
+    }
+
+    private <K> HeavyHitters<K> newTopTracker(int reported) {
+        return new HeavyHitters<>(reported * TRACKED_PER_TOP, topHalfLifeMillis);
+    }
+
+    private static Map<String, Long> toMap(List<Map.Entry<String, Long>> top) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : top) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    /** @return the most frequent exception classes with their decayed weighted counts. */
+    public Map<String, Long> getTopExceptions() {
+        return toMap(topExceptions.top(topK));
+    }
+
+    /** @return the threads that spent the most time blocked, in decayed ms. */
+    public Map<String, Long> getTopBlockedThreads() {
+        return toMap(topBlockedThreads.top(topK));
+    }
+
+    /** Receives one rollup per second, on the thread that calls {@link #tick()}. */
+    public void addSummaryListener(Consumer<EventSummary> listener) {
+        summaries.addListener(listener);
+    }
+
+    private void recordDuration(TypeStats stats, long nanos, long weight) {
+        LatencyHistogram histogram = stats.duration;
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            stats.duration = histogram;
+            for (Consumer<String> listener : latencyTypeListeners) {
+                listener.accept(stats.name);
+            }
+        }
+        histogram.record(nanos, weight);
+    }
+
+    /** Called with each event type the first time one of its events has a duration. */
+    public void addLatencyTypeListener(Consumer<String> listener) {
+        latencyTypeListeners.add(listener);
+    }
+
+    /** @return the duration histogram of an event type, null if none of its events had a duration yet. */
+    public LatencyHistogram getDurationHistogram(String type) {
+        return getDurationHistograms().get(type);
+    }
+
+    /** @return duration histogram per event type, sorted by type. */
+    public Map<String, LatencyHistogram> getDurationHistograms() {
+        Map<String, LatencyHistogram> durations = new TreeMap<>();
+        for (TypeStats stats : types) {
+            if (stats != null && stats.duration != null) {
+                durations.put(stats.name, stats.duration);
             }
         }
+        return durations;
     }
 
-    private void addToHistory(JfrEvent event) {
-        synchronized (history) {
-            if (history.size() >= MAX_HISTORY) {
-                history.remove(0);
+    /** @return weighted event count per type since start, sorted by type. */
+    public Map<String, Long> getEventCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (TypeStats stats : types) {
+            if (stats != null) {
+                counts.put(stats.name, stats.count.sum());
             }
-            history.add(event);
         }
+        return counts;
+    }
+
+    /** @return distribution of the total pause time of each garbage collection. */
+    public LatencyHistogram getGcPauseHistogram() {
+        return gcPauses;
+    }
+
+    /**
+     * Percentiles and non-empty buckets of every duration histogram. Bucket
+     * bounds are the same in every agent, so histograms from several windows or
+     * JVMs merge by adding the counts of equal {@code le_us}.
+     */
+    public Map<String, Object> getLatencyStats() {
+        Map<String, Object> types = new LinkedHashMap<>();
+        getDurationHistograms().forEach((type, histogram) -> types.put(type, histogram.getStats()));
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("gc_pause", gcPauses.getStats());
+        latency.put("event_duration", types);
+        return latency;
+    }
+
+    /**
+     * Counts, rates and gauge averages over the last {@code windowSeconds}
+     * (at most 24 hours), from 1 s buckets up to 5 minutes, 10 s buckets up to
+     * an hour and 1 minute buckets beyond.
+     *
+     * @param withSeries include the value of every bucket
+     */
+    public Map<String, Object> getWindow(long windowSeconds, boolean withSeries) {
+        return series.query(windowSeconds, withSeries, System.currentTimeMillis());
+    }
+
+    // Series per labeled family; event types are bounded by the JVM, but applications can define many
+    private static final int MAX_TYPE_SERIES = 256;
+
+    /**
+     * Appends the counters, gauges and duration histograms in Prometheus text
+     * format. The flat names predate the labeled families and are kept for
+     * existing dashboards.
+     */
+    public void writePrometheus(PrometheusWriter out) {
+        out.single("jfr_tail_total_events", "counter", "Events seen, weighted by sampling.", totalEvents.sum());
+        out.single("jfr_tail_gc_count", "counter", "Garbage collections.", gcCount.sum());
+        out.single("jfr_tail_lock_count", "counter", "Contended monitor enters and thread parks.",
+                lockCount.sum());
+        out.single("jfr_tail_exception_count", "counter", "Exceptions thrown.", exceptionCount.sum());
+        out.single("jfr_tail_heap_used_mb", "gauge", "Heap used after the last GC heap summary, in MiB.",
+                heapUsed.get() / (1024 * 1024));
+        out.single("jfr_tail_heap_committed_mb", "gauge", "Heap committed, in MiB.",
+                heapCommitted.get() / (1024 * 1024));
+        out.single("jfr_tail_last_gc_pause_ms", "gauge", "Duration of the last garbage collection, in ms.",
+                lastGcPauseMs.get());
+        out.family("jfr_tail_cpu_load", "gauge", "CPU load as a fraction of all cores, from jdk.CPULoad.");
+        if (cpuJvmLoad >= 0) {
+            out.sample("jfr_tail_cpu_load", "scope", "jvm", cpuJvmLoad);
+        }
+        if (cpuMachineLoad >= 0) {
+            out.sample("jfr_tail_cpu_load", "scope", "machine", cpuMachineLoad);
+        }
+        out.labeled("jfr_tail_events_total", "counter", "Events seen per event type, weighted by sampling.",
+                "type", getEventCounts(), MAX_TYPE_SERIES);
+        out.labeled("jfr_tail_top_exceptions", "gauge",
+                "Decayed count of the most thrown exception classes (top-k only).", "class", getTopExceptions(),
+                topK);
+        out.labeled("jfr_tail_top_blocked_threads_ms", "gauge",
+                "Decayed time blocked of the most blocked threads, in ms (top-k only).", "thread",
+                getTopBlockedThreads(), topK);
+        out.histogram("jfr_tail_gc_pause_seconds", "Total pause time of each garbage collection.", gcPauses);
+        out.histograms("jfr_tail_event_duration_seconds", "Duration of events per event type.", "type",
+                getDurationHistograms(), MAX_TYPE_SERIES);
+    }
+
+    private void countStack(TypeStats stats, CapturedStack stack, long weight) {
+        HeavyHitters<CapturedStack> counts = stats.stacks;
+        if (counts == null) {
+            counts = newTopTracker(TOP_STACKS);
+            stats.stacks = counts;
+        }
+        counts.add(stack, weight);
+    }
+
+    /** @return per event type, the most frequent stacks with their weighted counts. */
+    public Map<String, List<Map<String, Object>>> getTopStacks() {
+        Map<String, List<Map<String, Object>>> top = new LinkedHashMap<>();
+        for (TypeStats stats : types) {
+            HeavyHitters<CapturedStack> counts = stats != null ? stats.stacks : null;
+            if (counts == null) {
+                continue;
+            }
+            top.put(stats.name, topStacks(counts));
+        }
+        return top;
+    }
+
+    private static List<Map<String, Object>> topStacks(HeavyHitters<CapturedStack> counts) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Map.Entry<CapturedStack, Long> stack : counts.top(TOP_STACKS)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("stack_id", stack.getKey().getId());
+            entry.put("count", stack.getValue());
+            entry.put("frames", stack.getKey().getFrames());
+            list.add(entry);
+        }
+        return list;
+    }
+
+    /** Sets how many recent events are kept; call before the first event. */
+    public void setHistoryCapacity(int capacity) {
+        history = new EventHistory(capacity);
+    }
+
+    public EventHistory getEventHistory() {
+        return history;
+    }
+
+    /**
+     * Events added since a cursor, for clients that poll: pass the returned
+     * {@code cursor} next time to get only what is new. {@code missed} counts
+     * events overwritten before they were read; a cursor ahead of the history
+     * (the agent restarted) reads from the oldest event held, with
+     * {@code reset} set.
+     *
+     * @param limit maximum number of events returned; the cursor then stops
+     *              after the last one, so the rest come with the next call
+     */
+    public Map<String, Object> getHistorySince(long since, int limit) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        putHistorySince(delta, since, limit);
+        return delta;
+    }
+
+    // Adds cursor, reset, missed and events; returns the cursor the events were read from
+    private long putHistorySince(Map<String, Object> delta, long since, int limit) {
+        EventHistory history = this.history;
+        boolean reset = since > history.getLastSequence() + 1;
+        long from = reset ? 0 : Math.max(0, since);
+        long missed = Math.max(0, history.getFirstSequence() - from);
+        List<JfrEvent> events = new ArrayList<>();
+        long cursor = history.read(from, limit, (seq, event) -> events.add(event.toJfrEvent()));
+        delta.put("cursor", cursor);
+        delta.put("reset", reset);
+        delta.put("missed", missed);
+        delta.put("events", events);
+        return from;
     }
 
     public List<JfrEvent> getHistory() {
-        synchronized (history) {
-            return new ArrayList<>(history);
+        List<CapturedEvent> copy = history.copy();
+        List<JfrEvent> events = new ArrayList<>(copy.size());
+        for (CapturedEvent event : copy) {
+            events.add(event.toJfrEvent());
         }
+        return events;
     }
 
     public Map<String, Object> getSnapshot() {
-        return Map.of(
-                "timestamp", Instant.now().toString(),
-                "metrics", java.util.Map.of(
-                        "total_events", totalEvents.get(),
-                        "gc_count", gcCount.get(),
-                        "lock_count", lockCount.get(),
-                        "exception_count", exceptionCount.get(),
-                        "heap_used_mb", heapUsed.get() / (1024 * 1024),
-                        "heap_committed_mb", heapCommitted.get() / (1024 * 1024),
-                        "last_gc_pause_ms", lastGcPauseMs.get()),
-                "top_exceptions", topExceptions,
-                "top_blocked_threads_ms", topBlockedThreads,
-                "last_event", lastEvent != null ? lastEvent : java.util.Map.of(),
-                "history", getHistory());
+        return getSnapshot(true);
+    }
+
+    /**
+     * @param withHistory include the events of the history; without them,
+     *                    {@code cursor} is where the history ended, and callers
+     *                    read the events from {@link #getEventHistory()}
+     */
+    public Map<String, Object> getSnapshot(boolean withHistory) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("timestamp", Instant.now().toString());
+        snapshot.put("metrics", java.util.Map.of(
+                "total_events", totalEvents.sum(),
+                "gc_count", gcCount.sum(),
+                "lock_count", lockCount.sum(),
+                "exception_count", exceptionCount.sum(),
+                "heap_used_mb", heapUsed.get() / (1024 * 1024),
+                "heap_committed_mb", heapCommitted.get() / (1024 * 1024),
+                "last_gc_pause_ms", lastGcPauseMs.get()));
+        snapshot.put("last_minute", getWindow(60, false));
+        snapshot.put("top_exceptions", getTopExceptions());
+        snapshot.put("top_blocked_threads_ms", getTopBlockedThreads());
+        snapshot.put("event_counts", getEventCounts());
+        snapshot.put("top_stacks", getTopStacks());
+        snapshot.put("latency", getLatencyStats());
+        snapshot.put("last_event", lastEvent != null ? lastEvent.toJfrEvent() : java.util.Map.of());
+        snapshot.put("pipeline", pipelineStats.get());
+        synchronized (sections) {
+            sections.forEach((name, section) -> snapshot.put(name, section.get()));
+        }
+        if (!withHistory) {
+            snapshot.put("cursor", history.getLastSequence() + 1);
+            return snapshot;
+        }
+        List<JfrEvent> events = new ArrayList<>(history.getCapacity());
+        long cursor = history.read(0, Integer.MAX_VALUE, (seq, event) -> events.add(event.toJfrEvent()));
+        // Where to continue with getSnapshotSince
+        snapshot.put("cursor", cursor);
+        snapshot.put("history", events);
+        return snapshot;
+    }
+
+    // Sections of the snapshot that grow with the history or the number of event types
+    private static final List<String> PER_EVENT_SECTIONS = List.of("timestamp", "cursor", "history",
+            "event_counts", "top_stacks", "latency");
+
+    /**
+     * What changed since a cursor from {@link #getSnapshot()} or a previous
+     * call: the new events (as in {@link #getHistorySince}) and, for event
+     * types that had events since, their counts, duration stats and top
+     * stacks. The small sections (metrics, windows, top lists, pipeline) are
+     * always included, from the cached snapshot. Applying the delta to the
+     * previous state keeps a client current at a cost that grows with what
+     * happened, not with the history size.
+     */
+    public Map<String, Object> getSnapshotSince(long since, int limit) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("timestamp", Instant.now().toString());
+        // Events first: the per type sections read afterwards include at least their updates
+        long from = putHistorySince(delta, since, limit);
+        getCachedSnapshot().forEach((name, section) -> {
+            if (!PER_EVENT_SECTIONS.contains(name)) {
+                delta.put(name, section);
+            }
+        });
+
+        Map<String, Long> counts = new TreeMap<>();
+        Map<String, Object> durations = new TreeMap<>();
+        Map<String, Object> stacks = new TreeMap<>();
+        for (TypeStats stats : types) {
+            if (stats == null || stats.lastSequence < from) {
+                continue;
+            }
+            counts.put(stats.name, stats.count.sum());
+            if (stats.duration != null) {
+                durations.put(stats.name, stats.duration.getStats());
+            }
+            if (stats.stacks != null) {
+                stacks.put(stats.name, topStacks(stats.stacks));
+            }
+        }
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("gc_pause", gcPauses.getStats());
+        latency.put("event_duration", durations);
+        delta.put("event_counts", counts);
+        delta.put("top_stacks", stacks);
+        delta.put("latency", latency);
+        return delta;
+    }
+
+    /**
+     * The snapshot as of at most one snapshot interval ago, shared by every
+     * caller so a crowd of pollers costs one build per interval. Read only;
+     * callers that need it current, like incident bundles, use
+     * {@link #getSnapshot()}.
+     */
+    public Map<String, Object> getCachedSnapshot() {
+        CachedSnapshot cached = cachedSnapshot;
+        long now = System.nanoTime();
+        if (cached != null && now - cached.builtNanos < snapshotIntervalNanos) {
+            return cached.snapshot;
+        }
+        synchronized (this) {
+            cached = cachedSnapshot;
+            if (cached == null || System.nanoTime() - cached.builtNanos >= snapshotIntervalNanos) {
+                cached = new CachedSnapshot(Collections.unmodifiableMap(getSnapshot()), System.nanoTime());
+                cachedSnapshot = cached;
+            }
+            return cached.snapshot;
+        }
+    }
+
+    /** How long {@link #getCachedSnapshot()} reuses a snapshot; 0 rebuilds it every time. */
+    public void setSnapshotIntervalMillis(long intervalMillis) {
+        snapshotIntervalNanos = intervalMillis * 1_000_000;
+    }
+
+    public void setPipelineStats(Supplier<Map<String, Object>> pipelineStats) {
+        this.pipelineStats = pipelineStats != null ? pipelineStats : Map::of;
+    }
+
+    /** Adds (or replaces) a top-level section of {@link #getSnapshot()}. */
+    public void putSection(String name, Supplier<?> section) {
+        sections.put(name, section);
     }
 
     public long getTotalEvents() {
-        return totalEvents.get();
+        return totalEvents.sum();
     }
 
     public long getGcCount() {
-        return gcCount.get();
+        return gcCount.sum();
     }
 
     public long getLockCount() {
-        return lockCount.get();
+        return lockCount.sum();
     }
 
     public long getExceptionCount() {
-        return exceptionCount.get();
+        return exceptionCount.sum();
     }
 
     public long getHeapUsed() {
@@ -140,4 +620,28 @@ public class StatsManager {
     public long getLastGcPauseMs() {
         return lastGcPauseMs.get();
     }
+
+    private static final class TypeStats {
+        final String name;
+        final LongAdder count = new LongAdder();
+        // Sequence number of the type's latest event, for deltas
+        volatile long lastSequence = -1;
+        // Created on the type's first timed event / first stack
+        volatile LatencyHistogram duration;
+        volatile HeavyHitters<CapturedStack> stacks;
+
+        TypeStats(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class CachedSnapshot {
+        final Map<String, Object> snapshot;
+        final long builtNanos;
+
+        CachedSnapshot(Map<String, Object> snapshot, long builtNanos) {
+            this.snapshot = snapshot;
+            this.builtNanos = builtNanos;
+        }
+    }
 }
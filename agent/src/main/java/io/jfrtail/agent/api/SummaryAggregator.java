@@ -0,0 +1,208 @@
+package io.jfrtail.agent.api;
+
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.common.EventSummary;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Rolls events up into one {@link EventSummary} per second and event type.
+ * <p>
+ * Events are attributed to the second they ended in. JFR delivers them in
+ * batches about once a second and not in order, so a second is only closed
+ * {@value #GRACE_MILLIS} ms after it ends; anything arriving later is counted
+ * in the oldest second still open and reported as late. Seconds without
+ * events are sent too, so a rate chart sees the zeros.
+ * <p>
+ * Single threaded: {@link #record} and {@link #tick} are both called by the
+ * stats consumer thread; listeners run on it as well.
+ */
+class SummaryAggregator {
+    static final long GRACE_MILLIS = 2000;
+    private static final int TOP_THREADS = 3;
+    private static final int MAX_THREADS_PER_TYPE = 256;
+    // Bound against clock jumps: never hold more seconds open than this
+    private static final int MAX_OPEN_SECONDS = 10;
+
+    private final TreeMap<Long, Second> open = new TreeMap<>();
+    private final List<Consumer<EventSummary>> listeners = new CopyOnWriteArrayList<>();
+    // Last second sent; -1 until the first tick
+    private long lastClosed = -1;
+    // Bucket of the previous event, cleared when its second closes
+    private long lastSecond = Long.MIN_VALUE;
+    private Second lastBucket;
+
+    void addListener(Consumer<EventSummary> listener) {
+        listeners.add(listener);
+    }
+
+    /** @param endMillis when the event ended, epoch millis */
+    void record(CapturedEvent event, long endMillis) {
+        long second = Math.floorDiv(endMillis, 1000);
+        boolean late = lastClosed >= 0 && second <= lastClosed;
+        if (late) {
+            second = lastClosed + 1;
+        }
+        // Most events fall in the same second as the previous one
+        Second bucket = second == lastSecond ? lastBucket : open.get(second);
+        if (bucket == null) {
+            // Make room first: closing the oldest seconds can close this one too
+            while (open.size() >= MAX_OPEN_SECONDS) {
+                close(open.firstKey());
+            }
+            if (lastClosed >= 0 && second <= lastClosed) {
+                second = lastClosed + 1;
+                late = true;
+            }
+            bucket = open.computeIfAbsent(second, s -> new Second());
+        }
+        lastSecond = second;
+        lastBucket = bucket;
+        bucket.add(event, late);
+    }
+
+    /** Closes and publishes every second whose grace period is over. */
+    void tick(long nowMillis) {
+        long closeUpTo = Math.floorDiv(nowMillis - GRACE_MILLIS, 1000) - 1;
+        if (lastClosed < 0) {
+            lastClosed = open.isEmpty() ? closeUpTo : Math.min(closeUpTo, open.firstKey() - 1);
+        }
+        while (lastClosed < closeUpTo) {
+            close(lastClosed + 1);
+        }
+    }
+
+    private void close(long second) {
+        // Seconds are closed in order; skipped ones (clock jump) go out empty
+        for (long s = lastClosed + 1; lastClosed >= 0 && s < second; s++) {
+            publish(s, open.remove(s));
+        }
+        publish(second, open.remove(second));
+        lastClosed = Math.max(lastClosed, second);
+        if (lastSecond <= lastClosed) {
+            lastSecond = Long.MIN_VALUE;
+            lastBucket = null;
+        }
+    }
+
+    private void publish(long second, Second bucket) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        EventSummary summary = bucket != null ? bucket.toSummary() : new EventSummary();
+        summary.setTs(Instant.ofEpochSecond(second));
+        summary.setPid(CapturedEvent.PID);
+        for (Consumer<EventSummary> listener : listeners) {
+            try {
+                listener.accept(summary);
+            } catch (Exception e) {
+                System.err.println("[JfrTail] Summary listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Second {
+        // Indexed by EventPlan.getIndex()
+        TypeStats[] types = new TypeStats[16];
+        long total;
+        long late;
+
+        void add(CapturedEvent event, boolean isLate) {
+            long weight = event.getWeight();
+            total += weight;
+            if (isLate) {
+                late += weight;
+            }
+            int index = event.getEventPlan().getIndex();
+            if (index >= types.length) {
+                types = Arrays.copyOf(types, Math.max(index + 1, types.length * 2));
+            }
+            TypeStats stats = types[index];
+            if (stats == null) {
+                stats = new TypeStats(event.getType());
+                types[index] = stats;
+            }
+            stats.add(event, weight);
+        }
+
+        EventSummary toSummary() {
+            EventSummary summary = new EventSummary();
+            summary.setTotalEvents(total);
+            summary.setLateEvents(late);
+            List<TypeStats> entries = new ArrayList<>();
+            for (TypeStats stats : types) {
+                if (stats != null) {
+                    entries.add(stats);
+                }
+            }
+            // Busiest types first
+            entries.sort((a, b) -> Long.compare(b.count, a.count));
+            for (TypeStats stats : entries) {
+                summary.getTypes().put(stats.name, stats.toSummary());
+            }
+            return summary;
+        }
+    }
+
+    private static final class TypeStats {
+        final String name;
+        long count;
+        long durationSumNanos;
+        long durationMinNanos = Long.MAX_VALUE;
+        long durationMaxNanos = -1;
+        final Map<String, long[]> threads = new HashMap<>();
+
+        TypeStats(String name) {
+            this.name = name;
+        }
+
+        void add(CapturedEvent event, long weight) {
+            count += weight;
+            if (event.hasDuration()) {
+                long nanos = event.getDurationNanos();
+                durationSumNanos += nanos * weight;
+                durationMinNanos = Math.min(durationMinNanos, nanos);
+                durationMaxNanos = Math.max(durationMaxNanos, nanos);
+            }
+            String thread = event.getThread();
+            if (thread != null) {
+                long[] threadCount = threads.get(thread);
+                if (threadCount == null) {
+                    if (threads.size() >= MAX_THREADS_PER_TYPE) {
+                        return;
+                    }
+                    threadCount = new long[1];
+                    threads.put(thread, threadCount);
+                }
+                threadCount[0] += weight;
+            }
+        }
+
+        EventSummary.TypeSummary toSummary() {
+            EventSummary.TypeSummary summary = new EventSummary.TypeSummary();
+            summary.setCount(count);
+            if (durationMaxNanos >= 0) {
+                summary.setDurationSumMs(durationSumNanos / 1_000_000.0);
+                summary.setDurationMinMs(durationMinNanos / 1_000_000.0);
+                summary.setDurationMaxMs(durationMaxNanos / 1_000_000.0);
+            }
+            List<Map.Entry<String, long[]>> entries = new ArrayList<>(threads.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            Map<String, Long> top = new LinkedHashMap<>();
+            for (int i = 0; i < entries.size() && i < TOP_THREADS; i++) {
+                top.put(entries.get(i).getKey(), entries.get(i).getValue()[0]);
+            }
+            summary.setTopThreads(top);
+            return summary;
+        }
+    }
+}
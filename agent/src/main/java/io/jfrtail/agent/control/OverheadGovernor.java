@@ -0,0 +1,217 @@
+package io.jfrtail.agent.control;
+
+import io.jfrtail.common.CollectorProfile;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the agent inside an overhead budget by stepping the collector profile
+ * down (HIGH to BALANCED to LOW) while the agent's own threads (JFR stream, ring
+ * consumers, TCP selector) use more CPU than allowed, and back up once load
+ * has stayed well under the budget for a while.
+ * <p>
+ * Hysteresis: stepping down takes {@value #DOWN_TICKS} consecutive samples
+ * over budget; stepping up takes {@value #UP_TICKS} consecutive samples under
+ * half of it. Never goes above the profile the agent was started with.
+ */
+public class OverheadGovernor implements Runnable {
+    private static final int DOWN_TICKS = 2;
+    private static final int UP_TICKS = 6;
+    private static final double UP_FRACTION = 0.5;
+    private static final int MAX_TRANSITIONS = 20;
+
+    private final RecordingController controller;
+    private final CollectorProfile ceiling;
+    private final double budgetPercent;
+    private final long intervalMillis;
+    private final Supplier<Collection<Long>> agentThreadIds;
+    private final LongSupplier eventCount;
+    private final LongSupplier serializationNanos;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final Map<Long, Long> lastCpuByThread = new HashMap<>();
+    private final ArrayDeque<Map<String, Object>> transitions = new ArrayDeque<>();
+    private long lastWallNanos;
+    private long lastEventCount;
+    private long lastSerializationNanos;
+    private int overTicks;
+    private int underTicks;
+
+    private volatile double cpuPercent;
+    private volatile double eventsPerSecond;
+    private volatile double serializationMicrosPerEvent;
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    /**
+     * @param budgetPercent      allowed agent CPU, in percent of one core
+     * @param agentThreadIds     ids of the threads whose CPU time counts
+     * @param eventCount         monotonic count of events entering the pipeline
+     * @param serializationNanos monotonic time spent encoding for clients
+     */
+    public OverheadGovernor(RecordingController controller, double budgetPercent, long intervalMillis,
+            Supplier<Collection<Long>> agentThreadIds, LongSupplier eventCount, LongSupplier serializationNanos) {
+        this.controller = controller;
+        this.ceiling = controller.getProfile();
+        this.budgetPercent = budgetPercent;
+        this.intervalMillis = intervalMillis;
+        this.agentThreadIds = agentThreadIds;
+        this.eventCount = eventCount;
+        this.serializationNanos = serializationNanos;
+    }
+
+    public OverheadGovernor start() {
+        if (threadBean.isThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()) {
+            threadBean.setThreadCpuTimeEnabled(true);
+        }
+        Thread t = new Thread(this, "jfr-tail-governor");
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        lastWallNanos = System.nanoTime();
+        sampleCpu();
+        lastEventCount = eventCount.getAsLong();
+        lastSerializationNanos = serializationNanos.getAsLong();
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+            if (!running) {
+                break;
+            }
+            try {
+                tick();
+            } catch (Exception e) {
+                System.err.println("[JfrTail] Governor error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long wall = Math.max(1, now - lastWallNanos);
+        lastWallNanos = now;
+
+        long cpu = sampleCpu();
+        long events = eventCount.getAsLong();
+        long serialization = serializationNanos.getAsLong();
+        long eventDelta = events - lastEventCount;
+        long serializationDelta = serialization - lastSerializationNanos;
+        lastEventCount = events;
+        lastSerializationNanos = serialization;
+
+        cpuPercent = cpu * 100.0 / wall;
+        eventsPerSecond = eventDelta * 1_000_000_000.0 / wall;
+        serializationMicrosPerEvent = eventDelta > 0 ? serializationDelta / 1000.0 / eventDelta : 0;
+
+        CollectorProfile profile = controller.getProfile();
+        if (cpuPercent > budgetPercent) {
+            underTicks = 0;
+            if (++overTicks >= DOWN_TICKS && profile.ordinal() > 0) {
+                overTicks = 0;
+                transition(profile, CollectorProfile.values()[profile.ordinal() - 1],
+                        String.format("agent CPU %.2f%% over budget %.2f%%", cpuPercent, budgetPercent));
+            }
+        } else if (cpuPercent < budgetPercent * UP_FRACTION) {
+            overTicks = 0;
+            if (++underTicks >= UP_TICKS && profile.ordinal() < ceiling.ordinal()) {
+                underTicks = 0;
+                transition(profile, CollectorProfile.values()[profile.ordinal() + 1],
+                        String.format("agent CPU %.2f%% under %.2f%% for %ds", cpuPercent,
+                                budgetPercent * UP_FRACTION, UP_TICKS * intervalMillis / 1000));
+            }
+        } else {
+            overTicks = 0;
+            underTicks = 0;
+        }
+    }
+
+    /** @return CPU nanoseconds used by agent threads since the previous call. */
+    private long sampleCpu() {
+        long total = 0;
+        Map<Long, Long> seen = new HashMap<>();
+        for (Long id : agentThreadIds.get()) {
+            long cpu = threadBean.getThreadCpuTime(id);
+            if (cpu < 0) {
+                continue;
+            }
+            Long previous = lastCpuByThread.get(id);
+            if (previous != null) {
+                total += Math.max(0, cpu - previous);
+            }
+            seen.put(id, cpu);
+        }
+        lastCpuByThread.clear();
+        lastCpuByThread.putAll(seen);
+        return total;
+    }
+
+    private void transition(CollectorProfile from, CollectorProfile to, String reason) {
+        controller.setProfile(to);
+        System.out.println("[JfrTail] Governor: " + from + " -> " + to + " (" + reason + ")");
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("ts", Instant.now().toString());
+        entry.put("from", from.name());
+        entry.put("to", to.name());
+        entry.put("reason", reason);
+        synchronized (transitions) {
+            if (transitions.size() >= MAX_TRANSITIONS) {
+                transitions.removeFirst();
+            }
+            transitions.addLast(entry);
+        }
+
+        ProfileChangeEvent event = new ProfileChangeEvent();
+        event.from = from.name();
+        event.to = to.name();
+        event.reason = reason;
+        event.agentCpuPercent = cpuPercent;
+        event.eventsPerSecond = eventsPerSecond;
+        event.commit();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("profile", controller.getProfile().name());
+        stats.put("max_profile", ceiling.name());
+        stats.put("budget_cpu_percent", budgetPercent);
+        stats.put("agent_cpu_percent", round(cpuPercent));
+        stats.put("events_per_sec", round(eventsPerSecond));
+        stats.put("serialization_us_per_event", round(serializationMicrosPerEvent));
+        List<Map<String, Object>> recent;
+        synchronized (transitions) {
+            recent = new ArrayList<>(transitions);
+        }
+        stats.put("transitions", recent);
+        return stats;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
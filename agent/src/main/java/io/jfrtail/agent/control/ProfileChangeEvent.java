@@ -0,0 +1,33 @@
+package io.jfrtail.agent.control;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Committed by the {@link OverheadGovernor} when it changes profile, so the
+ * transition travels the normal pipeline: stats history, alerts and every
+ * stream client see why detail appeared or disappeared.
+ */
+@Name(ProfileChangeEvent.NAME)
+@Label("JFR-Tail Profile Change")
+@Category("JFR-Tail")
+class ProfileChangeEvent extends Event {
+    static final String NAME = "jfrtail.ProfileChange";
+
+    @Label("From")
+    String from;
+
+    @Label("To")
+    String to;
+
+    @Label("Reason")
+    String reason;
+
+    @Label("Agent CPU (% of one core)")
+    double agentCpuPercent;
+
+    @Label("Events per Second")
+    double eventsPerSecond;
+}
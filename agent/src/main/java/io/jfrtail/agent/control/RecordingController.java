@@ -0,0 +1,253 @@
+package io.jfrtail.agent.control;
+
+import io.jfrtail.common.CollectorProfile;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the event settings of the live {@link RecordingStream}. Settings are
+ * derived from the current {@link CollectorProfile}, with per-event overrides
+ * (optionally expiring) layered on top, and pushed to the stream as a whole
+ * with {@link RecordingStream#setSettings}, so both can change while the
+ * stream runs.
+ */
+public class RecordingController {
+    /** Settings an override may change. */
+    public static final Set<String> OVERRIDABLE = Set.of("enabled", "threshold", "period", "stackTrace");
+
+    private static final Pattern DURATION = Pattern.compile("\\d+\\s*(ns|us|ms|s|m|h|d)");
+    private static final Set<String> SPECIAL_PERIODS = Set.of("everyChunk", "beginChunk", "endChunk");
+
+    private final RecordingStream stream;
+    private CollectorProfile profile;
+    private final Map<String, EventOverride> overrides = new LinkedHashMap<>();
+    private ScheduledExecutorService expiry;
+    // Types the settings name, enabled or not; updated on every apply
+    private volatile Map<String, Boolean> namedTypes = Map.of();
+
+    public RecordingController(RecordingStream stream, CollectorProfile profile) {
+        this.stream = stream;
+        this.profile = profile;
+    }
+
+    /** Pushes the current settings to the stream. */
+    public synchronized void apply() {
+        Map<String, String> settings = getSettings();
+        stream.setSettings(settings);
+        Map<String, Boolean> types = new HashMap<>();
+        settings.forEach((key, value) -> {
+            if (key.endsWith("#enabled")) {
+                types.put(key.substring(0, key.length() - "#enabled".length()), Boolean.parseBoolean(value));
+            }
+        });
+        namedTypes = types;
+    }
+
+    /**
+     * Whether the stream's own settings want the type. JFR records every event
+     * that any running recording enables, and the stream sees all of them: with
+     * another recording running (like the rolling one) this tells the extra
+     * JDK events apart. Types the settings do not name pass unless they are
+     * JDK events, so application events enabled by default keep flowing.
+     */
+    public boolean isStreamed(String type) {
+        Boolean enabled = namedTypes.get(type);
+        return enabled != null ? enabled : !type.startsWith("jdk.");
+    }
+
+    public synchronized CollectorProfile getProfile() {
+        return profile;
+    }
+
+    public synchronized void setProfile(CollectorProfile profile) {
+        if (this.profile != profile) {
+            this.profile = profile;
+            apply();
+        }
+    }
+
+    /** Effective settings: the profile's, then every active override. */
+    public synchronized Map<String, String> getSettings() {
+        Map<String, String> settings = profileSettings(profile);
+        for (EventOverride override : overrides.values()) {
+            override.settings.forEach((key, value) -> settings.put(override.event + "#" + key, value));
+        }
+        return Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * Overrides settings of one event type on the running stream, replacing any
+     * previous override of that type.
+     *
+     * @param settings keys from {@link #OVERRIDABLE}, JFR values such as
+     *                 {@code "true"}, {@code "10 ms"}, {@code "1 s"}
+     * @param ttl      how long until the override reverts by itself, or null to
+     *                 keep it until {@link #revert}
+     * @throws IllegalArgumentException for an unknown event type or setting
+     */
+    public synchronized Map<String, Object> override(String event, Map<String, String> settings, Duration ttl) {
+        validate(event, settings);
+        Instant expiresAt = ttl != null && !ttl.isZero() && !ttl.isNegative() ? Instant.now().plus(ttl) : null;
+        EventOverride override = new EventOverride(event, new LinkedHashMap<>(settings), expiresAt);
+        overrides.put(event, override);
+        apply();
+        if (expiresAt != null) {
+            expiryExecutor().schedule(() -> expire(override), ttl.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        System.out.println("[JfrTail] Override " + event + " " + settings
+                + (expiresAt != null ? " until " + expiresAt : ""));
+        return override.toMap();
+    }
+
+    /** @return false if the event had no override. */
+    public synchronized boolean revert(String event) {
+        if (overrides.remove(event) == null) {
+            return false;
+        }
+        apply();
+        System.out.println("[JfrTail] Override of " + event + " reverted");
+        return true;
+    }
+
+    public synchronized List<Map<String, Object>> getOverrides() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (EventOverride override : overrides.values()) {
+            list.add(override.toMap());
+        }
+        return list;
+    }
+
+    public synchronized void shutdown() {
+        if (expiry != null) {
+            expiry.shutdownNow();
+        }
+    }
+
+    private synchronized void expire(EventOverride override) {
+        // Only if it was not replaced or reverted in the meantime
+        if (overrides.get(override.event) == override) {
+            revert(override.event);
+        }
+    }
+
+    private ScheduledExecutorService expiryExecutor() {
+        if (expiry == null) {
+            expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jfr-tail-control");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return expiry;
+    }
+
+    private static void validate(String event, Map<String, String> settings) {
+        if (event == null || event.isEmpty()) {
+            throw new IllegalArgumentException("Event type is required");
+        }
+        boolean known = false;
+        for (EventType type : FlightRecorder.getFlightRecorder().getEventTypes()) {
+            if (type.getName().equals(event)) {
+                known = true;
+                break;
+            }
+        }
+        if (!known) {
+            throw new IllegalArgumentException("Unknown event type: " + event);
+        }
+        if (settings.isEmpty()) {
+            throw new IllegalArgumentException("No settings given for " + event);
+        }
+        settings.forEach((key, value) -> {
+            if (!OVERRIDABLE.contains(key)) {
+                throw new IllegalArgumentException("Setting not supported: " + key);
+            }
+            boolean valid;
+            switch (key) {
+                case "enabled":
+                case "stackTrace":
+                    valid = "true".equals(value) || "false".equals(value);
+                    break;
+                case "period":
+                    valid = SPECIAL_PERIODS.contains(value) || DURATION.matcher(value).matches();
+                    break;
+                default:
+                    valid = DURATION.matcher(value).matches();
+            }
+            if (!valid) {
+                throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+            }
+        });
+    }
+
+    /**
+     * Every event the agent may use appears in every profile, disabled where
+     * the profile does not want it: settings are replaced as a whole.
+     */
+    static Map<String, String> profileSettings(CollectorProfile profile) {
+        boolean balanced = profile == CollectorProfile.HIGH || profile == CollectorProfile.BALANCED;
+        boolean high = profile == CollectorProfile.HIGH;
+
+        Map<String, String> settings = new LinkedHashMap<>();
+        enable(settings, "jdk.GarbageCollection", true);
+        enable(settings, "jdk.GCHeapSummary", true);
+        settings.put("jdk.GCHeapSummary#period", "1 s");
+
+        // Lower thresholds to zero (capture all) for maximum visibility into contention
+        enable(settings, "jdk.ExceptionThrown", balanced);
+        enable(settings, "jdk.JavaMonitorEnter", balanced);
+        settings.put("jdk.JavaMonitorEnter#threshold", "0 ns");
+        enable(settings, "jdk.ThreadPark", balanced);
+        settings.put("jdk.ThreadPark#threshold", "0 ns");
+
+        enable(settings, "jdk.ObjectAllocationOutsideTLAB", high);
+        settings.put("jdk.ObjectAllocationOutsideTLAB#threshold", "0 ns");
+        enable(settings, "jdk.MetaspaceSummary", high);
+        settings.put("jdk.MetaspaceSummary#period", "5 s");
+
+        enable(settings, "jdk.CPULoad", true);
+        settings.put("jdk.CPULoad#period", "1 s");
+
+        enable(settings, ProfileChangeEvent.NAME, true);
+        return settings;
+    }
+
+    private static void enable(Map<String, String> settings, String event, boolean enabled) {
+        settings.put(event + "#enabled", String.valueOf(enabled));
+    }
+
+    private static final class EventOverride {
+        final String event;
+        final Map<String, String> settings;
+        final Instant expiresAt;
+
+        EventOverride(String event, Map<String, String> settings, Instant expiresAt) {
+            this.event = event;
+            this.settings = settings;
+            this.expiresAt = expiresAt;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("event", event);
+            map.put("settings", settings);
+            map.put("expires_at", expiresAt != null ? expiresAt.toString() : null);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.jfrtail.agent.control;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A plain JFR recording kept on disk in the background, holding the last
+ * {@code maxAge} of data, so an incident bundle can carry a {@code .jfr} file
+ * to open in JMC. Uses the JDK's {@code default} settings, the ones meant for
+ * always-on production use, independently of the live stream's profile.
+ * Off unless configured.
+ */
+public class RollingRecording {
+    private static final String NAME = "jfr-tail-rolling";
+
+    private final Recording recording;
+    private final Duration maxAge;
+
+    public RollingRecording(Duration maxAge) throws IOException, ParseException {
+        this.maxAge = maxAge;
+        this.recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName(NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+    }
+
+    public RollingRecording start() {
+        recording.start();
+        System.out.println("[JfrTail] Rolling recording started, keeping the last " + maxAge.toMinutes()
+                + " min for incident bundles");
+        return this;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Writes the recorded data of the last {@code window} (at most
+     * {@link #getMaxAge()}) as a {@code .jfr} file. Reads from a stopped copy
+     * of the recording, chunk files straight to {@code out}, without loading
+     * them into memory; the background recording keeps running.
+     *
+     * @return bytes written; 0 if nothing was recorded yet.
+     */
+    public long dump(Duration window, OutputStream out) throws IOException {
+        Duration span = window.compareTo(maxAge) < 0 ? window : maxAge;
+        try (Recording copy = recording.copy(true)) {
+            Instant end = Instant.now();
+            try (InputStream in = copy.getStream(end.minus(span), end)) {
+                return in != null ? in.transferTo(out) : 0;
+            }
+        }
+    }
+
+    public void stop() {
+        recording.close();
+    }
+}
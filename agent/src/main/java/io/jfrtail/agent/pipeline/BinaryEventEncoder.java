@@ -0,0 +1,68 @@
+package io.jfrtail.agent.pipeline;
+
+import io.jfrtail.common.wire.BinaryEventWriter;
+
+import java.time.Instant;
+
+/**
+ * Walks a {@link CapturedEvent}'s plan into a connection's
+ * {@link BinaryEventWriter}. Values are read straight from the captured slots,
+ * nothing is boxed.
+ */
+public final class BinaryEventEncoder {
+
+    private BinaryEventEncoder() {
+    }
+
+    /**
+     * @return the event frame; state frames are left in the writer for
+     *         {@link BinaryEventWriter#takeStateFrames()}.
+     */
+    public static byte[] encode(CapturedEvent event, BinaryEventWriter writer) {
+        Instant ts = event.getStartTime();
+        CapturedStack stack = event.getStack();
+        if (stack != null && writer.needsStack(stack.id)) {
+            writer.defineStack(stack.id, stack.frames, stack.truncated);
+        }
+        writer.beginEvent(event.getType(), ts.getEpochSecond() * 1_000_000_000L + ts.getNano(),
+                event.getThread(), event.getDurationNanos(), stack != null ? stack.id : -1);
+        writeFields(event, writer);
+        return writer.endEvent();
+    }
+
+    private static void writeFields(CapturedObject object, BinaryEventWriter writer) {
+        for (ObjectPlan.Field field : object.plan.fields) {
+            String name = field.name;
+            switch (field.kind) {
+                case LONG:
+                case DURATION:
+                    writer.writeLong(name, object.longs[field.slot]);
+                    break;
+                case DOUBLE:
+                    writer.writeDouble(name, Double.longBitsToDouble(object.longs[field.slot]));
+                    break;
+                case BOOLEAN:
+                    writer.writeBoolean(name, object.longs[field.slot] != 0);
+                    break;
+                case CLASS:
+                    writer.writeClass(name, (String) object.refs[field.slot]);
+                    break;
+                case THREAD:
+                    writer.writeThread(name, (String) object.refs[field.slot]);
+                    break;
+                case OBJECT:
+                    CapturedObject nested = (CapturedObject) object.refs[field.slot];
+                    if (nested != null) {
+                        writer.beginObject(name);
+                        writeFields(nested, writer);
+                        writer.endObject();
+                    } else {
+                        writer.writeNull(name);
+                    }
+                    break;
+                default:
+                    writer.writeString(name, (String) object.refs[field.slot]);
+            }
+        }
+    }
+}
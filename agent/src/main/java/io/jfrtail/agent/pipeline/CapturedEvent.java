@@ -0,0 +1,131 @@
+package io.jfrtail.agent.pipeline;
+
+import io.jfrtail.common.EventCategory;
+import io.jfrtail.common.JfrEvent;
+import jdk.jfr.consumer.RecordedEvent;
+
+import java.time.Instant;
+
+/**
+ * Typed copy of a {@link RecordedEvent}, taken once on the JFR thread (the
+ * recorded event itself is reused by the stream and must not escape the
+ * callback). Immutable once published: the only mutable field,
+ * {@code sequence}, is assigned exactly once by {@link EventRing#publish}
+ * before the slot's volatile write makes the event visible to consumers.
+ * <p>
+ * Stats and alerts read it directly; the network consumer serializes it once
+ * with {@link EventEncoder}; {@link #toJfrEvent()} only runs when somebody
+ * asks for history over HTTP.
+ */
+public final class CapturedEvent extends CapturedObject {
+    public static final long PID = ProcessHandle.current().pid();
+    public static final long NO_DURATION = -1L;
+
+    private final Instant startTime;
+    private final String thread;
+    private final long durationNanos;
+    private final long weight;
+    private final CapturedStack stack;
+    // Set by EventRing.publish before the event is visible to consumers
+    private long sequence = -1;
+
+    private CapturedEvent(EventPlan plan, RecordedEvent event, String thread, long weight, CapturedStack stack) {
+        super(plan, event);
+        this.startTime = event.getStartTime();
+        this.thread = thread;
+        this.durationNanos = plan.hasDuration ? event.getDuration().toNanos() : NO_DURATION;
+        this.weight = weight;
+        this.stack = stack;
+    }
+
+    /**
+     * Copies the recorded event following its type's precomputed plan. The
+     * header fields ({@code startTime}, {@code duration}, {@code eventThread})
+     * are lifted out; {@code stackTrace} is not copied as a field, the caller
+     * passes it already interned.
+     *
+     * @param weight number of raw events this one stands for after sampling and
+     *               rate limiting (see {@link EventLimiter}).
+     * @param stack  the event's stack as interned by {@link StackInterner}, or
+     *               null if not captured.
+     */
+    public static CapturedEvent capture(EventPlan plan, RecordedEvent event, String thread, long weight,
+            CapturedStack stack) {
+        return new CapturedEvent(plan, event, thread, weight, stack);
+    }
+
+    public static String threadName(RecordedEvent event) {
+        String name = threadName(event.getThread());
+        return name != null ? name : "System";
+    }
+
+    public EventPlan getEventPlan() {
+        return (EventPlan) plan;
+    }
+
+    public String getType() {
+        return ((EventPlan) plan).typeName;
+    }
+
+    public EventCategory getCategory() {
+        return ((EventPlan) plan).category;
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public boolean hasDuration() {
+        return durationNanos != NO_DURATION;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getDurationMs() {
+        return durationNanos / 1_000_000.0;
+    }
+
+    /** Raw events represented by this one; 1 unless the type is sampled or rate limited. */
+    public long getWeight() {
+        return weight;
+    }
+
+    /** @return the interned stack trace, or null if not captured. */
+    public CapturedStack getStack() {
+        return stack;
+    }
+
+    /**
+     * @return the number the event was published under in the
+     *         {@link EventRing}, also its number in the history and its SSE
+     *         id; -1 if it was not published.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /** The event's own (non-header) fields. */
+    public CapturedObject getFields() {
+        return this;
+    }
+
+    public JfrEvent toJfrEvent() {
+        JfrEvent event = new JfrEvent(startTime, PID, getType(), thread, hasDuration() ? getDurationMs() : null,
+                toMap());
+        if (stack != null) {
+            event.setStackId(stack.id);
+            event.setStackTrace(stack.getFrames());
+        }
+        return event;
+    }
+}
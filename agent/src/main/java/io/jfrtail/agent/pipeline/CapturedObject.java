@@ -0,0 +1,165 @@
+package io.jfrtail.agent.pipeline;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedObject;
+import jdk.jfr.consumer.RecordedThread;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Values of a {@link RecordedObject} copied out on the JFR thread following an
+ * {@link ObjectPlan}. Primitives go unboxed into {@code longs} (doubles as raw
+ * bits, timespans in nanoseconds), everything else into {@code refs}: classes and threads reduced to
+ * their names, nested objects as nested {@code CapturedObject}s.
+ */
+public class CapturedObject {
+    private static final long[] EMPTY_LONGS = new long[0];
+    private static final Object[] EMPTY_REFS = new Object[0];
+
+    final ObjectPlan plan;
+    final long[] longs;
+    final Object[] refs;
+
+    CapturedObject(ObjectPlan plan, RecordedObject object) {
+        this.plan = plan;
+        this.longs = plan.longSlots == 0 ? EMPTY_LONGS : new long[plan.longSlots];
+        this.refs = plan.refSlots == 0 ? EMPTY_REFS : new Object[plan.refSlots];
+        for (ObjectPlan.Field field : plan.fields) {
+            String name = field.name;
+            switch (field.kind) {
+                case LONG:
+                    longs[field.slot] = object.getLong(name);
+                    break;
+                case DURATION:
+                    longs[field.slot] = durationNanos(object, name);
+                    break;
+                case DOUBLE:
+                    longs[field.slot] = Double.doubleToRawLongBits(object.getDouble(name));
+                    break;
+                case BOOLEAN:
+                    longs[field.slot] = object.getBoolean(name) ? 1 : 0;
+                    break;
+                case STRING:
+                    refs[field.slot] = object.getString(name);
+                    break;
+                case CLASS:
+                    RecordedClass clazz = object.getClass(name);
+                    refs[field.slot] = clazz != null ? clazz.getName() : null;
+                    break;
+                case THREAD:
+                    refs[field.slot] = threadName(object.getThread(name));
+                    break;
+                case OBJECT:
+                    RecordedObject nested = object.getValue(name);
+                    refs[field.slot] = nested != null ? new CapturedObject(field.nested, nested) : null;
+                    break;
+                default:
+                    Object value = object.getValue(name);
+                    refs[field.slot] = value != null ? value.toString() : null;
+            }
+        }
+    }
+
+    /**
+     * getLong would return the raw value, in ticks for most JDK timespans;
+     * getDuration converts whatever the unit. JFR's "infinite" and "unknown"
+     * sentinels do not fit in nanoseconds and saturate.
+     */
+    private static long durationNanos(RecordedObject object, String name) {
+        Duration duration = object.getDuration(name);
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    static String threadName(RecordedThread thread) {
+        if (thread == null) {
+            return null;
+        }
+        return thread.getJavaName() != null ? thread.getJavaName() : thread.getOSName();
+    }
+
+    public ObjectPlan getPlan() {
+        return plan;
+    }
+
+    /** Boxed value of a field, for the rare callers that want one. */
+    public Object get(String name) {
+        ObjectPlan.Field field = plan.field(name);
+        return field != null ? value(field) : null;
+    }
+
+    Object value(ObjectPlan.Field field) {
+        switch (field.kind) {
+            case LONG:
+            case DURATION:
+                return longs[field.slot];
+            case DOUBLE:
+                return Double.longBitsToDouble(longs[field.slot]);
+            case BOOLEAN:
+                return longs[field.slot] != 0;
+            default:
+                return refs[field.slot];
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        ObjectPlan.Field field = plan.field(name);
+        if (field == null) {
+            return defaultValue;
+        }
+        switch (field.kind) {
+            case LONG:
+            case DURATION:
+            case BOOLEAN:
+                return longs[field.slot];
+            case DOUBLE:
+                return (long) Double.longBitsToDouble(longs[field.slot]);
+            default:
+                return defaultValue;
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        ObjectPlan.Field field = plan.field(name);
+        if (field == null) {
+            return defaultValue;
+        }
+        switch (field.kind) {
+            case LONG:
+            case DURATION:
+                return longs[field.slot];
+            case DOUBLE:
+                return Double.longBitsToDouble(longs[field.slot]);
+            default:
+                return defaultValue;
+        }
+    }
+
+    public String getString(String name) {
+        ObjectPlan.Field field = plan.field(name);
+        if (field == null) {
+            return null;
+        }
+        Object value = value(field);
+        return value != null ? value.toString() : null;
+    }
+
+    public CapturedObject getObject(String name) {
+        ObjectPlan.Field field = plan.field(name);
+        return field != null && field.kind == ObjectPlan.Kind.OBJECT ? (CapturedObject) refs[field.slot] : null;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (ObjectPlan.Field field : plan.fields) {
+            Object value = value(field);
+            map.put(field.name, value instanceof CapturedObject ? ((CapturedObject) value).toMap() : value);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,69 @@
+package io.jfrtail.agent.pipeline;
+
+import io.jfrtail.common.JfrEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An interned stack trace: every event with the same frames (up to the
+ * configured depth) shares one instance and one id. Frames are interned
+ * strings, so equality is checked by identity.
+ */
+public final class CapturedStack {
+    final long id;
+    final String[] frames;
+    final boolean truncated;
+    private final int hash;
+
+    /** JSONL definition line, encoded once by whichever encoder needs it first. */
+    volatile byte[] jsonDefinition;
+
+    CapturedStack(long id, String[] frames, boolean truncated, int hash) {
+        this.id = id;
+        this.frames = frames;
+        this.truncated = truncated;
+        this.hash = hash;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /** @return frames innermost first, ending with {@link JfrEvent#TRUNCATED_FRAME} if cut. */
+    public List<String> getFrames() {
+        List<String> list = new ArrayList<>(frames.length + 1);
+        Collections.addAll(list, frames);
+        if (truncated) {
+            list.add(JfrEvent.TRUNCATED_FRAME);
+        }
+        return list;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    boolean sameFrames(String[] other, int count, boolean otherTruncated) {
+        if (truncated != otherTruncated || frames.length != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (frames[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int hash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "stack#" + id + Arrays.toString(frames);
+    }
+}
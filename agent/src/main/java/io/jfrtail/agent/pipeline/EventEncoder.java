@@ -0,0 +1,167 @@
+package io.jfrtail.agent.pipeline;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Streams a {@link CapturedEvent} to a JSON line with one long-lived
+ * {@link JsonGenerator} writing into a reused byte buffer. The only per-event
+ * allocation is the returned array, which all subscribers share.
+ * <p>
+ * Not thread-safe: each consumer thread owns its own encoder.
+ */
+public class EventEncoder {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final PooledOutput out = new PooledOutput(4096);
+    private final JsonGenerator generator;
+
+    public EventEncoder() {
+        try {
+            generator = FACTORY.createGenerator(out);
+            generator.setRootValueSeparator(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the event as UTF-8 JSON terminated by a newline.
+     */
+    public byte[] encode(CapturedEvent event) {
+        out.reset();
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("ts", event.getStartTime().toString());
+            generator.writeNumberField("pid", CapturedEvent.PID);
+            generator.writeStringField("event", event.getType());
+            generator.writeStringField("thread", event.getThread());
+            if (event.hasDuration()) {
+                generator.writeNumberField("duration_ms", event.getDurationMs());
+            }
+            if (event.getStack() != null) {
+                generator.writeNumberField("stack_id", event.getStack().id);
+            }
+            generator.writeFieldName("fields");
+            writeObject(event);
+            generator.writeEndObject();
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the line defining a stack, sent to a JSONL client once before
+     *         the first event that refers to it:
+     *         {@code {"stack":{"id":1,"truncated":false,"frames":[...]}}}.
+     *         Encoded once per stack and cached.
+     */
+    public byte[] encodeDefinition(CapturedStack stack) {
+        if (stack.jsonDefinition != null) {
+            return stack.jsonDefinition;
+        }
+        out.reset();
+        try {
+            generator.writeStartObject();
+            generator.writeFieldName("stack");
+            generator.writeStartObject();
+            generator.writeNumberField("id", stack.id);
+            generator.writeBooleanField("truncated", stack.truncated);
+            generator.writeArrayFieldStart("frames");
+            for (String frame : stack.frames) {
+                generator.writeString(frame);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.write('\n');
+        return stack.jsonDefinition = out.toByteArray();
+    }
+
+    private void writeObject(CapturedObject object) throws IOException {
+        generator.writeStartObject();
+        for (ObjectPlan.Field field : object.plan.fields) {
+            generator.writeFieldName(field.jsonName);
+            switch (field.kind) {
+                case LONG:
+                case DURATION:
+                    generator.writeNumber(object.longs[field.slot]);
+                    break;
+                case DOUBLE:
+                    writeDouble(Double.longBitsToDouble(object.longs[field.slot]));
+                    break;
+                case BOOLEAN:
+                    generator.writeBoolean(object.longs[field.slot] != 0);
+                    break;
+                case OBJECT:
+                    CapturedObject nested = (CapturedObject) object.refs[field.slot];
+                    if (nested != null) {
+                        writeObject(nested);
+                    } else {
+                        generator.writeNull();
+                    }
+                    break;
+                default:
+                    generator.writeString((String) object.refs[field.slot]);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeDouble(double value) throws IOException {
+        if (Double.isFinite(value)) {
+            generator.writeNumber(value);
+        } else {
+            generator.writeString(Double.toString(value));
+        }
+    }
+
+    /** Growable byte sink that keeps its array between events. */
+    private static final class PooledOutput extends OutputStream {
+        private byte[] buf;
+        private int count;
+
+        PooledOutput(int initialSize) {
+            buf = new byte[initialSize];
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        private void ensure(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+    }
+}
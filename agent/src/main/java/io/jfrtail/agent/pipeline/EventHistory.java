@@ -0,0 +1,142 @@
+package io.jfrtail.agent.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-capacity history of the most recent events, served over HTTP.
+ * <p>
+ * Events keep the sequence number they were published under in the
+ * {@link EventRing}, so a number means the same event in the history, in
+ * HTTP cursors and as an SSE id. Events the history never saw (its consumer
+ * fell a lap behind the ring) leave empty slots. Adding fills the slot
+ * seqlock style, like {@link EventRing}: no lock, no copying, no allocation.
+ * Readers copy any range of sequence numbers without blocking the writer;
+ * a slot overwritten while being read is skipped, as it no longer belongs to
+ * the range. Clients poll with the sequence number returned by {@link #read}
+ * as a cursor and only get what was added since.
+ */
+public final class EventHistory {
+    private static final long IN_PROGRESS = -1L;
+
+    private final Slot[] slots;
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    public EventHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Adds an event under {@link #sequenceOf its number}. Single writer: the
+     * stats consumer, in ring order.
+     *
+     * @return the sequence number given to the event.
+     */
+    public long add(CapturedEvent event) {
+        long seq = sequenceOf(event);
+        long last = cursor.get();
+        // Mark numbers skipped by a ring overrun as read-through, at most one lap of them
+        for (long missing = Math.max(last + 1, seq - slots.length + 1); missing < seq; missing++) {
+            Slot slot = slots[(int) (missing % slots.length)];
+            slot.sequence = IN_PROGRESS;
+            slot.event = null;
+            slot.sequence = missing;
+        }
+        Slot slot = slots[(int) (seq % slots.length)];
+        slot.sequence = IN_PROGRESS;
+        slot.event = event;
+        slot.sequence = seq;
+        cursor.set(seq);
+        return seq;
+    }
+
+    /**
+     * @return the number {@link #add} gives the event: its ring sequence, or
+     *         the next one for an event that was not published through a ring.
+     */
+    public long sequenceOf(CapturedEvent event) {
+        return Math.max(event.getSequence(), cursor.get() + 1);
+    }
+
+    /** @return sequence number of the newest event, -1 if there is none. */
+    public long getLastSequence() {
+        return cursor.get();
+    }
+
+    /** @return sequence number of the oldest event still held. */
+    public long getFirstSequence() {
+        return Math.max(0, cursor.get() - slots.length + 1);
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /** @return every event held, oldest first. */
+    public List<CapturedEvent> copy() {
+        return copy(0, slots.length);
+    }
+
+    /**
+     * @param fromSequence first sequence number wanted; older ones that were
+     *                     already overwritten are silently skipped
+     * @param limit        maximum number of events returned
+     * @return events from {@code fromSequence} on, oldest first.
+     */
+    public List<CapturedEvent> copy(long fromSequence, int limit) {
+        List<CapturedEvent> events = new ArrayList<>(Math.min(limit, slots.length));
+        read(fromSequence, limit, (seq, event) -> events.add(event));
+        return events;
+    }
+
+    /**
+     * Passes events from {@code fromSequence} on to {@code reader}, oldest
+     * first, with their sequence numbers. Older ones that were already
+     * overwritten are silently skipped.
+     *
+     * @param limit maximum number of events read
+     * @return the sequence number to read from next time: one past the last
+     *         one covered, or {@code fromSequence} if there was nothing new
+     */
+    public long read(long fromSequence, int limit, Reader reader) {
+        long last = cursor.get();
+        long first = Math.max(fromSequence, Math.max(0, last - slots.length + 1));
+        long end = Math.min(last, first + Math.min(limit, slots.length) - 1);
+        for (long seq = first; seq <= end; seq++) {
+            Slot slot = slots[(int) (seq % slots.length)];
+            long held = slot.sequence;
+            if (held < seq) {
+                // Claimed but still being written: resume here next time rather than lose it
+                return Math.max(fromSequence, seq);
+            }
+            if (held > seq) {
+                // Already reused by a later event
+                continue;
+            }
+            CapturedEvent event = slot.event;
+            if (slot.sequence == seq && event != null) {
+                reader.accept(seq, event);
+            }
+        }
+        return Math.max(fromSequence, end + 1);
+    }
+
+    /** Receives events read from the history, see {@link #read}. */
+    @FunctionalInterface
+    public interface Reader {
+        void accept(long sequence, CapturedEvent event);
+    }
+
+    private static final class Slot {
+        // Both volatile so a reader can detect a concurrent overwrite without a lock
+        volatile long sequence = IN_PROGRESS;
+        volatile CapturedEvent event;
+    }
+}
@@ -0,0 +1,100 @@
+package io.jfrtail.agent.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Admission control for one event type, applied on the JFR thread before the
+ * event is captured: first probabilistic sampling, then a token bucket.
+ * <p>
+ * Every admitted event carries a weight: the number of raw events it stands
+ * for. Sampling at probability {@code p} contributes {@code 1/p} (fractions are
+ * carried over so weights stay integral), and events refused by the bucket
+ * are added to the next admitted one. Summing weights therefore reproduces
+ * the raw counts: in expectation for sampling, and exactly for rate limiting
+ * as soon as the next event of the type is admitted.
+ * <p>
+ * Single writer: only the JFR thread calls {@link #admit}.
+ */
+public final class EventLimiter {
+    private final String type;
+    private final double probability;
+    private final double ratePerSecond;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private double sampleCredit;
+    private long carried;
+
+    private volatile long seen;
+    private volatile long admitted;
+
+    /**
+     * @param probability   fraction of events kept, {@code (0, 1]}
+     * @param ratePerSecond maximum admitted events per second, or 0 for no limit
+     */
+    EventLimiter(String type, double probability, double ratePerSecond) {
+        this.type = type;
+        this.probability = probability;
+        this.ratePerSecond = ratePerSecond;
+        // Allow one second worth of events in a burst
+        this.burst = Math.max(1, ratePerSecond);
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the weight of the event, or 0 if it must be dropped.
+     */
+    public long admit() {
+        seen++;
+        long weight = 1;
+        if (probability < 1) {
+            if (ThreadLocalRandom.current().nextDouble() >= probability) {
+                return 0;
+            }
+            sampleCredit += 1 / probability;
+            weight = (long) sampleCredit;
+            sampleCredit -= weight;
+        }
+        if (ratePerSecond > 0) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerSecond / 1_000_000_000.0);
+            lastRefillNanos = now;
+            if (tokens < 1) {
+                carried += weight;
+                return 0;
+            }
+            tokens -= 1;
+            weight += carried;
+            carried = 0;
+        }
+        admitted++;
+        return weight;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /** @return events refused so far (sampled out or over the rate limit). */
+    public long getRejected() {
+        return seen - admitted;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("type", type);
+        if (probability < 1) {
+            stats.put("sample_probability", probability);
+        }
+        if (ratePerSecond > 0) {
+            stats.put("rate_limit_per_sec", ratePerSecond);
+        }
+        stats.put("seen", seen);
+        stats.put("admitted", admitted);
+        return stats;
+    }
+}
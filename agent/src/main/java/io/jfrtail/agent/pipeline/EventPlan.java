@@ -0,0 +1,75 @@
+package io.jfrtail.agent.pipeline;
+
+import io.jfrtail.common.EventCategory;
+import jdk.jfr.EventType;
+
+import java.util.Set;
+
+/**
+ * {@link ObjectPlan} for an event type, with the header fields lifted out.
+ * Plans are cached per {@link EventType#getId()} by {@link PlanCache}.
+ */
+public final class EventPlan extends ObjectPlan {
+    /** Prefix of the agent's own event types, e.g. the governor's profile changes. */
+    public static final String AGENT_EVENT_PREFIX = "jfrtail.";
+    // Header fields are captured separately (or not at all)
+    private static final Set<String> HEADER = Set.of("startTime", "duration", "eventThread", "stackTrace");
+
+    final long typeId;
+    final String typeName;
+    final EventCategory category;
+    // Dense per-type number, 0, 1, 2... in order of first appearance
+    final int index;
+    final boolean hasDuration;
+    final boolean hasStackTrace;
+    final boolean agentEvent;
+    /** Null unless the sampling policy has a rule for this type. */
+    final EventLimiter limiter;
+
+    EventPlan(EventType type, SamplingPolicy sampling, int index) {
+        super(type.getFields(), HEADER, 0);
+        this.typeId = type.getId();
+        this.typeName = type.getName();
+        this.category = EventCategory.of(typeName);
+        this.index = index;
+        this.hasDuration = type.getField("duration") != null;
+        this.hasStackTrace = type.getField("stackTrace") != null;
+        this.agentEvent = typeName.startsWith(AGENT_EVENT_PREFIX);
+        this.limiter = sampling.limiterFor(typeName);
+    }
+
+    /**
+     * Runs the type's limiter, if any.
+     *
+     * @return the weight to capture the event with, or 0 to drop it.
+     */
+    public long admit() {
+        return limiter != null ? limiter.admit() : 1;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public EventCategory getCategory() {
+        return category;
+    }
+
+    /**
+     * Small number unique to the type within this agent, for per-type state
+     * kept in arrays rather than maps keyed by name.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /** True if the type records a stack trace (when its {@code stackTrace} setting is on). */
+    public boolean hasStackTrace() {
+        return hasStackTrace;
+    }
+
+    /** True for events the agent commits itself, which are always streamed. */
+    public boolean isAgentEvent() {
+        return agentEvent;
+    }
+}
@@ -0,0 +1,124 @@
+package io.jfrtail.agent.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Preallocated ring buffer sitting between the JFR stream callback and every
+ * consumer of its events (stats, alerts, network fan-out).
+ * <p>
+ * Publishing never blocks and never waits for consumers: each consumer owns its
+ * own cursor, and a consumer that falls more than one lap behind skips ahead and
+ * counts the overwritten events as dropped.
+ */
+public class EventRing {
+    private static final long IN_PROGRESS = -1L;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final List<RingConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    public EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Publishes an event. Called from the JFR stream thread; only claims a slot,
+     * stores the reference and wakes up consumers that are parked.
+     */
+    public long publish(CapturedEvent event) {
+        long seq = cursor.incrementAndGet();
+        Slot slot = slots[(int) (seq & mask)];
+        slot.sequence = IN_PROGRESS;
+        event.setSequence(seq);
+        slot.event = event;
+        slot.sequence = seq;
+        for (RingConsumer consumer : consumers) {
+            consumer.wakeUp();
+        }
+        return seq;
+    }
+
+    /**
+     * Creates a consumer with its own cursor, starting at the next published
+     * event. The consumer is not started.
+     */
+    public RingConsumer addConsumer(String name, Consumer<CapturedEvent> handler) {
+        RingConsumer consumer = new RingConsumer(name, this, handler, cursor.get());
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    void removeConsumer(RingConsumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public List<RingConsumer> getConsumers() {
+        return consumers;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> consumerStats = new LinkedHashMap<>();
+        long published = cursor.get() + 1;
+        for (RingConsumer consumer : consumers) {
+            consumerStats.put(consumer.getName(), Map.of(
+                    "lag", consumer.getLag(),
+                    "processed", consumer.getProcessed(),
+                    "dropped", consumer.getDropped()));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", slots.length);
+        stats.put("published", published);
+        stats.put("consumers", consumerStats);
+        return stats;
+    }
+
+    /**
+     * Reads the event stored for {@code seq}.
+     *
+     * @return the event, {@code null} if it has not been published yet, or
+     *         {@link #OVERRUN} if the slot was already reused by a later lap.
+     */
+    Object read(long seq) {
+        Slot slot = slots[(int) (seq & mask)];
+        long before = slot.sequence;
+        if (before == IN_PROGRESS || before < seq) {
+            return null;
+        }
+        if (before > seq) {
+            return OVERRUN;
+        }
+        CapturedEvent event = slot.event;
+        if (slot.sequence != seq) {
+            return OVERRUN;
+        }
+        return event;
+    }
+
+    static final Object OVERRUN = new Object();
+
+    private static final class Slot {
+        // Both fields are volatile so a reader can detect a concurrent overwrite
+        // (seqlock style) without taking any lock.
+        volatile long sequence = IN_PROGRESS;
+        volatile CapturedEvent event;
+    }
+}
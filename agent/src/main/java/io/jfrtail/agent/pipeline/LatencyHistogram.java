@@ -0,0 +1,192 @@
+package io.jfrtail.agent.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-bucketed latency histogram with one fixed layout: a bucket for values up
+ * to 1 us, then {@value #SUB_BUCKETS} sub-buckets per power of two up to
+ * 2^25 us (~33 s), then overflow. Percentiles are reported as the upper bound
+ * of the bucket they fall in, capped at the largest value seen, so they are at
+ * most 25% above the true value.
+ * <p>
+ * Recording is a division and a few atomic adds: no allocation, safe from any
+ * thread, cheap enough for the JFR thread. Since every instance has the same
+ * layout, histograms merge by adding bucket counts: across time windows with
+ * {@link #merge}, across agents by summing the exported buckets (or the
+ * Prometheus series, whose {@code le} bounds are identical everywhere).
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int OCTAVES = 25;
+    /** <= 1 us, 4 per octave from 1 us to 2^25 us, overflow. */
+    private static final int BUCKETS = 1 + OCTAVES * SUB_BUCKETS + 1;
+    // Bucket arithmetic is done in quarter microseconds, so the smallest octave has 4 distinct values
+    private static final long QUANTUM_NANOS = 250;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(3); // count, sum and max in nanos
+
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /** Records {@code count} occurrences of the value, e.g. the weight of a sampled event. */
+    public void record(long nanos, long count) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.addAndGet(bucketOf(nanos), count);
+        totals.addAndGet(0, count);
+        totals.addAndGet(1, nanos * count);
+        raiseMax(nanos);
+    }
+
+    /** Adds the other histogram's counts to this one. */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.counts.get(i);
+            if (n != 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+        totals.addAndGet(0, other.totals.get(0));
+        totals.addAndGet(1, other.totals.get(1));
+        raiseMax(other.totals.get(2));
+    }
+
+    // Compare and set, so a larger value recorded concurrently is never overwritten
+    private void raiseMax(long nanos) {
+        long max = totals.get(2);
+        while (nanos > max && !totals.compareAndSet(2, max, nanos)) {
+            max = totals.get(2);
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        long quanta = (nanos + QUANTUM_NANOS - 1) / QUANTUM_NANOS;
+        if (quanta <= SUB_BUCKETS) {
+            return 0;
+        }
+        long v = quanta - 1;
+        int octave = 63 - Long.numberOfLeadingZeros(v) - 2;
+        if (octave >= OCTAVES) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (v >>> octave) & (SUB_BUCKETS - 1);
+        return 1 + octave * SUB_BUCKETS + sub;
+    }
+
+    /** @return upper bound of bucket {@code i} in nanoseconds, or -1 for the overflow bucket. */
+    public static long upperBoundNanos(int i) {
+        if (i == 0) {
+            return SUB_BUCKETS * QUANTUM_NANOS;
+        }
+        if (i >= BUCKETS - 1) {
+            return -1;
+        }
+        int octave = (i - 1) / SUB_BUCKETS;
+        int sub = (i - 1) % SUB_BUCKETS;
+        long quanta = (4L << octave) + ((long) (sub + 1) << octave);
+        return quanta * QUANTUM_NANOS;
+    }
+
+    /**
+     * @return true if bucket {@code i} ends on a power of two microseconds. Those
+     *         bounds are enough for Prometheus and keep the series count low.
+     */
+    public static boolean isOctaveBound(int i) {
+        return i == 0 || i == BUCKETS - 1 || (i - 1) % SUB_BUCKETS == SUB_BUCKETS - 1;
+    }
+
+    public static int bucketCount() {
+        return BUCKETS;
+    }
+
+    public long getCount() {
+        return totals.get(0);
+    }
+
+    public long getSumNanos() {
+        return totals.get(1);
+    }
+
+    public long getMaxNanos() {
+        return totals.get(2);
+    }
+
+    public long getBucket(int i) {
+        return counts.get(i);
+    }
+
+    /** @return the percentile (0..1) in nanoseconds. */
+    public long percentileNanos(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        long max = getMaxNanos();
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long bound = upperBoundNanos(i);
+                return bound >= 0 ? Math.min(bound, max) : max;
+            }
+        }
+        return max;
+    }
+
+    /** @return the percentile (0..1) in microseconds. */
+    public long percentileMicros(double percentile) {
+        return percentileNanos(percentile) / 1000;
+    }
+
+    public Map<String, Object> getStats() {
+        long count = getCount();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("mean_us", count > 0 ? Math.round(getSumNanos() / 10.0 / count) / 100.0 : 0);
+        stats.put("p50_us", percentileMicros(0.50));
+        stats.put("p90_us", percentileMicros(0.90));
+        stats.put("p99_us", percentileMicros(0.99));
+        stats.put("max_us", getMaxNanos() / 1000);
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = counts.get(i);
+            if (n > 0) {
+                long bound = upperBoundNanos(i);
+                buckets.add(Map.of("le_us", bound >= 0 ? (Object) (bound / 1000.0) : "+Inf", "count", n));
+            }
+        }
+        stats.put("buckets", buckets);
+        return stats;
+    }
+
+    /**
+     * Appends the histogram in Prometheus text format, in seconds.
+     *
+     * @param labels extra labels without braces, e.g. {@code type="jdk.ThreadPark"}, or empty
+     */
+    public void writePrometheus(StringBuilder sb, String name, String labels) {
+        String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts.get(i);
+            if (!isOctaveBound(i)) {
+                continue;
+            }
+            long bound = upperBoundNanos(i);
+            sb.append(name).append("_bucket").append(prefix).append("le=\"")
+                    .append(bound >= 0 ? String.valueOf(bound / 1e9) : "+Inf").append("\"} ").append(cumulative)
+                    .append('\n');
+        }
+        String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+        sb.append(name).append("_sum").append(suffix).append(getSumNanos() / 1e9).append('\n');
+        sb.append(name).append("_count").append(suffix).append(getCount()).append('\n');
+    }
+}
@@ -0,0 +1,115 @@
+package io.jfrtail.agent.pipeline;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import jdk.jfr.Timespan;
+import jdk.jfr.ValueDescriptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed extraction plan for one JFR type: which fields to read, with which
+ * typed accessor, and where each value lands in a {@link CapturedObject}.
+ * Built once per type, then shared by every captured instance.
+ */
+public class ObjectPlan {
+    private static final int MAX_DEPTH = 4;
+
+    /** {@code DURATION} is an integral {@code @Timespan}, captured in nanoseconds whatever its unit. */
+    public enum Kind {
+        LONG, DURATION, DOUBLE, BOOLEAN, STRING, CLASS, THREAD, OBJECT, OTHER;
+
+        boolean isPrimitive() {
+            return this == LONG || this == DURATION || this == DOUBLE || this == BOOLEAN;
+        }
+    }
+
+    /** One field of the plan. */
+    public static final class Field {
+        final String name;
+        final SerializedString jsonName; // pre-quoted once for the encoder
+        final Kind kind;
+        final int slot; // index into longs[] for primitives, refs[] otherwise
+        final ObjectPlan nested;
+
+        Field(String name, Kind kind, int slot, ObjectPlan nested) {
+            this.name = name;
+            this.jsonName = new SerializedString(name);
+            this.kind = kind;
+            this.slot = slot;
+            this.nested = nested;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    final Field[] fields;
+    final int longSlots;
+    final int refSlots;
+    private final Map<String, Field> byName = new HashMap<>();
+
+    ObjectPlan(List<ValueDescriptor> descriptors, Set<String> skip, int depth) {
+        List<Field> planned = new ArrayList<>(descriptors.size());
+        int longs = 0;
+        int refs = 0;
+        for (ValueDescriptor descriptor : descriptors) {
+            String name = descriptor.getName();
+            if (skip.contains(name)) {
+                continue;
+            }
+            Kind kind = kindOf(descriptor, depth);
+            ObjectPlan nested = kind == Kind.OBJECT
+                    ? new ObjectPlan(descriptor.getFields(), Set.of(), depth + 1)
+                    : null;
+            Field field = new Field(name, kind, kind.isPrimitive() ? longs++ : refs++, nested);
+            planned.add(field);
+            byName.put(name, field);
+        }
+        this.fields = planned.toArray(new Field[0]);
+        this.longSlots = longs;
+        this.refSlots = refs;
+    }
+
+    private static Kind kindOf(ValueDescriptor descriptor, int depth) {
+        if (descriptor.isArray()) {
+            return Kind.OTHER;
+        }
+        switch (descriptor.getTypeName()) {
+            case "long":
+            case "int":
+            case "short":
+            case "byte":
+                return descriptor.getAnnotation(Timespan.class) != null ? Kind.DURATION : Kind.LONG;
+            case "double":
+            case "float":
+                return Kind.DOUBLE;
+            case "boolean":
+                return Kind.BOOLEAN;
+            case "java.lang.String":
+                return Kind.STRING;
+            case "java.lang.Class":
+                return Kind.CLASS;
+            case "java.lang.Thread":
+                return Kind.THREAD;
+            default:
+                return !descriptor.getFields().isEmpty() && depth < MAX_DEPTH ? Kind.OBJECT : Kind.OTHER;
+        }
+    }
+
+    public Field[] getFields() {
+        return fields;
+    }
+
+    Field field(String name) {
+        return byName.get(name);
+    }
+}
@@ -0,0 +1,72 @@
+package io.jfrtail.agent.pipeline;
+
+import jdk.jfr.EventType;
+import jdk.jfr.consumer.RecordedEvent;
+
+/**
+ * Single-writer cache of plans keyed by event type id. Only the JFR stream
+ * thread looks plans up; consumers reach them through captured events.
+ */
+public final class PlanCache {
+    private long[] keys = new long[64];
+    private EventPlan[] plans = new EventPlan[64];
+    private int size;
+    private EventPlan last;
+    private SamplingPolicy sampling = SamplingPolicy.NONE;
+
+    /** Must be set before the stream starts; plans pick their limiter when built. */
+    public void setSamplingPolicy(SamplingPolicy sampling) {
+        this.sampling = sampling != null ? sampling : SamplingPolicy.NONE;
+    }
+
+    public EventPlan get(RecordedEvent event) {
+        EventType type = event.getEventType();
+        long id = type.getId();
+        EventPlan plan = last;
+        if (plan != null && plan.typeId == id) {
+            return plan;
+        }
+        int mask = keys.length - 1;
+        int i = mix(id) & mask;
+        while ((plan = plans[i]) != null) {
+            if (keys[i] == id) {
+                return last = plan;
+            }
+            i = (i + 1) & mask;
+        }
+        plan = new EventPlan(type, sampling, size);
+        keys[i] = id;
+        plans[i] = plan;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return last = plan;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        EventPlan[] oldPlans = plans;
+        keys = new long[oldKeys.length * 2];
+        plans = new EventPlan[oldPlans.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldPlans.length; j++) {
+            if (oldPlans[j] != null) {
+                int i = mix(oldKeys[j]) & mask;
+                while (plans[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                plans[i] = oldPlans[j];
+            }
+        }
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
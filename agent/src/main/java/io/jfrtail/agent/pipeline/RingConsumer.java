@@ -0,0 +1,157 @@
+package io.jfrtail.agent.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A consumer of the {@link EventRing} running on its own thread with its own
+ * cursor, so a slow consumer only ever delays itself.
+ */
+public class RingConsumer implements Runnable {
+    private static final int SPIN_TRIES = 64;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final EventRing ring;
+    private final Consumer<CapturedEvent> handler;
+    private final AtomicLong sequence;
+    private final AtomicLong processed = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    // Optional periodic task run on the consumer thread, between events
+    private Runnable tick;
+    private long tickIntervalNanos;
+    private long lastTickNanos;
+
+    private volatile boolean running = true;
+    private volatile boolean waiting = false;
+    private volatile Thread thread;
+
+    RingConsumer(String name, EventRing ring, Consumer<CapturedEvent> handler, long startSequence) {
+        this.name = name;
+        this.ring = ring;
+        this.handler = handler;
+        this.sequence = new AtomicLong(startSequence);
+    }
+
+    /**
+     * Runs {@code task} on the consumer thread about every
+     * {@code intervalMillis}, whether events arrive or not (late by at most
+     * the park timeout). Must be set before {@link #start()}.
+     */
+    public RingConsumer withTick(Runnable task, long intervalMillis) {
+        this.tick = task;
+        this.tickIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.lastTickNanos = System.nanoTime() - tickIntervalNanos;
+        return this;
+    }
+
+    public RingConsumer start() {
+        Thread t = new Thread(this, "jfr-tail-" + name);
+        t.setDaemon(true);
+        thread = t;
+        t.start();
+        return this;
+    }
+
+    public void stop() {
+        running = false;
+        ring.removeConsumer(this);
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        int idle = 0;
+        while (running) {
+            if (tick != null) {
+                runTick();
+            }
+            long next = sequence.get() + 1;
+            Object value = ring.read(next);
+            if (value == null) {
+                if (idle++ < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    park(next);
+                }
+                continue;
+            }
+            idle = 0;
+            if (value == EventRing.OVERRUN) {
+                long oldest = ring.getCursor() - ring.getCapacity() + 1;
+                long resume = Math.max(oldest, next + 1);
+                dropped.addAndGet(resume - next);
+                sequence.set(resume - 1);
+                continue;
+            }
+            try {
+                handler.accept((CapturedEvent) value);
+            } catch (Exception e) {
+                System.err.println("[JfrTail] Consumer '" + name + "' failed: " + e.getMessage());
+            }
+            processed.incrementAndGet();
+            sequence.set(next);
+        }
+    }
+
+    private void runTick() {
+        long now = System.nanoTime();
+        if (now - lastTickNanos < tickIntervalNanos) {
+            return;
+        }
+        lastTickNanos = now;
+        try {
+            tick.run();
+        } catch (Exception e) {
+            System.err.println("[JfrTail] Consumer '" + name + "' tick failed: " + e.getMessage());
+        }
+    }
+
+    private void park(long next) {
+        waiting = true;
+        // Re-check after announcing that we are waiting: either we see the new
+        // event here, or the producer sees the flag and unparks us.
+        if (ring.read(next) == null && running) {
+            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+        }
+        waiting = false;
+    }
+
+    void wakeUp() {
+        if (waiting) {
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return id of the consumer thread, or -1 if it has not started. */
+    public long getThreadId() {
+        Thread t = thread;
+        return t != null ? t.getId() : -1;
+    }
+
+    public long getLag() {
+        return Math.max(0, ring.getCursor() - sequence.get());
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,57 @@
+package io.jfrtail.agent.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Per-type rate limits and sample probabilities. {@link PlanCache} asks for a
+ * limiter once, when it builds a type's plan; types without a rule get none and
+ * pay nothing.
+ */
+public final class SamplingPolicy {
+    public static final SamplingPolicy NONE = new SamplingPolicy(Map.of(), Map.of());
+
+    private final Map<String, Double> rateLimits;
+    private final Map<String, Double> sampleProbabilities;
+    private final List<EventLimiter> limiters = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param rateLimits          event type to maximum events per second
+     * @param sampleProbabilities event type to fraction of events kept
+     */
+    public SamplingPolicy(Map<String, Double> rateLimits, Map<String, Double> sampleProbabilities) {
+        this.rateLimits = new HashMap<>(rateLimits);
+        this.sampleProbabilities = new HashMap<>(sampleProbabilities);
+    }
+
+    EventLimiter limiterFor(String type) {
+        double rate = rateLimits.getOrDefault(type, 0.0);
+        double probability = sampleProbabilities.getOrDefault(type, 1.0);
+        if (rate <= 0 && probability >= 1) {
+            return null;
+        }
+        EventLimiter limiter = new EventLimiter(type, probability, rate);
+        limiters.add(limiter);
+        return limiter;
+    }
+
+    /** @return events refused by all limiters so far. */
+    public long getRejected() {
+        long total = 0;
+        for (EventLimiter limiter : limiters) {
+            total += limiter.getRejected();
+        }
+        return total;
+    }
+
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (EventLimiter limiter : limiters) {
+            stats.add(limiter.getStats());
+        }
+        return stats;
+    }
+}
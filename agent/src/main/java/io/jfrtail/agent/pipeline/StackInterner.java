@@ -0,0 +1,164 @@
+package io.jfrtail.agent.pipeline;
+
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns stack traces on the JFR thread at two levels: frames by (class,
+ * method, line) into shared strings, then whole stacks by the hash of their
+ * frames into {@link CapturedStack}s with a stable id. A stack seen before
+ * costs a walk over its frames and no allocation beyond the frame keys.
+ * <p>
+ * Bounded: once {@value #MAX_STACKS} stacks or {@value #MAX_FRAMES} frames
+ * are held, both tables are cleared and interning starts over. Ids keep
+ * increasing, so a stack interned again simply gets a new id and is shipped
+ * again.
+ * <p>
+ * Single writer: only the JFR thread calls {@link #intern}.
+ */
+public final class StackInterner {
+    static final int MAX_STACKS = 16 * 1024;
+    static final int MAX_FRAMES = 64 * 1024;
+
+    private final int depth;
+    private final Map<FrameKey, String> frames = new HashMap<>();
+    private CapturedStack[] table = new CapturedStack[256];
+    private int size;
+    private long nextId;
+    private final String[] scratch;
+
+    private volatile long interned;
+    private volatile long resets;
+
+    /** @param depth frames kept per stack, innermost first. */
+    public StackInterner(int depth) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Stack depth must be positive");
+        }
+        this.depth = depth;
+        this.scratch = new String[depth];
+    }
+
+    /** @return the interned stack, or null if the event has none. */
+    public CapturedStack intern(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        if (frames.size() >= MAX_FRAMES) {
+            reset();
+        }
+        List<RecordedFrame> recorded = stackTrace.getFrames();
+        int count = Math.min(depth, recorded.size());
+        boolean truncated = stackTrace.isTruncated() || recorded.size() > depth;
+        int hash = truncated ? 1231 : 1237;
+        for (int i = 0; i < count; i++) {
+            String frame = frame(recorded.get(i));
+            scratch[i] = frame;
+            hash = 31 * hash + System.identityHashCode(frame);
+        }
+
+        int mask = table.length - 1;
+        int i = mix(hash) & mask;
+        CapturedStack stack;
+        while ((stack = table[i]) != null) {
+            if (stack.hash() == hash && stack.sameFrames(scratch, count, truncated)) {
+                return stack;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if (size >= MAX_STACKS) {
+            reset();
+            // Frame strings changed identity: start over with fresh ones
+            return intern(stackTrace);
+        }
+        stack = new CapturedStack(nextId++, Arrays.copyOf(scratch, count), truncated, hash);
+        table[i] = stack;
+        interned++;
+        if (++size * 2 > table.length) {
+            grow();
+        }
+        return stack;
+    }
+
+    private String frame(RecordedFrame frame) {
+        RecordedMethod method = frame.getMethod();
+        String className = method != null && method.getType() != null ? method.getType().getName() : "?";
+        String methodName = method != null ? method.getName() : "?";
+        int line = frame.getLineNumber();
+        FrameKey key = new FrameKey(className, methodName, line);
+        String interned = frames.get(key);
+        if (interned == null) {
+            interned = line >= 0 ? className + "." + methodName + ":" + line : className + "." + methodName;
+            frames.put(key, interned);
+        }
+        return interned;
+    }
+
+    private void reset() {
+        frames.clear();
+        Arrays.fill(table, null);
+        size = 0;
+        resets++;
+    }
+
+    private void grow() {
+        CapturedStack[] old = table;
+        table = new CapturedStack[old.length * 2];
+        int mask = table.length - 1;
+        for (CapturedStack stack : old) {
+            if (stack != null) {
+                int i = mix(stack.hash()) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = stack;
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of("depth", depth, "interned", interned, "resets", resets);
+    }
+
+    private static final class FrameKey {
+        final String className;
+        final String method;
+        final int line;
+
+        FrameKey(String className, String method, int line) {
+            this.className = className;
+            this.method = method;
+            this.line = line;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FrameKey)) {
+                return false;
+            }
+            FrameKey other = (FrameKey) o;
+            return line == other.line && className.equals(other.className) && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return (className.hashCode() * 31 + method.hashCode()) * 31 + line;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.jfrtail.agent.server;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body encoded once per source value and shared by every request.
+ * The source is typically the cached stats snapshot, which only changes once
+ * per snapshot interval; as long as it returns the same object, requests get
+ * the same bytes, gzip of them (built on first use) and ETag, and a client
+ * sending that ETag back in {@code If-None-Match} gets a bodiless 304.
+ */
+final class CachedResponse<T> {
+    private final Supplier<T> source;
+    private final Function<T, byte[]> encoder;
+    private final String contentType;
+    private final boolean gzipEnabled;
+    private T lastSource;
+    private Body body;
+
+    CachedResponse(Supplier<T> source, Function<T, byte[]> encoder, String contentType, boolean gzipEnabled) {
+        this.source = source;
+        this.encoder = encoder;
+        this.contentType = contentType;
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    private synchronized Body current() {
+        T value = source.get();
+        if (body == null || value != lastSource) {
+            body = new Body(encoder.apply(value));
+            lastSource = value;
+        }
+        return body;
+    }
+
+    void send(HttpExchange exchange) throws IOException {
+        Body current = current();
+        boolean gzip = gzipEnabled && acceptsGzip(exchange);
+        String etag = gzip ? current.gzipEtag : current.etag;
+        exchange.getResponseHeaders().set("ETag", etag);
+        // Caches must come back to us, but may keep the body for a 304
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        byte[] bytes = gzip ? current.gzipped() : current.bytes;
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    static boolean acceptsGzip(HttpExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return accept != null && accept.toLowerCase().contains("gzip");
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag) || candidate.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Body {
+        final byte[] bytes;
+        final String etag;
+        final String gzipEtag;
+        private volatile byte[] gzipped;
+
+        Body(byte[] bytes) {
+            this.bytes = bytes;
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            String hash = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length);
+            this.etag = "\"" + hash + "\"";
+            // Distinct per encoding, as the bytes differ
+            this.gzipEtag = "\"" + hash + "-gz\"";
+        }
+
+        byte[] gzipped() {
+            byte[] result = gzipped;
+            if (result == null) {
+                synchronized (this) {
+                    result = gzipped;
+                    if (result == null) {
+                        result = gzip(bytes);
+                        gzipped = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private static byte[] gzip(byte[] bytes) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
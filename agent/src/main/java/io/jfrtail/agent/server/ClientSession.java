@@ -0,0 +1,327 @@
+package io.jfrtail.agent.server;
+
+import io.jfrtail.common.wire.BinaryEventWriter;
+import io.jfrtail.common.wire.Compression;
+import io.jfrtail.common.wire.StackDictionary;
+import io.jfrtail.common.wire.Subscription;
+import io.jfrtail.common.wire.WireFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * One TCP subscriber: a bounded outbound queue filled by the broadcaster and
+ * drained into a direct buffer by the selector thread, a batch at a time (see
+ * {@link FlushPolicy}), optionally through a per-connection deflater.
+ */
+final class ClientSession {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    enum Offer {
+        /** Queued into the current batch. */
+        QUEUED,
+        /** Queued, and a batch started or became due: the selector has to be told. */
+        QUEUED_NOTIFY,
+        DROPPED,
+        OVERFLOW
+    }
+
+    final SocketChannel channel;
+    final SelectionKey key;
+    final long connectedAtMillis = System.currentTimeMillis();
+    final ByteBuffer readBuffer = ByteBuffer.allocate(8 * 1024);
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final ArrayDeque<byte[]> queue;
+    /** Queued payloads the overflow policy must not evict (binary state frames). */
+    private final Set<byte[]> pinned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final FlushPolicy flushPolicy;
+    private final String remote;
+
+    // Current batch, guarded by this
+    private int batchEvents;
+    private long batchBytes;
+    private long batchStartNanos;
+
+    // Selector thread only: set once the handshake reply is queued
+    private Deflater deflater;
+    private int rawPayloads;
+    private boolean synced = true;
+
+    private byte[] current;
+    private int currentOffset;
+
+    private final AtomicLong bytesSent = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong payloadBytes = new AtomicLong(0);
+
+    volatile boolean authenticated = false;
+    volatile boolean closeAfterFlush = false;
+
+    /** Set during the handshake, before the session is published to the broadcaster. */
+    WireFormat format = WireFormat.JSONL;
+    Compression compression = Compression.NONE;
+    /** Binary sessions only; used by the broadcasting thread alone. */
+    BinaryEventWriter binaryWriter;
+    /** JSONL sessions only: stacks already sent. Used by the broadcasting thread alone. */
+    final StackDictionary stacks = new StackDictionary();
+    /** Replaced by the selector thread on SUBSCRIBE, evaluated by the broadcaster. */
+    volatile Subscription subscription = Subscription.ALL;
+
+    ClientSession(SocketChannel channel, SelectionKey key, int capacity, OverflowPolicy policy,
+            FlushPolicy flushPolicy) {
+        this.channel = channel;
+        this.key = key;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.flushPolicy = flushPolicy;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 1024));
+        String addr;
+        try {
+            addr = String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            addr = "unknown";
+        }
+        this.remote = addr;
+    }
+
+    /**
+     * Queues an event payload, applying the overflow policy when the queue is
+     * full. The payload array is shared between sessions and never modified.
+     */
+    synchronized Offer offer(byte[] payload) {
+        return offer(null, payload);
+    }
+
+    /**
+     * Like {@link #offer(byte[])}, preceded by connection state that is queued
+     * regardless of the overflow policy and never evicted: dropping it would
+     * desynchronize the client's decoder. Once the state alone fills the
+     * queue, the client cannot be kept in sync within its capacity and
+     * {@link Offer#OVERFLOW} is returned whatever the policy.
+     */
+    synchronized Offer offer(byte[] state, byte[] payload) {
+        boolean wasEmpty = batchBytes == 0;
+        boolean wasDue = isBatchFull();
+        if (state != null) {
+            if (pinned.size() >= capacity) {
+                dropped.incrementAndGet();
+                return Offer.OVERFLOW;
+            }
+            queue.addLast(state);
+            pinned.add(state);
+            batchBytes += state.length;
+        }
+        if (queue.size() >= capacity) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return state != null && notify(wasEmpty, wasDue) ? Offer.QUEUED_NOTIFY : Offer.DROPPED;
+                case DISCONNECT:
+                    dropped.incrementAndGet();
+                    return Offer.OVERFLOW;
+                case DROP_OLDEST:
+                default:
+                    dropped.incrementAndGet();
+                    if (!evictOldest()) {
+                        return state != null && notify(wasEmpty, wasDue) ? Offer.QUEUED_NOTIFY : Offer.DROPPED;
+                    }
+            }
+        }
+        queue.addLast(payload);
+        batchEvents++;
+        batchBytes += payload.length;
+        return notify(wasEmpty, wasDue) ? Offer.QUEUED_NOTIFY : Offer.QUEUED;
+    }
+
+    /** The selector must hear about a batch when it starts (to arm its timer) and when it fills up. */
+    private boolean notify(boolean wasEmpty, boolean wasDue) {
+        if (wasEmpty) {
+            batchStartNanos = System.nanoTime();
+            return true;
+        }
+        return !wasDue && isBatchFull();
+    }
+
+    private boolean isBatchFull() {
+        return batchEvents >= flushPolicy.maxEvents || batchBytes >= flushPolicy.maxBytes;
+    }
+
+    /** @return when the current batch must be written, or {@link Long#MAX_VALUE} if there is none. */
+    synchronized long batchDeadline() {
+        if (batchBytes == 0) {
+            return Long.MAX_VALUE;
+        }
+        return isBatchFull() ? batchStartNanos : batchStartNanos + flushPolicy.maxDelayNanos;
+    }
+
+    /** Called by the selector right before writing: everything queued so far goes out. */
+    synchronized void closeBatch() {
+        batchEvents = 0;
+        batchBytes = 0;
+    }
+
+    /**
+     * Compresses everything queued after the payloads already queued (the
+     * handshake reply). Selector thread only.
+     */
+    synchronized void enableCompression() {
+        compression = Compression.DEFLATE;
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        rawPayloads = queue.size();
+    }
+
+    private boolean evictOldest() {
+        if (pinned.isEmpty()) {
+            return queue.pollFirst() != null;
+        }
+        for (Iterator<byte[]> it = queue.iterator(); it.hasNext(); ) {
+            if (!pinned.contains(it.next())) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Handshake replies bypass the capacity limit. */
+    synchronized void sendControl(byte[] payload) {
+        queue.addLast(payload);
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    private synchronized byte[] poll() {
+        byte[] payload = queue.pollFirst();
+        if (payload != null && !pinned.isEmpty()) {
+            pinned.remove(payload);
+        }
+        return payload;
+    }
+
+    /**
+     * Writes as much as the socket accepts.
+     *
+     * @return true if everything queued so far has been written.
+     */
+    boolean flush() throws IOException {
+        while (true) {
+            fill();
+            if (writeBuffer.position() == 0) {
+                return true;
+            }
+            writeBuffer.flip();
+            int written = channel.write(writeBuffer);
+            bytesSent.addAndGet(written);
+            boolean partial = writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (partial || written == 0) {
+                return false;
+            }
+        }
+    }
+
+    private void fill() {
+        while (writeBuffer.hasRemaining()) {
+            if (current == null) {
+                if (deflater != null && rawPayloads == 0) {
+                    fillCompressed();
+                    return;
+                }
+                current = poll();
+                currentOffset = 0;
+                if (current == null) {
+                    return;
+                }
+                payloadBytes.addAndGet(current.length);
+                if (rawPayloads > 0) {
+                    rawPayloads--;
+                }
+            }
+            int n = Math.min(writeBuffer.remaining(), current.length - currentOffset);
+            writeBuffer.put(current, currentOffset, n);
+            currentOffset += n;
+            if (currentOffset == current.length) {
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Deflates queued payloads into the write buffer. The stream is
+     * sync-flushed once the queue is empty, so every batch can be decoded as
+     * soon as it arrives while the dictionary carries over between batches.
+     */
+    private void fillCompressed() {
+        while (writeBuffer.hasRemaining()) {
+            if (deflater.needsInput()) {
+                byte[] next = poll();
+                if (next == null) {
+                    if (!synced) {
+                        deflater.deflate(writeBuffer, Deflater.SYNC_FLUSH);
+                        // A full buffer means there may be more flush output to come
+                        synced = writeBuffer.hasRemaining();
+                    }
+                    return;
+                }
+                payloadBytes.addAndGet(next.length);
+                deflater.setInput(next);
+                synced = false;
+            }
+            deflater.deflate(writeBuffer, Deflater.NO_FLUSH);
+        }
+    }
+
+    void close() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("remote", remote);
+        stats.put("format", format.key());
+        stats.put("subscription", subscription.toCommand());
+        stats.put("queued", queued());
+        stats.put("compression", compression.key());
+        stats.put("bytes_sent", bytesSent.get());
+        stats.put("payload_bytes", payloadBytes.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return remote;
+    }
+}
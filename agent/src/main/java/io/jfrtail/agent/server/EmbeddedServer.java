@@ -3,13 +3,37 @@ package io.jfrtail.agent.server;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import io.jfrtail.agent.api.AgentMetrics;
+import io.jfrtail.agent.api.PrometheusWriter;
 import io.jfrtail.agent.api.StatsManager;
+import io.jfrtail.agent.control.RecordingController;
+import io.jfrtail.agent.control.RollingRecording;
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.CapturedStack;
+import io.jfrtail.agent.pipeline.EventEncoder;
+import io.jfrtail.agent.pipeline.EventHistory;
 import io.jfrtail.common.JsonUtils;
+import io.jfrtail.common.wire.StackDictionary;
+import io.jfrtail.common.wire.Subscription;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
 
 public class EmbeddedServer {
     private final int port;
@@ -17,7 +41,24 @@ public class EmbeddedServer {
     private final String secret;
     private final boolean statsEnabled;
     private final boolean dashboardEnabled;
+    private volatile RecordingController recordingController;
+    private volatile AgentMetrics agentMetrics;
+    private volatile RollingRecording rollingRecording;
+    private boolean gzip = true;
+    // Open /jfr/stream responses, each holding an HTTP thread for its lifetime
+    private final Set<StreamSession> streams = ConcurrentHashMap.newKeySet();
+    // SSE encoding: by the broadcaster (also in the monitor's broadcast time) and by stream writers
+    private final LongAdder broadcastEncodeNanos = new LongAdder();
+    private final LongAdder writerEncodeNanos = new LongAdder();
+    private final LongAdder streamEncodedEvents = new LongAdder();
+    // Streams admitted, counted before they are registered so the cap holds under concurrent connects
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private int maxStreams = 8;
+    private int streamQueueCapacity = 4096;
+    // Network consumer thread only
+    private final EventEncoder streamEncoder = new EventEncoder();
     private HttpServer server;
+    private ExecutorService executor;
 
     public EmbeddedServer(int port, StatsManager statsManager, String secret, boolean statsEnabled,
             boolean dashboardEnabled) {
@@ -34,12 +75,18 @@ public class EmbeddedServer {
             server.createContext("/jfr/stats", new AuthMiddleware(new StatsHandler()));
             server.createContext("/jfr/metrics", new MetricsHandler()); // Public Prometheus metrics
             server.createContext("/jfr/history", new AuthMiddleware(new HistoryHandler()));
+            server.createContext("/jfr/series", new AuthMiddleware(new SeriesHandler()));
+            server.createContext("/jfr/stream", new AuthMiddleware(new StreamHandler()));
         }
         if (dashboardEnabled) {
             server.createContext("/jfr/dashboard", new AuthMiddleware(new DashboardHandler()));
             server.createContext("/jfr/bundle", new AuthMiddleware(new BundleHandler()));
         }
-        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/jfr/config", new AuthMiddleware(new ConfigHandler()));
+        if (executor == null) {
+            executor = ServerExecutors.bounded("jfr-tail-http", false, 1);
+        }
+        server.setExecutor(executor);
         server.start();
         System.out.println("[JfrTail] Embedded Server started on port " + port);
         if (!statsEnabled)
@@ -48,10 +95,106 @@ public class EmbeddedServer {
             System.out.println("[JfrTail] Dashboard endpoint is DISABLED");
     }
 
+    /**
+     * Runs exchanges on the given executor instead of a single-thread default.
+     * Must be called before {@link #start()}; the server shuts it down on stop.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Gzips cached responses for clients that accept it (compressed once per
+     * snapshot, not per request). Must be called before {@link #start()}.
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Caps concurrent {@code /jfr/stream} responses, so they cannot take every
+     * HTTP thread, and sets the events each may have queued before the
+     * newest are dropped. Must be called before {@link #start()}.
+     */
+    public void setStreamLimits(int maxStreams, int queueCapacity) {
+        if (maxStreams <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Stream limits must be positive");
+        }
+        this.maxStreams = maxStreams;
+        this.streamQueueCapacity = queueCapacity;
+    }
+
+    public boolean hasStreams() {
+        return !streams.isEmpty();
+    }
+
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    /** @return events encoded for {@code /jfr/stream}, live and replayed. */
+    public long getStreamSerializedEvents() {
+        return streamEncodedEvents.sum();
+    }
+
+    /** @return time spent encoding for {@code /jfr/stream}, on any thread. */
+    public long getStreamSerializationNanos() {
+        return broadcastEncodeNanos.sum() + writerEncodeNanos.sum();
+    }
+
+    /** @return the part of {@link #getStreamSerializationNanos()} spent on the HTTP threads (replay, latest). */
+    public long getStreamWriterSerializationNanos() {
+        return writerEncodeNanos.sum();
+    }
+
+    /**
+     * Queues the event for every {@code /jfr/stream} subscriber it matches,
+     * encoded once for all of them. Must always be called from the same
+     * thread, the one that feeds the TCP clients.
+     */
+    public void broadcast(CapturedEvent event) {
+        byte[] json = null;
+        for (StreamSession session : streams) {
+            if (!session.subscription.matches(event.getType(), event.getThread(), event.getDurationNanos())) {
+                continue;
+            }
+            if (session.latestOnly) {
+                // Encoded by the writer, for the one event per interval it sends
+                session.setLatest(event);
+                continue;
+            }
+            if (json == null) {
+                long start = System.nanoTime();
+                json = streamEncoder.encode(event);
+                broadcastEncodeNanos.add(System.nanoTime() - start);
+                streamEncodedEvents.increment();
+            }
+            session.offer(event, json);
+        }
+    }
+
+    /** Enables {@code /jfr/config}; until set the endpoint answers 503. */
+    public void setRecordingController(RecordingController recordingController) {
+        this.recordingController = recordingController;
+    }
+
+    /** Lets {@code /jfr/bundle?jfr=true} include a {@code .jfr} dump; until set it answers 409. */
+    public void setRollingRecording(RollingRecording rollingRecording) {
+        this.rollingRecording = rollingRecording;
+    }
+
+    /** Adds the agent's own metrics to {@code /jfr/metrics}. */
+    public void setAgentMetrics(AgentMetrics agentMetrics) {
+        this.agentMetrics = agentMetrics;
+    }
+
     public void stop() {
         if (server != null) {
             server.stop(0);
         }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
     }
 
     // Auth Middleware
@@ -66,8 +209,9 @@ public class EmbeddedServer {
         public void handle(HttpExchange exchange) throws IOException {
             // CORS Headers
             exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, OPTIONS");
-            exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Authorization, Content-Type");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, DELETE, OPTIONS");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Authorization, Content-Type, If-None-Match");
+            exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "ETag");
 
             if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
                 exchange.sendResponseHeaders(204, -1);
@@ -105,191 +249,678 @@ public class EmbeddedServer {
         }
     }
 
+    private static boolean isGetOrHead(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method)) {
+            return true;
+        }
+        sendMethodNotAllowed(exchange);
+        return false;
+    }
+
+    private static void sendMethodNotAllowed(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(405, -1);
+        exchange.close();
+    }
+
+    private static byte[] jsonBytes(Object value) {
+        return JsonUtils.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Full snapshot, or with {@code ?since=<cursor>[&limit=N]} only what
+     * changed since a previous response's {@code cursor}.
+     */
     private class StatsHandler implements HttpHandler {
+        private final CachedResponse<Map<String, Object>> response = new CachedResponse<>(
+                statsManager::getCachedSnapshot, EmbeddedServer::jsonBytes, "application/json", gzip);
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
-                exchange.sendResponseHeaders(405, -1);
+            if (!isGetOrHead(exchange)) {
                 return;
             }
-
-            String jsonResponse = JsonUtils.toJson(statsManager.getSnapshot());
-            exchange.getResponseHeaders().set("Content-Type", "application/json");
-            byte[] responseBytes = jsonResponse.getBytes();
-            exchange.sendResponseHeaders(200, responseBytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+            if (queryParam(exchange, "since") == null) {
+                response.send(exchange);
+                return;
+            }
+            long since;
+            int limit;
+            try {
+                since = parseLong(queryParam(exchange, "since"), "since", 0);
+                limit = parseLimit(exchange);
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                return;
             }
+            sendJson(exchange, 200, statsManager.getSnapshotSince(since, limit));
         }
     }
 
+    /**
+     * Prometheus text exposition, rendered once per cached snapshot whatever
+     * the number of scrapers. Values are read when rendering, which is when
+     * the snapshot changed.
+     */
     private class MetricsHandler implements HttpHandler {
+        private final CachedResponse<Map<String, Object>> response = new CachedResponse<>(
+                statsManager::getCachedSnapshot, this::render, "text/plain; version=0.0.4; charset=utf-8", gzip);
+        // Reused across renders, which CachedResponse serializes
+        private final StringBuilder buffer = new StringBuilder(8192);
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            StringBuilder sb = new StringBuilder();
-            java.util.Map<String, Object> snapshot = statsManager.getSnapshot();
-            @SuppressWarnings("unchecked")
-            java.util.Map<String, Object> metrics = (java.util.Map<String, Object>) snapshot.get("metrics");
-
-            if (metrics != null) {
-                metrics.forEach((k, v) -> {
-                    sb.append("jfr_tail_").append(k).append(" ").append(v).append("\n");
-                });
+            if (isGetOrHead(exchange)) {
+                response.send(exchange);
             }
+        }
 
-            byte[] responseBytes = sb.toString().getBytes();
-            exchange.sendResponseHeaders(200, responseBytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+        private byte[] render(Map<String, Object> snapshot) {
+            buffer.setLength(0);
+            PrometheusWriter out = new PrometheusWriter(buffer);
+            statsManager.writePrometheus(out);
+            AgentMetrics agent = agentMetrics;
+            if (agent != null) {
+                agent.writePrometheus(out);
             }
+            return buffer.toString().getBytes(StandardCharsets.UTF_8);
         }
     }
 
+    /**
+     * Every event held, or with {@code ?since=<cursor>[&limit=N]} the events
+     * added since, with the cursor to pass next time.
+     */
     private class HistoryHandler implements HttpHandler {
+        // The snapshot's history, so it is copied and serialized once per snapshot
+        private final CachedResponse<Object> response = new CachedResponse<>(
+                () -> statsManager.getCachedSnapshot().get("history"), EmbeddedServer::jsonBytes, "application/json",
+                gzip);
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String jsonResponse = JsonUtils.toJson(statsManager.getHistory());
-            exchange.getResponseHeaders().set("Content-Type", "application/json");
-            byte[] responseBytes = jsonResponse.getBytes();
-            exchange.sendResponseHeaders(200, responseBytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+            if (!isGetOrHead(exchange)) {
+                return;
+            }
+            String since = queryParam(exchange, "since");
+            if (since == null && queryParam(exchange, "limit") == null) {
+                response.send(exchange);
+                return;
+            }
+            Map<String, Object> delta;
+            try {
+                delta = statsManager.getHistorySince(parseLong(since, "since", 0), parseLimit(exchange));
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                return;
             }
+            sendJson(exchange, 200, delta);
         }
     }
 
-    private class DashboardHandler implements HttpHandler {
+    private int parseLimit(HttpExchange exchange) {
+        int capacity = statsManager.getEventHistory().getCapacity();
+        long limit = parseLong(queryParam(exchange, "limit"), "limit", capacity);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return (int) Math.min(limit, capacity);
+    }
+
+    private static long parseLong(String value, String name, long defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException(name + " must not be negative");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Windowed counts, rates and per-bucket values, e.g.
+     * {@code /jfr/series?window=5m}. The window is seconds, or a number with an
+     * {@code s}, {@code m} or {@code h} suffix; 60 s by default.
+     */
+    private class SeriesHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String html = """
-                    <!DOCTYPE html>
-                    <html>
-                    <head>
-                        <title>JFR-Tail Dashboard</title>
-                        <meta http-equiv="refresh" content="2">
-                        <style>
-                            body { font-family: 'Segoe UI', Tahoma, Geneva, Verdana, sans-serif; background: #0f172a; color: #f1f5f9; padding: 20px; line-height: 1.6; }
-                            .container { max-width: 1200px; margin: 0 auto; }
-                            h1 { color: #38bdf8; border-bottom: 2px solid #334155; padding-bottom: 10px; }
-                            .grid { display: grid; grid-template-columns: repeat(auto-fit, minmax(250px, 1fr)); gap: 20px; margin-bottom: 30px; }
-                            .card { background: #1e293b; padding: 20px; border-radius: 12px; box-shadow: 0 4px 6px -1px rgba(0,0,0,0.1); border: 1px solid #334155; }
-                            .card h3 { margin-top: 0; color: #94a3b8; font-size: 0.9rem; text-transform: uppercase; }
-                            .metric { font-size: 2.5rem; font-weight: bold; color: #f8fafc; }
-                            .subtext { color: #64748b; font-size: 0.8rem; }
-                            pre { background: #020617; padding: 15px; border-radius: 8px; overflow-x: auto; border: 1px solid #1e293b; color: #10b981; font-size: 0.85rem; }
-                            .btn { background: #38bdf8; color: #0f172a; border: none; padding: 10px 20px; border-radius: 6px; cursor: pointer; font-weight: bold; text-decoration: none; display: inline-block; }
-                            .btn:hover { background: #7dd3fc; }
-                        </style>
-                    </head>
-                    <body>
-                        <div class="container">
-                            <h1>JFR-Tail Live Monitor</h1>
-                            <div class="grid">
-                                <div class="card">
-                                    <h3>GC Events</h3>
-                                    <div id="gc-count" class="metric">-</div>
-                                    <div id="last-gc" class="subtext">Last Pause: - ms</div>
-                                </div>
-                                <div class="card">
-                                    <h3>Exceptions</h3>
-                                    <div id="exc-count" class="metric">-</div>
-                                    <div class="subtext">Proactive tracking enabled</div>
-                                </div>
-                                <div class="card">
-                                    <h3>Lock Contention</h3>
-                                    <div id="lock-count" class="metric">-</div>
-                                    <div class="subtext">Threads waiting</div>
-                                </div>
-                                <div class="card">
-                                    <h3>Heap Used</h3>
-                                    <div id="heap-used" class="metric">- MB</div>
-                                    <div id="heap-committed" class="subtext">Committed: - MB</div>
-                                </div>
-                            </div>
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendMethodNotAllowed(exchange);
+                return;
+            }
+            long window;
+            try {
+                window = parseWindowSeconds(queryParam(exchange, "window"));
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                return;
+            }
+            sendJson(exchange, 200, statsManager.getWindow(window, true));
+        }
 
-                            <div style="margin-bottom: 20px;">
-                                <a href="#" id="bundle-btn" class="btn">Download Incident Bundle</a>
-                            </div>
+        private long parseWindowSeconds(String value) {
+            if (value == null || value.isEmpty()) {
+                return 60;
+            }
+            long unit = 1;
+            String number = value;
+            char suffix = Character.toLowerCase(value.charAt(value.length() - 1));
+            if (suffix == 's' || suffix == 'm' || suffix == 'h') {
+                unit = suffix == 'h' ? 3600 : suffix == 'm' ? 60 : 1;
+                number = value.substring(0, value.length() - 1);
+            }
+            try {
+                long seconds = Long.parseLong(number) * unit;
+                if (seconds <= 0) {
+                    throw new IllegalArgumentException("Window must be positive");
+                }
+                return seconds;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid window: " + value);
+            }
+        }
+    }
+
+    /**
+     * Server-Sent Events: every event as {@code id: <sequence>} plus its JSON
+     * line as {@code data}, stack traces as {@code event: stack} before their
+     * first use, and with {@code ?metrics=true} the headline counters as
+     * {@code event: metrics} once a second. Takes the {@code SUBSCRIBE}
+     * filters as query parameters ({@code types}, {@code exclude},
+     * {@code threads}, {@code minDuration}). A reconnecting client sending
+     * {@code Last-Event-ID} first gets what it missed from the history.
+     * <p>
+     * With {@code ?latest=true} only the newest matching event is sent, once
+     * a second, with no replay: enough for a view of the last event, at a cost
+     * that does not grow with the event rate.
+     */
+    private class StreamHandler implements HttpHandler {
+        private static final long METRICS_INTERVAL_MILLIS = 1000;
+        private static final long HEARTBEAT_MILLIS = 15_000;
+        private static final int MAX_FRAMES_PER_FLUSH = 256;
+        private static final long LATEST_INTERVAL_MILLIS = 1000;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendMethodNotAllowed(exchange);
+                return;
+            }
+            String filter;
+            long lastEventId;
+            try {
+                filter = subscriptionArguments(exchange);
+                Subscription.parse(filter);
+                String header = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+                lastEventId = header == null || header.isBlank() ? -1 : parseLong(header.trim(), "Last-Event-ID", -1);
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                return;
+            }
+            if (openStreams.incrementAndGet() > maxStreams) {
+                openStreams.decrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "5");
+                sendJson(exchange, 503, Map.of("error", "Too many streams, " + maxStreams + " open"));
+                return;
+            }
+            boolean metrics = "true".equalsIgnoreCase(queryParam(exchange, "metrics"));
+            boolean latestOnly = "true".equalsIgnoreCase(queryParam(exchange, "latest"));
+
+            // Registered before replaying, so nothing published meanwhile is lost; duplicates are skipped by id
+            StreamSession session = new StreamSession(Subscription.parse(filter), streamQueueCapacity, latestOnly);
+            streams.add(session);
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+            try (OutputStream os = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, 0);
+                StreamWriter writer = new StreamWriter(os, Subscription.parse(filter));
+                if (latestOnly) {
+                    writer.runLatest(session, metrics);
+                } else {
+                    writer.run(session, lastEventId, metrics);
+                }
+            } catch (IOException | InterruptedException e) {
+                // Client went away, or the server is stopping
+            } finally {
+                streams.remove(session);
+                openStreams.decrementAndGet();
+                exchange.close();
+            }
+        }
 
+        private String subscriptionArguments(HttpExchange exchange) {
+            StringBuilder arguments = new StringBuilder();
+            for (String key : new String[] { "types", "exclude", "threads", "minDuration" }) {
+                String value = queryParam(exchange, key);
+                if (value != null && !value.isEmpty()) {
+                    arguments.append(key).append('=').append(value).append(' ');
+                }
+            }
+            return arguments.toString();
+        }
+
+        /** Writes one stream, on the exchange's thread. */
+        private final class StreamWriter {
+            private final OutputStream os;
+            // This thread's copy: Subscription caches decisions and is not thread-safe
+            private final Subscription filter;
+            private final StackDictionary stacks = new StackDictionary();
+            private EventEncoder encoder;
+            private long lastSent = -1;
+
+            StreamWriter(OutputStream os, Subscription filter) {
+                this.os = os;
+                this.filter = filter;
+            }
+
+            void run(StreamSession session, long lastEventId, boolean metrics)
+                    throws IOException, InterruptedException {
+                os.write("retry: 2000\n\n".getBytes(StandardCharsets.UTF_8));
+                // Events published just before a replay may not be in the history yet: the first
+                // live event after one also replays the gap in front of it
+                boolean resync = false;
+                if (lastEventId >= 0) {
+                    lastSent = lastEventId;
+                    replay(lastEventId + 1, Long.MAX_VALUE);
+                    resync = true;
+                }
+                long nextMetrics = 0;
+                long lastWrite = System.currentTimeMillis();
+                while (true) {
+                    if (session.takeDropped() > 0 && lastSent >= 0) {
+                        // Fell behind: what is still queued is in the history too, catch up from there
+                        session.clear();
+                        replay(lastSent + 1, Long.MAX_VALUE);
+                        resync = true;
+                    }
+                    long now = System.currentTimeMillis();
+                    if (metrics && now >= nextMetrics) {
+                        writeMetrics();
+                        nextMetrics = now + METRICS_INTERVAL_MILLIS;
+                        lastWrite = now;
+                    } else if (now - lastWrite >= HEARTBEAT_MILLIS) {
+                        os.write(": ping\n\n".getBytes(StandardCharsets.UTF_8));
+                        lastWrite = now;
+                    }
+                    os.flush();
+
+                    long wait = metrics ? nextMetrics - now : lastWrite + HEARTBEAT_MILLIS - now;
+                    StreamSession.Frame frame = session.poll(Math.max(1, wait));
+                    for (int n = 1; frame != null; n++) {
+                        long seq = frame.event.getSequence();
+                        if (seq > lastSent) {
+                            if (resync && lastSent >= 0 && seq > lastSent + 1) {
+                                replay(lastSent + 1, seq);
+                            }
+                            resync = false;
+                            writeEvent(frame.event, frame.json);
+                            lastSent = seq;
+                            lastWrite = now;
+                        }
+                        frame = n < MAX_FRAMES_PER_FLUSH ? session.poll() : null;
+                    }
+                }
+            }
+
+            /** Latest-only: the newest event and the metrics once an interval, nothing in between. */
+            void runLatest(StreamSession session, boolean metrics) throws IOException, InterruptedException {
+                os.write("retry: 2000\n\n".getBytes(StandardCharsets.UTF_8));
+                long lastWrite = System.currentTimeMillis();
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    CapturedEvent event = session.takeLatest();
+                    if (event != null) {
+                        writeEvent(event, encode(event));
+                        lastWrite = now;
+                    }
+                    if (metrics) {
+                        writeMetrics();
+                        lastWrite = now;
+                    } else if (now - lastWrite >= HEARTBEAT_MILLIS) {
+                        os.write(": ping\n\n".getBytes(StandardCharsets.UTF_8));
+                        lastWrite = now;
+                    }
+                    os.flush();
+                    Thread.sleep(LATEST_INTERVAL_MILLIS);
+                }
+            }
+
+            private byte[] encode(CapturedEvent event) {
+                if (encoder == null) {
+                    encoder = new EventEncoder();
+                }
+                long start = System.nanoTime();
+                byte[] json = encoder.encode(event);
+                writerEncodeNanos.add(System.nanoTime() - start);
+                streamEncodedEvents.increment();
+                return json;
+            }
+
+            /** Writes the history's events from {@code from} up to, not including, {@code to}. */
+            private void replay(long from, long to) throws IOException {
+                EventHistory history = statsManager.getEventHistory();
+                long cursor = from;
+                while (cursor < to) {
+                    List<CapturedEvent> events = new ArrayList<>();
+                    int limit = (int) Math.min(history.getCapacity(), to - cursor);
+                    long next = history.read(cursor, limit, (seq, event) -> events.add(event));
+                    for (CapturedEvent event : events) {
+                        if (filter.matches(event.getType(), event.getThread(), event.getDurationNanos())) {
+                            writeEvent(event, encode(event));
+                        }
+                        lastSent = Math.max(lastSent, event.getSequence());
+                    }
+                    if (next == cursor) {
+                        break;
+                    }
+                    cursor = next;
+                }
+            }
+
+            private void writeEvent(CapturedEvent event, byte[] json) throws IOException {
+                CapturedStack stack = event.getStack();
+                if (stack != null && stacks.needsDefinition(stack.getId())) {
+                    if (encoder == null) {
+                        encoder = new EventEncoder();
+                    }
+                    byte[] definition = encoder.encodeDefinition(stack);
+                    os.write("event: stack\ndata: ".getBytes(StandardCharsets.UTF_8));
+                    os.write(definition, 0, definition.length - 1);
+                    os.write("\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                os.write(("id: " + event.getSequence() + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+                // The JSON line ends with a newline; SSE needs a blank line after the data
+                os.write(json, 0, json.length - 1);
+                os.write("\n\n".getBytes(StandardCharsets.UTF_8));
+            }
+
+            private void writeMetrics() throws IOException {
+                Object metrics = statsManager.getCachedSnapshot().get("metrics");
+                os.write(("event: metrics\ndata: " + JsonUtils.toJson(metrics) + "\n\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private class DashboardHandler implements HttpHandler {
+        private final String html = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                    <title>JFR-Tail Dashboard</title>
+                    <style>
+                        body { font-family: 'Segoe UI', Tahoma, Geneva, Verdana, sans-serif; background: #0f172a; color: #f1f5f9; padding: 20px; line-height: 1.6; }
+                        .container { max-width: 1200px; margin: 0 auto; }
+                        h1 { color: #38bdf8; border-bottom: 2px solid #334155; padding-bottom: 10px; }
+                        .grid { display: grid; grid-template-columns: repeat(auto-fit, minmax(250px, 1fr)); gap: 20px; margin-bottom: 30px; }
+                        .card { background: #1e293b; padding: 20px; border-radius: 12px; box-shadow: 0 4px 6px -1px rgba(0,0,0,0.1); border: 1px solid #334155; }
+                        .card h3 { margin-top: 0; color: #94a3b8; font-size: 0.9rem; text-transform: uppercase; }
+                        .metric { font-size: 2.5rem; font-weight: bold; color: #f8fafc; }
+                        .subtext { color: #64748b; font-size: 0.8rem; }
+                        pre { background: #020617; padding: 15px; border-radius: 8px; overflow-x: auto; border: 1px solid #1e293b; color: #10b981; font-size: 0.85rem; }
+                        .btn { background: #38bdf8; color: #0f172a; border: none; padding: 10px 20px; border-radius: 6px; cursor: pointer; font-weight: bold; text-decoration: none; display: inline-block; }
+                        .btn:hover { background: #7dd3fc; }
+                    </style>
+                </head>
+                <body>
+                    <div class="container">
+                        <h1>JFR-Tail Live Monitor</h1>
+                        <div class="grid">
+                            <div class="card">
+                                <h3>GC Events</h3>
+                                <div id="gc-count" class="metric">-</div>
+                                <div id="last-gc" class="subtext">Last Pause: - ms</div>
+                            </div>
+                            <div class="card">
+                                <h3>Exceptions</h3>
+                                <div id="exc-count" class="metric">-</div>
+                                <div class="subtext">Proactive tracking enabled</div>
+                            </div>
                             <div class="card">
-                                <h3>Latest Event Stream</h3>
-                                <pre id="last-event">Waiting for events...</pre>
+                                <h3>Lock Contention</h3>
+                                <div id="lock-count" class="metric">-</div>
+                                <div class="subtext">Threads waiting</div>
+                            </div>
+                            <div class="card">
+                                <h3>Heap Used</h3>
+                                <div id="heap-used" class="metric">- MB</div>
+                                <div id="heap-committed" class="subtext">Committed: - MB</div>
                             </div>
                         </div>
 
-                        <script>
-                            const token = (new URLSearchParams(window.location.search)).get('token');
-                            document.getElementById('bundle-btn').href = '/jfr/bundle?token=' + token;
-
-                            function update() {
-                                fetch('/jfr/stats', {
-                                    headers: { 'Authorization': 'Bearer ' + token }
-                                })
-                                .then(r => r.json())
-                                .then(data => {
-                                    document.getElementById('gc-count').innerText = data.metrics.gc_count;
-                                    document.getElementById('last-gc').innerText = 'Last Pause: ' + data.metrics.last_gc_pause_ms + ' ms';
-                                    document.getElementById('exc-count').innerText = data.metrics.exception_count;
-                                    document.getElementById('lock-count').innerText = data.metrics.lock_count;
-                                    document.getElementById('heap-used').innerText = data.metrics.heap_used_mb + ' MB';
-                                    document.getElementById('heap-committed').innerText = 'Committed: ' + data.metrics.heap_committed_mb + ' MB';
-                                    document.getElementById('last-event').innerText = JSON.stringify(data.last_event, null, 2);
-                                })
-                                .catch(err => console.error('Fetch error:', err));
+                        <div style="margin-bottom: 20px;">
+                            <a href="#" id="bundle-btn" class="btn">Download Incident Bundle</a>
+                        </div>
+
+                        <div class="card">
+                            <h3>Latest Event Stream</h3>
+                            <pre id="last-event">Waiting for events...</pre>
+                        </div>
+                    </div>
+
+                    <script>
+                        const token = (new URLSearchParams(window.location.search)).get('token');
+                        document.getElementById('bundle-btn').href = '/jfr/bundle?token=' + token;
+
+                        function showMetrics(m) {
+                            document.getElementById('gc-count').innerText = m.gc_count;
+                            document.getElementById('last-gc').innerText = 'Last Pause: ' + m.last_gc_pause_ms + ' ms';
+                            document.getElementById('exc-count').innerText = m.exception_count;
+                            document.getElementById('lock-count').innerText = m.lock_count;
+                            document.getElementById('heap-used').innerText = m.heap_used_mb + ' MB';
+                            document.getElementById('heap-committed').innerText = 'Committed: ' + m.heap_committed_mb + ' MB';
+                        }
+                        function showEvent(event) {
+                            document.getElementById('last-event').innerText = JSON.stringify(event, null, 2);
+                        }
+
+                        // Pushed by the agent once a second: the metrics and the newest event only
+                        const source = new EventSource('/jfr/stream?metrics=true&latest=true&token=' + encodeURIComponent(token));
+                        source.addEventListener('metrics', e => showMetrics(JSON.parse(e.data)));
+                        source.onmessage = e => showEvent(JSON.parse(e.data));
+                        // Refused (all streams taken): poll the shared snapshot instead, revalidated by ETag
+                        let polling = null;
+                        source.onerror = () => {
+                            if (source.readyState === EventSource.CLOSED && polling === null) {
+                                const poll = () => fetch('/jfr/stats?token=' + encodeURIComponent(token))
+                                    .then(r => r.json())
+                                    .then(s => { showMetrics(s.metrics); if (s.last_event) showEvent(s.last_event); })
+                                    .catch(() => {});
+                                polling = setInterval(poll, 2000);
+                                poll();
                             }
-                            setInterval(update, 2000);
-                            update();
-                        </script>
-                    </body>
-                    </html>
-                    """;
-            exchange.getResponseHeaders().set("Content-Type", "text/html");
-            byte[] bytes = html.getBytes();
-            exchange.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
+                        };
+                    </script>
+                </body>
+                </html>
+                """;
+        private final CachedResponse<String> response = new CachedResponse<>(() -> html,
+                page -> page.getBytes(StandardCharsets.UTF_8), "text/html; charset=utf-8", gzip);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (isGetOrHead(exchange)) {
+                response.send(exchange);
             }
         }
     }
 
-    private class BundleHandler implements com.sun.net.httpserver.HttpHandler {
+    /**
+     * Incident bundle, streamed as it is written: JSON (gzipped for clients
+     * that accept it), or with {@code ?jfr=true} / {@code ?jfr=<minutes>} a zip
+     * that also holds a {@code .jfr} dump of the rolling recording.
+     */
+    private class BundleHandler implements HttpHandler {
         @Override
-        public void handle(com.sun.net.httpserver.HttpExchange exchange) throws java.io.IOException {
-            // Re-check auth if token is in query param for easier download
-            String query = exchange.getRequestURI().getQuery();
-            String token = null;
-            if (query != null && query.contains("token=")) {
-                token = query.split("token=")[1].split("&")[0];
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!isGetOrHead(exchange)) {
+                return;
+            }
+            String jfr = queryParam(exchange, "jfr");
+            boolean withJfr = jfr != null && !jfr.equalsIgnoreCase("false");
+            RollingRecording recording = rollingRecording;
+            Duration window = null;
+            if (withJfr) {
+                if (recording == null) {
+                    sendJson(exchange, 409, Map.of("error",
+                            "No rolling recording, start the agent with bundleJfrMinutes=<minutes>"));
+                    return;
+                }
+                try {
+                    window = jfr.equalsIgnoreCase("true") ? recording.getMaxAge()
+                            : Duration.ofMinutes(parseLong(jfr, "jfr", 0));
+                } catch (IllegalArgumentException e) {
+                    sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+                    return;
+                }
+            }
+
+            IncidentBundle bundle = new IncidentBundle(statsManager);
+            if (withJfr) {
+                exchange.getResponseHeaders().set("Content-Type", "application/zip");
+                exchange.getResponseHeaders().set("Content-Disposition",
+                        "attachment; filename=jfr-incident-bundle.zip");
             } else {
-                String auth = exchange.getRequestHeaders().getFirst("Authorization");
-                if (auth != null && auth.startsWith("Bearer ")) {
-                    token = auth.substring(7);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.getResponseHeaders().set("Content-Disposition",
+                        "attachment; filename=jfr-incident-bundle.json");
+            }
+            // The zip is deflated already
+            boolean compress = !withJfr && gzip && CachedResponse.acceptsGzip(exchange);
+            if (compress) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            if ("HEAD".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            // Length unknown until written: chunked
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.getResponseBody();
+            try (OutputStream out = compress ? new GZIPOutputStream(os, 64 * 1024)
+                    : new BufferedOutputStream(os, 64 * 1024)) {
+                if (withJfr) {
+                    bundle.writeZip(out, recording, window);
+                } else {
+                    bundle.writeJson(out);
                 }
             }
+        }
+    }
 
-            if (token == null || !io.jfrtail.common.security.JwtLite.verifyToken(token, secret)) {
-                exchange.sendResponseHeaders(401, -1);
+    /**
+     * Runtime reconfiguration of the recording. GET shows the profile, the
+     * effective settings and active overrides; POST overrides one event type,
+     * e.g. {@code {"event":"jdk.ObjectAllocationSample","enabled":true,
+     * "ttlSeconds":300}}; DELETE {@code ?event=} reverts it early.
+     */
+    private class ConfigHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            RecordingController controller = recordingController;
+            if (controller == null) {
+                sendJson(exchange, 503, Map.of("error", "Recording is not running"));
                 return;
             }
+            String method = exchange.getRequestMethod().toUpperCase();
+            try {
+                switch (method) {
+                    case "GET":
+                        sendJson(exchange, 200, describe(controller));
+                        break;
+                    case "POST":
+                        sendJson(exchange, 200, override(controller, readBody(exchange)));
+                        break;
+                    case "DELETE":
+                        String event = queryParam(exchange, "event");
+                        if (event == null) {
+                            throw new IllegalArgumentException("Missing event parameter");
+                        }
+                        if (!controller.revert(event)) {
+                            sendJson(exchange, 404, Map.of("error", "No override for " + event));
+                            return;
+                        }
+                        sendJson(exchange, 200, describe(controller));
+                        break;
+                    default:
+                        sendMethodNotAllowed(exchange);
+                }
+            } catch (IllegalArgumentException e) {
+                sendJson(exchange, 400, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        }
+
+        private Map<String, Object> describe(RecordingController controller) {
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("profile", controller.getProfile().name());
+            config.put("overrides", controller.getOverrides());
+            config.put("settings", controller.getSettings());
+            return config;
+        }
+
+        private Map<String, Object> override(RecordingController controller, String body) {
+            Map<?, ?> request;
+            try {
+                request = JsonUtils.fromJson(body, Map.class);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Invalid JSON body");
+            }
+            if (request == null) {
+                throw new IllegalArgumentException("Empty body");
+            }
+            Object event = request.get("event");
+            Map<String, String> settings = new LinkedHashMap<>();
+            for (String key : RecordingController.OVERRIDABLE) {
+                Object value = request.get(key);
+                if (value != null) {
+                    settings.put(key, String.valueOf(value));
+                }
+            }
+            Duration ttl = null;
+            Object ttlSeconds = request.get("ttlSeconds");
+            if (ttlSeconds instanceof Number) {
+                ttl = Duration.ofSeconds(((Number) ttlSeconds).longValue());
+            } else if (ttlSeconds != null) {
+                throw new IllegalArgumentException("ttlSeconds must be a number");
+            }
+            return controller.override(event != null ? event.toString() : null, settings, ttl);
+        }
 
-            java.util.Map<String, Object> bundle = java.util.Map.of(
-                    "timestamp", java.time.Instant.now().toString(),
-                    "snapshot", statsManager.getSnapshot(),
-                    "history", statsManager.getHistory(),
-                    "system", java.util.Map.of(
-                            "os", System.getProperty("os.name"),
-                            "java_version", System.getProperty("java.version"),
-                            "available_processors", Runtime.getRuntime().availableProcessors(),
-                            "total_memory_mb", Runtime.getRuntime().totalMemory() / (1024 * 1024)));
-
-            String json = io.jfrtail.common.JsonUtils.toJson(bundle);
-            exchange.getResponseHeaders().set("Content-Type", "application/json");
-            exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=jfr-incident-bundle.json");
-            byte[] bytes = json.getBytes();
-            exchange.sendResponseHeaders(200, bytes.length);
-            try (java.io.OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
+        private String readBody(HttpExchange exchange) throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
             }
         }
     }
+
+    /** @return the parameter's value, decoded once from the raw query; null if absent. */
+    private static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return URLDecoder.decode(pair.substring(name.length() + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        byte[] responseBytes = JsonUtils.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(responseBytes);
+        }
+    }
 }
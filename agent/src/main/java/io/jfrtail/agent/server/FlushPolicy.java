@@ -0,0 +1,46 @@
+package io.jfrtail.agent.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When a TCP subscriber's pending events are written out: as soon as
+ * {@code maxEvents} events or {@code maxBytes} bytes are waiting, or
+ * {@code maxDelayMillis} after the first of them was queued, whichever comes
+ * first. Batching turns a write (and a deflate sync flush) per event into one
+ * per batch; {@code maxEvents = 1} writes every event right away.
+ */
+public final class FlushPolicy {
+    public static final FlushPolicy DEFAULT = new FlushPolicy(64, 16 * 1024, 5);
+    public static final FlushPolicy IMMEDIATE = new FlushPolicy(1, 1, 0);
+
+    final int maxEvents;
+    final int maxBytes;
+    final long maxDelayNanos;
+
+    public FlushPolicy(int maxEvents, int maxBytes, long maxDelayMillis) {
+        if (maxEvents <= 0 || maxBytes <= 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Invalid flush policy: " + maxEvents + " events, " + maxBytes
+                    + " bytes, " + maxDelayMillis + " ms");
+        }
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    public int getMaxEvents() {
+        return maxEvents;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDelayNanos);
+    }
+
+    @Override
+    public String toString() {
+        return maxEvents + " events / " + maxBytes + " bytes / " + getMaxDelayMillis() + " ms";
+    }
+}
@@ -0,0 +1,85 @@
+package io.jfrtail.agent.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.jfrtail.agent.api.StatsManager;
+import io.jfrtail.agent.control.RollingRecording;
+import io.jfrtail.agent.pipeline.EventHistory;
+import io.jfrtail.common.JsonUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes an incident bundle as it is produced: the snapshot a section at a
+ * time and the history an event at a time, through a streaming generator,
+ * so the document is never held in memory whatever the history size. Either
+ * the JSON alone, or a zip of the JSON and a {@code .jfr} dump of the
+ * {@link RollingRecording}.
+ */
+final class IncidentBundle {
+    static final String JSON_ENTRY = "bundle.json";
+    static final String JFR_ENTRY = "recording.jfr";
+
+    private final StatsManager statsManager;
+
+    IncidentBundle(StatsManager statsManager) {
+        this.statsManager = statsManager;
+    }
+
+    /** {@code {"timestamp", "system", "snapshot", "history"}}; does not close {@code out}. */
+    void writeJson(OutputStream out) throws IOException {
+        try (JsonGenerator generator = JsonUtils.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("timestamp", Instant.now().toString());
+            generator.writeObjectField("system", system());
+
+            generator.writeObjectFieldStart("snapshot");
+            for (Map.Entry<String, Object> section : statsManager.getSnapshot(false).entrySet()) {
+                generator.writeObjectField(section.getKey(), section.getValue());
+            }
+            generator.writeEndObject();
+
+            generator.writeArrayFieldStart("history");
+            EventHistory history = statsManager.getEventHistory();
+            history.read(0, history.getCapacity(), (seq, event) -> {
+                try {
+                    generator.writeObject(event.toJfrEvent());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** The JSON as {@value #JSON_ENTRY}, then the last {@code window} of the recording as {@value #JFR_ENTRY}. */
+    void writeZip(OutputStream out, RollingRecording recording, Duration window) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.putNextEntry(new ZipEntry(JSON_ENTRY));
+        writeJson(zip);
+        zip.closeEntry();
+        zip.putNextEntry(new ZipEntry(JFR_ENTRY));
+        recording.dump(window, zip);
+        zip.closeEntry();
+        zip.finish();
+    }
+
+    private static Map<String, Object> system() {
+        Map<String, Object> system = new LinkedHashMap<>();
+        system.put("os", System.getProperty("os.name"));
+        system.put("java_version", System.getProperty("java.version"));
+        system.put("available_processors", Runtime.getRuntime().availableProcessors());
+        system.put("total_memory_mb", Runtime.getRuntime().totalMemory() / (1024 * 1024));
+        return system;
+    }
+}
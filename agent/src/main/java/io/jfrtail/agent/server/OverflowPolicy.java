@@ -0,0 +1,17 @@
+package io.jfrtail.agent.server;
+
+/**
+ * What to do when a TCP subscriber's outbound queue is full.
+ */
+public enum OverflowPolicy {
+    /** Evict the oldest queued event to make room for the new one. */
+    DROP_OLDEST,
+    /** Discard the incoming event and keep what is already queued. */
+    DROP_NEWEST,
+    /** Close the connection; the client can reconnect and start fresh. */
+    DISCONNECT;
+
+    public static OverflowPolicy parse(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,145 @@
+package io.jfrtail.agent.server;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Executors for the agent's request handling. Both kinds are bounded, so the
+ * threads the agent adds to the monitored JVM do not grow with the number of
+ * viewers:
+ * <ul>
+ * <li>platform: a fixed pool of at most {@code maxConcurrent} daemon threads,
+ * created on demand; further tasks wait in the queue.</li>
+ * <li>virtual: one virtual thread per task, at most {@code maxConcurrent}
+ * running at once. Needs Java 21; looked up reflectively so the agent still
+ * builds and runs on 17, where it falls back to platform threads.</li>
+ * </ul>
+ */
+public final class ServerExecutors {
+
+    private ServerExecutors() {
+    }
+
+    /**
+     * @param name           thread name prefix
+     * @param virtualThreads prefer virtual threads when the JVM supports them
+     * @param maxConcurrent  tasks running at the same time
+     */
+    public static ExecutorService bounded(String name, boolean virtualThreads, int maxConcurrent) {
+        return bounded(name, virtualThreads, maxConcurrent, t -> {
+        });
+    }
+
+    /**
+     * @param onNewThread called with every platform thread the pool creates,
+     *                    e.g. to account for its CPU time. Virtual threads are
+     *                    not reported: their CPU time goes to shared carriers.
+     */
+    public static ExecutorService bounded(String name, boolean virtualThreads, int maxConcurrent,
+            Consumer<Thread> onNewThread) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Max concurrent tasks must be positive");
+        }
+        if (virtualThreads) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor(name);
+            if (virtual != null) {
+                return new CappedExecutor(virtual, maxConcurrent);
+            }
+            System.out.println("[JfrTail] Virtual threads need Java 21, using platform threads for " + name);
+        }
+        return Executors.newFixedThreadPool(maxConcurrent, daemonFactory(name, onNewThread));
+    }
+
+    /**
+     * {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory())}.
+     * Named so the agent still recognizes, and ignores, events of its own threads.
+     *
+     * @return null if this JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Java 17-20, or preview not enabled on 19/20
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String name, Consumer<Thread> onNewThread) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            onNewThread.accept(t);
+            return t;
+        };
+    }
+
+    /**
+     * Virtual threads are cheap to park, so the cap is a semaphore acquired by
+     * the task itself rather than a queue in front of the executor.
+     */
+    private static final class CappedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        CappedExecutor(ExecutorService delegate, int maxConcurrent) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
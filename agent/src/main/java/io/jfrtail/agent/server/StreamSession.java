@@ -0,0 +1,79 @@
+package io.jfrtail.agent.server;
+
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.common.wire.Subscription;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One {@code /jfr/stream} subscriber: a bounded queue filled by the network
+ * consumer and drained into the chunked response by the exchange's own
+ * thread. Offering never blocks; when the queue is full the event is dropped
+ * and counted, and the writer catches up from the history, which holds the
+ * same events under the same ids.
+ * <p>
+ * A latest-only session (the dashboard) has no queue: the broadcaster just
+ * replaces its newest event, and the writer sends it once an interval.
+ */
+final class StreamSession {
+    /** Evaluated by the broadcaster only; the writer has its own copy. */
+    final Subscription subscription;
+    final boolean latestOnly;
+    private final BlockingQueue<Frame> queue;
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicReference<CapturedEvent> latest = new AtomicReference<>();
+
+    StreamSession(Subscription subscription, int capacity, boolean latestOnly) {
+        this.subscription = subscription;
+        this.latestOnly = latestOnly;
+        this.queue = new ArrayBlockingQueue<>(latestOnly ? 1 : capacity);
+    }
+
+    /** Latest-only sessions: replaces the event the writer will send next. */
+    void setLatest(CapturedEvent event) {
+        latest.set(event);
+    }
+
+    /** @return the newest event since the last call, null if none. */
+    CapturedEvent takeLatest() {
+        return latest.getAndSet(null);
+    }
+
+    /** @param json the event encoded once for every stream subscriber */
+    void offer(CapturedEvent event, byte[] json) {
+        if (!queue.offer(new Frame(event, json))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    Frame poll(long timeoutMillis) throws InterruptedException {
+        return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    Frame poll() {
+        return queue.poll();
+    }
+
+    void clear() {
+        queue.clear();
+    }
+
+    /** @return events dropped since the last call. */
+    long takeDropped() {
+        return dropped.getAndSet(0);
+    }
+
+    static final class Frame {
+        final CapturedEvent event;
+        final byte[] json;
+
+        Frame(CapturedEvent event, byte[] json) {
+            this.event = event;
+            this.json = json;
+        }
+    }
+}
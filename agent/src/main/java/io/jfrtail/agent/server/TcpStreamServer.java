@@ -0,0 +1,574 @@
+package io.jfrtail.agent.server;
+
+import io.jfrtail.agent.pipeline.BinaryEventEncoder;
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.CapturedStack;
+import io.jfrtail.agent.pipeline.EventEncoder;
+import io.jfrtail.common.EventSummary;
+import io.jfrtail.common.JsonUtils;
+import io.jfrtail.common.security.JwtLite;
+import io.jfrtail.common.wire.BinaryEventWriter;
+import io.jfrtail.common.wire.Compression;
+import io.jfrtail.common.wire.Subscription;
+import io.jfrtail.common.wire.WireFormat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selector based event stream server. A single thread accepts, authenticates
+ * and writes to every client; {@link #broadcast(CapturedEvent)} only encodes
+ * and enqueues, so a slow viewer can never backpressure the monitored
+ * application.
+ * <p>
+ * Protocol: the client sends {@code AUTH <jwt> [format=jsonl|binary]
+ * [compress=deflate]} and receives {@code OK Welcome format=<format>
+ * compress=<compression> pid=<pid>} followed by the event stream:
+ * one JSON event per line (default), or binary frames as described in
+ * {@link io.jfrtail.common.wire.BinaryProtocol}. After that the client may send
+ * {@code SUBSCRIBE ...} lines at any time (see {@link Subscription}); events a
+ * client did not subscribe to are never encoded for it. With
+ * {@code SUBSCRIBE mode=summary} a client gets one {@code {"summary":{...}}}
+ * line (binary: SUMMARY frame) per second instead of events.
+ * <p>
+ * Stack traces are sent once per connection: a JSONL client receives a
+ * {@code {"stack":{...}}} line before the first event carrying its
+ * {@code stack_id}, a binary client a STACK frame.
+ * <p>
+ * Events are written in batches following the {@link FlushPolicy}; with
+ * {@code compress=deflate} each batch ends with a deflate sync flush.
+ * <p>
+ * Connections beyond {@link #setMaxClients max clients}, authenticated or
+ * not, are answered {@code ERR Too many clients} and closed. The selector
+ * thread is the only thread, whatever the number of viewers.
+ */
+public class TcpStreamServer {
+    private static final long AUTH_TIMEOUT_MS = 5000;
+    private static final int MAX_LINE = 8 * 1024;
+    private static final byte[] SUMMARY_PREFIX = EventSummary.JSONL_PREFIX.getBytes(StandardCharsets.UTF_8);
+
+    private final int port;
+    private final String secret;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final FlushPolicy flushPolicy;
+    private volatile int maxClients = Integer.MAX_VALUE;
+
+    private final Set<ClientSession> clients = ConcurrentHashMap.newKeySet();
+    private final Queue<ClientSession> pendingWrites = new ConcurrentLinkedQueue<>();
+    // Selector thread only: sessions holding a batch that is not due yet
+    private final Set<ClientSession> batching = new HashSet<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private final EventEncoder jsonEncoder = new EventEncoder();
+    // Totals of disconnected clients, so the agent-wide counters stay monotonic
+    private final AtomicLong retiredBytesSent = new AtomicLong(0);
+    private final AtomicLong retiredDropped = new AtomicLong(0);
+    private final AtomicLong rejectedClients = new AtomicLong(0);
+    // Written by the broadcasting thread only
+    private volatile long serializationNanos;
+    private volatile long serializedEvents;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private volatile boolean running;
+
+    public TcpStreamServer(int port, String secret, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(port, secret, queueCapacity, overflowPolicy, FlushPolicy.DEFAULT);
+    }
+
+    public TcpStreamServer(int port, String secret, int queueCapacity, OverflowPolicy overflowPolicy,
+            FlushPolicy flushPolicy) {
+        this.port = port;
+        this.secret = secret;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.flushPolicy = flushPolicy != null ? flushPolicy : FlushPolicy.DEFAULT;
+    }
+
+    /** Caps open connections, including ones still authenticating. */
+    public void setMaxClients(int maxClients) {
+        if (maxClients <= 0) {
+            throw new IllegalArgumentException("Max clients must be positive");
+        }
+        this.maxClients = maxClients;
+    }
+
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        thread = new Thread(this::run, "jfr-tail-tcp");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("[JfrTail] TCP Server started on port " + port);
+    }
+
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /** @return id of the selector thread, or -1 if not started. */
+    public long getThreadId() {
+        return thread != null ? thread.getId() : -1;
+    }
+
+    public boolean hasClients() {
+        return !clients.isEmpty();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /** Connections turned away because {@link #getMaxClients()} were open. */
+    public long getRejectedClients() {
+        return rejectedClients.get();
+    }
+
+    public List<Map<String, Object>> getClientStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (ClientSession client : clients) {
+            stats.add(client.stats());
+        }
+        return stats;
+    }
+
+    /** @return bytes written to clients, including disconnected ones. */
+    public long getBytesSent() {
+        long total = retiredBytesSent.get();
+        for (ClientSession client : clients) {
+            total += client.getBytesSent();
+        }
+        return total;
+    }
+
+    /** @return events dropped by client queue overflow, including disconnected clients. */
+    public long getDropped() {
+        long total = retiredDropped.get();
+        for (ClientSession client : clients) {
+            total += client.getDropped();
+        }
+        return total;
+    }
+
+    /** @return payloads waiting in client queues right now. */
+    public int getQueueDepth() {
+        int total = 0;
+        for (ClientSession client : clients) {
+            total += client.queued();
+        }
+        return total;
+    }
+
+    /** @return time spent encoding events (JSON and binary) since start. */
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    /** @return number of encodings done, one per JSON event and per binary frame. */
+    public long getSerializedEvents() {
+        return serializedEvents;
+    }
+
+    /**
+     * Encodes the event for every authenticated client subscribed to it and
+     * enqueues it. JSON is encoded at most once and the array shared by all
+     * JSONL clients; binary clients each get their own frame since
+     * dictionaries are per connection.
+     * <p>
+     * Must always be called from the same thread.
+     */
+    public void broadcast(CapturedEvent event) {
+        boolean wake = false;
+        byte[] json = null;
+        long encodeNanos = 0;
+        int encodings = 0;
+        for (ClientSession client : clients) {
+            Subscription subscription = client.subscription;
+            if (subscription.isSummary()
+                    || !subscription.matches(event.getType(), event.getThread(), event.getDurationNanos())) {
+                continue;
+            }
+            ClientSession.Offer result;
+            if (client.format == WireFormat.BINARY) {
+                long start = System.nanoTime();
+                byte[] frame = BinaryEventEncoder.encode(event, client.binaryWriter);
+                encodeNanos += System.nanoTime() - start;
+                encodings++;
+                result = client.offer(client.binaryWriter.takeStateFrames(), frame);
+            } else {
+                if (json == null) {
+                    long start = System.nanoTime();
+                    json = jsonEncoder.encode(event);
+                    encodeNanos += System.nanoTime() - start;
+                    encodings++;
+                }
+                CapturedStack stack = event.getStack();
+                byte[] definition = stack != null && client.stacks.needsDefinition(stack.getId())
+                        ? jsonEncoder.encodeDefinition(stack)
+                        : null;
+                result = client.offer(definition, json);
+            }
+            if (result == ClientSession.Offer.OVERFLOW) {
+                System.out.println("[JfrTail] TCP Client " + client + " too slow, disconnecting");
+                client.closeAfterFlush = true;
+                clients.remove(client);
+                pendingWrites.add(client);
+                wake = true;
+            } else if (result == ClientSession.Offer.QUEUED_NOTIFY) {
+                pendingWrites.add(client);
+                wake = true;
+            }
+        }
+        if (encodings > 0) {
+            serializationNanos += encodeNanos;
+            serializedEvents += encodings;
+        }
+        if (wake && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Sends a per-second rollup to every client in summary mode, restricted
+     * to the types it subscribed to. Called once a second by the stats
+     * consumer thread, concurrently with {@link #broadcast}: it touches no
+     * per-connection encoder state.
+     */
+    public void broadcastSummary(EventSummary summary) {
+        boolean wake = false;
+        byte[] json = null;
+        for (ClientSession client : clients) {
+            Subscription subscription = client.subscription;
+            if (!subscription.isSummary()) {
+                continue;
+            }
+            byte[] encoded;
+            if (subscription.isAllTypes()) {
+                if (json == null) {
+                    json = JsonUtils.toJson(summary).getBytes(StandardCharsets.UTF_8);
+                }
+                encoded = json;
+            } else {
+                encoded = JsonUtils.toJson(filter(summary, subscription)).getBytes(StandardCharsets.UTF_8);
+            }
+            byte[] payload;
+            if (client.format == WireFormat.BINARY) {
+                payload = BinaryEventWriter.summaryFrame(encoded);
+            } else {
+                payload = new byte[SUMMARY_PREFIX.length + encoded.length + 2];
+                System.arraycopy(SUMMARY_PREFIX, 0, payload, 0, SUMMARY_PREFIX.length);
+                System.arraycopy(encoded, 0, payload, SUMMARY_PREFIX.length, encoded.length);
+                payload[payload.length - 2] = '}';
+                payload[payload.length - 1] = '\n';
+            }
+            ClientSession.Offer result = client.offer(payload);
+            if (result == ClientSession.Offer.OVERFLOW) {
+                System.out.println("[JfrTail] TCP Client " + client + " too slow, disconnecting");
+                client.closeAfterFlush = true;
+                clients.remove(client);
+                pendingWrites.add(client);
+                wake = true;
+            } else if (result == ClientSession.Offer.QUEUED_NOTIFY) {
+                pendingWrites.add(client);
+                wake = true;
+            }
+        }
+        if (wake && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    private static EventSummary filter(EventSummary summary, Subscription subscription) {
+        EventSummary filtered = new EventSummary();
+        filtered.setTs(summary.getTs());
+        filtered.setPid(summary.getPid());
+        filtered.setLateEvents(summary.getLateEvents());
+        long total = 0;
+        for (Map.Entry<String, EventSummary.TypeSummary> entry : summary.getTypes().entrySet()) {
+            if (subscription.matchesType(entry.getKey())) {
+                filtered.getTypes().put(entry.getKey(), entry.getValue());
+                total += entry.getValue().getCount();
+            }
+        }
+        filtered.setTotalEvents(total);
+        return filtered;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long timeout = nextBatchTimeoutMillis();
+                if (timeout > 0) {
+                    selector.select(timeout);
+                } else {
+                    selector.selectNow();
+                }
+                wakeupPending.set(false);
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    ClientSession session = (ClientSession) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(session);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(session);
+                        }
+                    } catch (IOException e) {
+                        disconnect(session);
+                    }
+                }
+
+                ClientSession session;
+                while ((session = pendingWrites.poll()) != null) {
+                    if (session.key.isValid()) {
+                        batching.add(session);
+                    }
+                }
+                writeDueBatches();
+
+                expireUnauthenticated();
+            }
+        } catch (IOException e) {
+            System.err.println("[JfrTail] TCP Server failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof ClientSession) {
+                    ((ClientSession) key.attachment()).close();
+                }
+            }
+            clients.clear();
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /** @return milliseconds until the earliest pending batch is due, at most a second. */
+    private long nextBatchTimeoutMillis() {
+        if (!pendingWrites.isEmpty()) {
+            return 0;
+        }
+        long next = Long.MAX_VALUE;
+        for (ClientSession session : batching) {
+            next = Math.min(next, session.batchDeadline());
+        }
+        if (next == Long.MAX_VALUE) {
+            return 1000;
+        }
+        long nanos = next - System.nanoTime();
+        return nanos <= 0 ? 0 : Math.min(1000, (nanos + 999_999) / 1_000_000);
+    }
+
+    private void writeDueBatches() {
+        long now = System.nanoTime();
+        for (Iterator<ClientSession> it = batching.iterator(); it.hasNext(); ) {
+            ClientSession session = it.next();
+            long deadline = session.batchDeadline();
+            if (!session.key.isValid() || deadline == Long.MAX_VALUE) {
+                // Closed, or already written out through OP_WRITE
+                it.remove();
+            } else if (deadline - now <= 0) {
+                it.remove();
+                try {
+                    write(session);
+                } catch (IOException e) {
+                    disconnect(session);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        // Every other key is a session
+        if (selector.keys().size() - 1 >= maxClients) {
+            try (SocketChannel rejected = channel) {
+                rejected.write(ByteBuffer.wrap("ERR Too many clients\n".getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+            rejectedClients.incrementAndGet();
+            System.out.println("[JfrTail] TCP Client rejected, " + maxClients + " connections open");
+            return;
+        }
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new ClientSession(channel, key, queueCapacity, overflowPolicy, flushPolicy));
+    }
+
+    private void read(ClientSession session) throws IOException {
+        ByteBuffer buf = session.readBuffer;
+        int n = session.channel.read(buf);
+        if (n < 0) {
+            disconnect(session);
+            return;
+        }
+        buf.flip();
+        int start = buf.position();
+        for (int i = start; i < buf.limit(); i++) {
+            if (buf.get(i) == '\n') {
+                String line = new String(buf.array(), start, i - start, StandardCharsets.UTF_8).trim();
+                start = i + 1;
+                handleLine(session, line);
+                if (!session.key.isValid()) {
+                    return;
+                }
+            }
+        }
+        buf.position(start);
+        buf.compact();
+        if (!buf.hasRemaining() && buf.capacity() >= MAX_LINE) {
+            // Line too long, client is not speaking our protocol
+            disconnect(session);
+        }
+    }
+
+    private void handleLine(ClientSession session, String line) throws IOException {
+        if (session.authenticated) {
+            if (line.equals(Subscription.COMMAND) || line.startsWith(Subscription.COMMAND + " ")) {
+                subscribe(session, line.substring(Subscription.COMMAND.length()));
+            }
+            return;
+        }
+        if (!line.startsWith("AUTH ")) {
+            reject(session, "ERR Auth Required");
+            return;
+        }
+        String[] parts = line.substring(5).trim().split("\\s+");
+        if (!JwtLite.verifyToken(parts[0], secret)) {
+            reject(session, "ERR Invalid Token");
+            return;
+        }
+        WireFormat format = WireFormat.JSONL;
+        Compression compression = Compression.NONE;
+        for (int i = 1; i < parts.length; i++) {
+            try {
+                if (parts[i].startsWith("format=")) {
+                    format = WireFormat.parse(parts[i].substring(7));
+                } else if (parts[i].startsWith("compress=")) {
+                    compression = Compression.parse(parts[i].substring(9));
+                }
+            } catch (IllegalArgumentException e) {
+                reject(session, "ERR " + e.getMessage());
+                return;
+            }
+        }
+        session.format = format;
+        if (format == WireFormat.BINARY) {
+            session.binaryWriter = new BinaryEventWriter();
+        }
+        session.authenticated = true;
+        session.sendControl(("OK Welcome format=" + format.key() + " compress=" + compression.key() + " pid="
+                + CapturedEvent.PID + "\n").getBytes(StandardCharsets.UTF_8));
+        if (compression == Compression.DEFLATE) {
+            session.enableCompression();
+        }
+        write(session);
+        clients.add(session);
+        System.out.println("[JfrTail] TCP Client authenticated and added. Current clients: " + clients.size());
+    }
+
+    private void subscribe(ClientSession session, String arguments) {
+        // No reply: the stream may already be binary. A bad line keeps the old filter.
+        try {
+            session.subscription = Subscription.parse(arguments);
+            System.out.println("[JfrTail] TCP Client " + session + " subscribed: " + session.subscription);
+        } catch (IllegalArgumentException e) {
+            System.out.println("[JfrTail] TCP Client " + session + " sent invalid SUBSCRIBE: " + e.getMessage());
+        }
+    }
+
+    private void reject(ClientSession session, String message) throws IOException {
+        session.sendControl((message + "\n").getBytes(StandardCharsets.UTF_8));
+        session.closeAfterFlush = true;
+        write(session);
+    }
+
+    private void write(ClientSession session) throws IOException {
+        session.closeBatch();
+        boolean drained = session.flush();
+        if (drained && session.closeAfterFlush) {
+            disconnect(session);
+            return;
+        }
+        int ops = SelectionKey.OP_READ;
+        if (!drained || session.queued() > 0) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        session.key.interestOps(ops);
+    }
+
+    private void expireUnauthenticated() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof ClientSession) {
+                ClientSession session = (ClientSession) attachment;
+                if (!session.authenticated && !session.closeAfterFlush
+                        && now - session.connectedAtMillis > AUTH_TIMEOUT_MS) {
+                    disconnect(session);
+                }
+            }
+        }
+    }
+
+    private void disconnect(ClientSession session) {
+        boolean wasClient = clients.remove(session);
+        session.close();
+        if (session.authenticated) {
+            retiredBytesSent.addAndGet(session.getBytesSent());
+            retiredDropped.addAndGet(session.getDropped());
+        }
+        if (wasClient || session.authenticated) {
+            System.out.println("[JfrTail] TCP Client disconnected. Remaining clients: " + clients.size());
+        }
+    }
+}
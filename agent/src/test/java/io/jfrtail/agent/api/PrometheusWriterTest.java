@@ -0,0 +1,41 @@
+package io.jfrtail.agent.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrometheusWriterTest {
+
+    private static String labeled(Map<String, Long> values, int maxSeries) {
+        StringBuilder sb = new StringBuilder();
+        new PrometheusWriter(sb).labeled("m", "counter", "help", "type", values, maxSeries);
+        return sb.toString();
+    }
+
+    @Test
+    void valuesBeyondTheCapAreFolded() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("a", 1L);
+        values.put("b", 2L);
+        values.put("c", 3L);
+        assertEquals("# HELP m help\n# TYPE m counter\n"
+                + "m{type=\"a\"} 1\nm{type=\"b\"} 2\nm{type=\"other\"} 3\n", labeled(values, 2));
+    }
+
+    @Test
+    void realOtherValueJoinsTheFold() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("other", 10L);
+        values.put("a", 1L);
+        values.put("b", 2L);
+        values.put("c", 3L);
+        assertEquals("# HELP m help\n# TYPE m counter\n"
+                + "m{type=\"a\"} 1\nm{type=\"b\"} 2\nm{type=\"other\"} 13\n", labeled(values, 2));
+        values.remove("c");
+        assertEquals("# HELP m help\n# TYPE m counter\n"
+                + "m{type=\"a\"} 1\nm{type=\"b\"} 2\nm{type=\"other\"} 10\n", labeled(values, 2));
+    }
+}
@@ -0,0 +1,37 @@
+package io.jfrtail.agent.api;
+
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.TestRecordings;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StatsManagerTest {
+    private static final String TYPE = "test.GarbageCollection";
+
+    /** Same shape as jdk.GarbageCollection, whose sumOfPauses is in ticks. */
+    @Name(TYPE)
+    static class GcEvent extends Event {
+        @Timespan(Timespan.MILLISECONDS)
+        long sumOfPauses;
+    }
+
+    @Test
+    void gcPausesAreRecordedInNanoseconds() throws Exception {
+        CapturedEvent event = TestRecordings.capture(TestRecordings.record(TYPE, () -> {
+            GcEvent gc = new GcEvent();
+            gc.sumOfPauses = 7;
+            gc.commit();
+        }).get(0), null);
+        assertEquals(7_000_000, event.getFields().getLong("sumOfPauses", -1));
+
+        StatsManager stats = new StatsManager();
+        stats.accept(event);
+        assertEquals(1, stats.getGcCount());
+        assertEquals(1, stats.getGcPauseHistogram().getCount());
+        assertEquals(7_000_000, stats.getGcPauseHistogram().getSumNanos());
+    }
+}
@@ -0,0 +1,161 @@
+package io.jfrtail.agent.pipeline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jfrtail.common.JfrEvent;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.consumer.RecordedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventEncoderTest {
+    private static final String TYPE = "test.Encoded";
+    private static final String THREAD = "encoder-test";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Name(TYPE)
+    @StackTrace(true)
+    static class EncodedEvent extends Event {
+        long count;
+        int small;
+        double ratio;
+        double infinite;
+        boolean flag;
+        String text;
+        String missing;
+        Class<?> type;
+        Thread other;
+    }
+
+    private static List<RecordedEvent> record(int n) throws Exception {
+        return TestRecordings.record(TYPE, () -> TestRecordings.onThread(THREAD, () -> {
+            for (int i = 0; i < n; i++) {
+                EncodedEvent event = new EncodedEvent();
+                event.begin();
+                event.count = 5_000_000_000L + i;
+                event.small = -3;
+                event.ratio = 0.5;
+                event.infinite = Double.POSITIVE_INFINITY;
+                event.flag = true;
+                event.text = "say \"hi\" caf\u00e9";
+                event.type = String.class;
+                event.other = Thread.currentThread();
+                event.commit();
+            }
+        }));
+    }
+
+    @Test
+    void capturesTypedFieldsWithoutHeaders() throws Exception {
+        RecordedEvent recorded = record(1).get(0);
+        CapturedEvent event = TestRecordings.capture(recorded, new StackInterner(16));
+
+        assertEquals(TYPE, event.getType());
+        assertEquals(THREAD, event.getThread());
+        assertEquals(recorded.getStartTime(), event.getStartTime());
+        assertTrue(event.hasDuration());
+        assertEquals(recorded.getDuration().toNanos(), event.getDurationNanos());
+        assertEquals(1, event.getWeight());
+        assertEquals(-1, event.getSequence());
+
+        CapturedObject fields = event.getFields();
+        assertEquals(5_000_000_000L, fields.getLong("count", 0));
+        assertEquals(-3, fields.getLong("small", 0));
+        assertEquals(0.5, fields.getDouble("ratio", 0));
+        assertEquals(1, fields.getLong("flag", 0));
+        assertEquals("java.lang.String", fields.getString("type"));
+        assertEquals(THREAD, fields.getString("other"));
+        assertNull(fields.getString("missing"));
+        assertEquals(-1, fields.getLong("nope", -1));
+        for (String header : List.of("startTime", "duration", "eventThread", "stackTrace")) {
+            assertFalse(fields.toMap().containsKey(header), header);
+        }
+    }
+
+    @Test
+    void encodesOneJsonLine() throws Exception {
+        CapturedEvent event = TestRecordings.capture(record(1).get(0), new StackInterner(16));
+        byte[] line = new EventEncoder().encode(event);
+
+        String text = new String(line, StandardCharsets.UTF_8);
+        assertTrue(text.endsWith("\n"));
+        assertEquals(text.length() - 1, text.indexOf('\n'));
+
+        JsonNode json = MAPPER.readTree(text);
+        assertEquals(event.getStartTime().toString(), json.get("ts").asText());
+        assertEquals(CapturedEvent.PID, json.get("pid").asLong());
+        assertEquals(TYPE, json.get("event").asText());
+        assertEquals(THREAD, json.get("thread").asText());
+        assertEquals(event.getDurationMs(), json.get("duration_ms").asDouble());
+        assertEquals(event.getStack().getId(), json.get("stack_id").asLong());
+
+        JsonNode fields = json.get("fields");
+        assertTrue(fields.get("count").isIntegralNumber());
+        assertEquals(5_000_000_000L, fields.get("count").asLong());
+        assertEquals(-3, fields.get("small").asInt());
+        assertTrue(fields.get("ratio").isDouble());
+        assertEquals("Infinity", fields.get("infinite").asText());
+        assertTrue(fields.get("flag").asBoolean());
+        assertEquals("say \"hi\" caf\u00e9", fields.get("text").asText());
+        assertTrue(fields.get("missing").isNull());
+        assertEquals("java.lang.String", fields.get("type").asText());
+        assertEquals(THREAD, fields.get("other").asText());
+    }
+
+    @Test
+    void encodedArraysAreNotReused() throws Exception {
+        List<RecordedEvent> recorded = record(2);
+        EventEncoder encoder = new EventEncoder();
+        byte[] first = encoder.encode(TestRecordings.capture(recorded.get(0), null));
+        byte[] copy = first.clone();
+        byte[] second = encoder.encode(TestRecordings.capture(recorded.get(1), null));
+        assertArrayEquals(copy, first);
+        assertFalse(new String(second, StandardCharsets.UTF_8).contains("stack_id"));
+        assertEquals(5_000_000_001L, MAPPER.readTree(second).get("fields").get("count").asLong());
+    }
+
+    @Test
+    void stackDefinitionIsEncodedOnce() throws Exception {
+        List<RecordedEvent> recorded = record(2);
+        StackInterner stacks = new StackInterner(16);
+        CapturedEvent first = TestRecordings.capture(recorded.get(0), stacks);
+        CapturedEvent second = TestRecordings.capture(recorded.get(1), stacks);
+        assertSame(first.getStack(), second.getStack());
+
+        EventEncoder encoder = new EventEncoder();
+        byte[] definition = encoder.encodeDefinition(first.getStack());
+        assertSame(definition, encoder.encodeDefinition(second.getStack()));
+
+        JsonNode stack = MAPPER.readTree(definition).get("stack");
+        assertEquals(first.getStack().getId(), stack.get("id").asLong());
+        assertEquals(first.getStack().isTruncated(), stack.get("truncated").asBoolean());
+        assertEquals(first.getStack().getFrames().size(), stack.get("frames").size());
+        assertTrue(stack.get("frames").get(0).asText().contains("EventEncoderTest"), stack.toString());
+    }
+
+    @Test
+    void toJfrEventCarriesFieldsAndStack() throws Exception {
+        CapturedEvent event = TestRecordings.capture(record(1).get(0), new StackInterner(16));
+        JfrEvent jfrEvent = event.toJfrEvent();
+        assertEquals(TYPE, jfrEvent.getEvent());
+        assertEquals(THREAD, jfrEvent.getThread());
+        assertEquals(event.getStack().getFrames(), jfrEvent.getStackTrace());
+        Map<String, Object> fields = jfrEvent.getFields();
+        assertEquals(5_000_000_000L, fields.get("count"));
+        assertEquals(true, fields.get("flag"));
+        assertNotNull(jfrEvent.getDurationMs());
+    }
+}
@@ -0,0 +1,88 @@
+package io.jfrtail.agent.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLimiterTest {
+
+    @Test
+    void unlimitedAdmitsEverythingWithWeightOne() {
+        EventLimiter limiter = new EventLimiter("t", 1.0, 0);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1, limiter.admit());
+        }
+        assertEquals(0, limiter.getRejected());
+    }
+
+    @Test
+    void integralSamplingWeightIsTheInverseProbability() {
+        EventLimiter limiter = new EventLimiter("t", 0.25, 0);
+        int n = 100_000;
+        long sum = 0;
+        long admitted = 0;
+        for (int i = 0; i < n; i++) {
+            long weight = limiter.admit();
+            if (weight != 0) {
+                assertEquals(4, weight);
+                admitted++;
+            }
+            sum += weight;
+        }
+        assertEquals(n - admitted, limiter.getRejected());
+        // Binomial: one standard deviation of the sum is about 550 here
+        assertEquals(n, sum, n * 0.05);
+    }
+
+    @Test
+    void fractionalSamplingCreditIsCarried() {
+        EventLimiter limiter = new EventLimiter("t", 0.3, 0);
+        long sum = 0;
+        long admitted = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long weight = limiter.admit();
+            if (weight != 0) {
+                assertTrue(weight == 3 || weight == 4, "weight " + weight);
+                admitted++;
+            }
+            sum += weight;
+        }
+        // Only the fraction not yet paid out is missing
+        assertEquals(admitted / 0.3, sum, 1.0);
+    }
+
+    @Test
+    void refusedWeightGoesToTheNextAdmittedEvent() throws InterruptedException {
+        EventLimiter limiter = new EventLimiter("t", 1.0, 5);
+        long sum = 0;
+        int n = 1000;
+        for (int i = 0; i < n; i++) {
+            sum += limiter.admit();
+        }
+        assertTrue(sum < n, "the burst of 5 cannot admit " + n + " events at once");
+        // 250 ms refill more than one token at 5 per second
+        Thread.sleep(250);
+        long last = limiter.admit();
+        assertTrue(last > 1, "carried weight " + last);
+        assertEquals(n + 1, sum + last);
+    }
+
+    @Test
+    void samplingAndRateLimitTogether() throws InterruptedException {
+        EventLimiter limiter = new EventLimiter("t", 0.5, 5);
+        long sum = 0;
+        int n = 10_000;
+        for (int i = 0; i < n; i++) {
+            sum += limiter.admit();
+        }
+        Thread.sleep(250);
+        long last = 0;
+        while (last == 0) {
+            last = limiter.admit();
+        }
+        // Rate limiting loses nothing; sampling is right in expectation
+        assertEquals(n, sum + last, n * 0.05);
+        assertEquals(limiter.getStats().get("seen"), limiter.getRejected() + (Long) limiter.getStats().get("admitted"));
+    }
+}
@@ -0,0 +1,159 @@
+package io.jfrtail.agent.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    private static final int OVERFLOW = LatencyHistogram.bucketCount() - 1;
+
+    @Test
+    void firstBucketHoldsUpToOneMicrosecond() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(1));
+        assertEquals(0, LatencyHistogram.bucketOf(1000));
+        assertEquals(1000, LatencyHistogram.upperBoundNanos(0));
+        assertEquals(1, LatencyHistogram.bucketOf(1001));
+    }
+
+    @Test
+    void quarterOctaveBounds() {
+        // 1 us to 2 us is split in four
+        assertEquals(1250, LatencyHistogram.upperBoundNanos(1));
+        assertEquals(1500, LatencyHistogram.upperBoundNanos(2));
+        assertEquals(1750, LatencyHistogram.upperBoundNanos(3));
+        assertEquals(2000, LatencyHistogram.upperBoundNanos(4));
+        assertEquals(2500, LatencyHistogram.upperBoundNanos(5));
+        // Tenth octave ends at 2^10 us
+        assertEquals(1_024_000, LatencyHistogram.upperBoundNanos(10 * 4));
+    }
+
+    @Test
+    void everyBoundBelongsToItsOwnBucket() {
+        long previous = 0;
+        for (int i = 0; i < OVERFLOW; i++) {
+            long bound = LatencyHistogram.upperBoundNanos(i);
+            assertTrue(bound > previous, "bounds grow at " + i);
+            assertEquals(i, LatencyHistogram.bucketOf(bound), "upper bound of " + i);
+            assertEquals(i, LatencyHistogram.bucketOf(previous + 1), "lower end of " + i);
+            assertEquals(i + 1, LatencyHistogram.bucketOf(bound + 1), "past the bound of " + i);
+            previous = bound;
+        }
+    }
+
+    @Test
+    void lastFiniteBoundIsTwoToTheTwentyFifthMicroseconds() {
+        long last = LatencyHistogram.upperBoundNanos(OVERFLOW - 1);
+        assertEquals((1L << 25) * 1000, last);
+        assertEquals(OVERFLOW, LatencyHistogram.bucketOf(last + 1));
+        assertEquals(OVERFLOW, LatencyHistogram.bucketOf(Long.MAX_VALUE / 2));
+        assertEquals(-1, LatencyHistogram.upperBoundNanos(OVERFLOW));
+    }
+
+    @Test
+    void octaveBoundsArePowersOfTwoMicroseconds() {
+        int octaveBounds = 0;
+        for (int i = 0; i < OVERFLOW; i++) {
+            if (LatencyHistogram.isOctaveBound(i)) {
+                long micros = LatencyHistogram.upperBoundNanos(i) / 1000;
+                assertEquals(1, Long.bitCount(micros), "bucket " + i + " ends at " + micros + " us");
+                octaveBounds++;
+            }
+        }
+        assertEquals(26, octaveBounds);
+        assertTrue(LatencyHistogram.isOctaveBound(OVERFLOW));
+        assertFalse(LatencyHistogram.isOctaveBound(1));
+    }
+
+    @Test
+    void percentilesAreBucketBoundsCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileNanos(0.5));
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1_100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(3_000_000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(1250, histogram.percentileNanos(0.5));
+        assertEquals(1250, histogram.percentileNanos(0.9));
+        // 3 ms falls in the (2.56, 3.072] ms bucket, whose bound is above the max seen
+        assertEquals(3_000_000, histogram.percentileNanos(0.99));
+        assertEquals(3_000_000, histogram.getMaxNanos());
+        assertEquals(90 * 1_100L + 10 * 3_000_000L, histogram.getSumNanos());
+    }
+
+    @Test
+    void overflowReportsTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100_000_000_000L);
+        assertEquals(1, histogram.getBucket(OVERFLOW));
+        assertEquals(100_000_000_000L, histogram.percentileNanos(0.5));
+    }
+
+    @Test
+    void weightedRecordAndNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000, 4);
+        histogram.record(-10);
+        assertEquals(5, histogram.getCount());
+        assertEquals(20_000, histogram.getSumNanos());
+        assertEquals(1, histogram.getBucket(0));
+        assertEquals(4, histogram.getBucket(LatencyHistogram.bucketOf(5_000)));
+    }
+
+    @Test
+    void mergeAddsBuckets() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(500);
+        a.record(10_000);
+        b.record(10_000);
+        b.record(7_000_000);
+        a.merge(b);
+        assertEquals(4, a.getCount());
+        assertEquals(500 + 20_000 + 7_000_000, a.getSumNanos());
+        assertEquals(7_000_000, a.getMaxNanos());
+        assertEquals(2, a.getBucket(LatencyHistogram.bucketOf(10_000)));
+        assertEquals(2, b.getCount());
+    }
+
+    @Test
+    void concurrentRecordsKeepTheLargestMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i * threads.length + offset);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(399_999, histogram.getMaxNanos());
+    }
+
+    @Test
+    void prometheusBucketsAreCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(800);
+        histogram.record(1_500);
+        histogram.record(1_000_000_000_000L);
+        StringBuilder sb = new StringBuilder();
+        histogram.writePrometheus(sb, "lat", "type=\"x\"");
+        String text = sb.toString();
+        assertTrue(text.contains("lat_bucket{type=\"x\",le=\"1.0E-6\"} 1\n"), text);
+        assertTrue(text.contains("lat_bucket{type=\"x\",le=\"2.0E-6\"} 2\n"), text);
+        assertTrue(text.contains("lat_bucket{type=\"x\",le=\"+Inf\"} 3\n"), text);
+        assertTrue(text.contains("lat_count{type=\"x\"} 3\n"), text);
+        assertEquals(26 + 1 + 2, text.split("\n").length);
+    }
+}
@@ -0,0 +1,59 @@
+package io.jfrtail.agent.pipeline;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Real {@link RecordedEvent}s for tests: records what {@code emit} commits and reads it back. */
+public final class TestRecordings {
+
+    private TestRecordings() {
+    }
+
+    /** @return the events of {@code type} committed by {@code emit}, with stack traces. */
+    public static List<RecordedEvent> record(String type, Runnable emit) throws Exception {
+        Path file = Files.createTempFile("jfr-tail-test", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(type).withStackTrace();
+                recording.start();
+                emit.run();
+                recording.stop();
+                recording.dump(file);
+            }
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(type)) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Captures the way the JFR thread does, with weight 1. */
+    public static CapturedEvent capture(RecordedEvent event, StackInterner stacks) {
+        EventPlan plan = new PlanCache().get(event);
+        return CapturedEvent.capture(plan, event, CapturedEvent.threadName(event), 1,
+                stacks != null && plan.hasStackTrace() ? stacks.intern(event.getStackTrace()) : null);
+    }
+
+    /** Runs {@code body} on a thread of the given name and waits for it. */
+    public static void onThread(String name, Runnable body) {
+        Thread thread = new Thread(body, name);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.jfrtail.agent.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedResponseTest {
+    private final AtomicReference<String> source = new AtomicReference<>("{\"events\":1}");
+    private final AtomicInteger encodings = new AtomicInteger();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+    private URI uri;
+
+    @BeforeEach
+    void start() throws IOException {
+        CachedResponse<String> response = new CachedResponse<>(source::get, value -> {
+            encodings.incrementAndGet();
+            return value.getBytes(StandardCharsets.UTF_8);
+        }, "application/json", true);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/stats", response::send);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/stats");
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private HttpResponse<byte[]> get(String... headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+        if (headers.length > 0) {
+            request.headers(headers);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String etag(HttpResponse<?> response) {
+        return response.headers().firstValue("ETag").orElseThrow();
+    }
+
+    @Test
+    void sameSourceSameBodyAndEtag() throws Exception {
+        HttpResponse<byte[]> first = get();
+        HttpResponse<byte[]> second = get();
+        assertEquals(200, first.statusCode());
+        assertEquals("{\"events\":1}", new String(first.body(), StandardCharsets.UTF_8));
+        assertEquals("application/json", first.headers().firstValue("Content-Type").orElseThrow());
+        assertEquals("no-cache", first.headers().firstValue("Cache-Control").orElseThrow());
+        assertTrue(etag(first).matches("\"[0-9a-f]+-[0-9a-f]+\""), etag(first));
+        assertEquals(etag(first), etag(second));
+        assertEquals(1, encodings.get());
+    }
+
+    @Test
+    void newSourceNewEtag() throws Exception {
+        String before = etag(get());
+        source.set("{\"events\":2}");
+        HttpResponse<byte[]> after = get();
+        assertNotEquals(before, etag(after));
+        assertEquals("{\"events\":2}", new String(after.body(), StandardCharsets.UTF_8));
+        assertEquals(2, encodings.get());
+    }
+
+    @Test
+    void matchingIfNoneMatchGetsNotModified() throws Exception {
+        String etag = etag(get());
+        HttpResponse<byte[]> strong = get("If-None-Match", etag);
+        assertEquals(304, strong.statusCode());
+        assertEquals(0, strong.body().length);
+        assertEquals(etag, etag(strong));
+
+        assertEquals(304, get("If-None-Match", "W/" + etag).statusCode());
+        assertEquals(304, get("If-None-Match", "\"other\", " + etag).statusCode());
+        assertEquals(304, get("If-None-Match", "*").statusCode());
+    }
+
+    @Test
+    void staleIfNoneMatchGetsTheBody() throws Exception {
+        String etag = etag(get());
+        source.set("{\"events\":3}");
+        HttpResponse<byte[]> response = get("If-None-Match", etag);
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"events\":3}", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void gzipHasItsOwnEtag() throws Exception {
+        HttpResponse<byte[]> plain = get();
+        HttpResponse<byte[]> gzip = get("Accept-Encoding", "GZIP, deflate");
+        assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElseThrow());
+        assertEquals("Accept-Encoding", gzip.headers().firstValue("Vary").orElseThrow());
+        assertEquals(etag(plain).replace("\"", ""), etag(gzip).replace("-gz\"", "").replace("\"", ""));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body()))) {
+            assertEquals("{\"events\":1}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        // An ETag only matches the encoding it was issued for
+        assertEquals(200, get("If-None-Match", etag(gzip)).statusCode());
+        assertEquals(304, get("Accept-Encoding", "gzip", "If-None-Match", etag(gzip)).statusCode());
+        assertFalse(plain.headers().firstValue("Content-Encoding").isPresent());
+    }
+
+    @Test
+    void headSendsHeadersOnly() throws Exception {
+        HttpResponse<byte[]> head = client.send(
+                HttpRequest.newBuilder(uri).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, head.statusCode());
+        assertEquals(0, head.body().length);
+        assertEquals(etag(get()), etag(head));
+    }
+}
@@ -0,0 +1,15 @@
+dependencies {
+    implementation(project(":agent"))
+    implementation(project(":common"))
+    implementation("org.openjdk.jmh:jmh-core:1.37")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// gradle :benchmarks:jmh -PjmhArgs="EventCapture -prof gc"
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks; pass JMH options with -PjmhArgs."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args = (project.findProperty("jmhArgs") as String? ?: "").split(" ").filter { it.isNotBlank() }
+}
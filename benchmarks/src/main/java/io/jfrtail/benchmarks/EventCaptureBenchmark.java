@@ -0,0 +1,139 @@
+package io.jfrtail.benchmarks;
+
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.EventEncoder;
+import io.jfrtail.agent.pipeline.EventPlan;
+import io.jfrtail.agent.pipeline.PlanCache;
+import io.jfrtail.agent.pipeline.StackInterner;
+import io.jfrtail.common.JfrEvent;
+import io.jfrtail.common.JsonUtils;
+import jdk.jfr.ValueDescriptor;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedObject;
+import jdk.jfr.consumer.RecordedThread;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of turning a HIGH profile {@link RecordedEvent} into the
+ * bytes sent to JSONL clients. {@code legacyMapAndJson} is the path before
+ * events were captured once: a {@link JfrEvent} with nested maps of strings,
+ * serialized by Jackson's object mapper. It never read stack traces, so the
+ * like-for-like comparison is with {@code capture} and {@code captureAndEncode};
+ * {@code captureWithStack} adds interning at the default {@code stackDepth}.
+ * Run with {@code -prof gc} for the allocation per event.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EventCaptureBenchmark {
+    private RecordedEvent[] events;
+    private int next;
+
+    private final PlanCache plans = new PlanCache();
+    private final StackInterner stacks = new StackInterner(Recordings.STACK_DEPTH);
+    private final EventEncoder encoder = new EventEncoder();
+
+    @Setup
+    public void setUp() throws Exception {
+        events = Recordings.highProfile().toArray(new RecordedEvent[0]);
+    }
+
+    private RecordedEvent nextEvent() {
+        RecordedEvent event = events[next];
+        next = next + 1 == events.length ? 0 : next + 1;
+        return event;
+    }
+
+    /** What the JFR thread does with {@code stackDepth=0}: the capture alone. */
+    @Benchmark
+    public CapturedEvent capture() {
+        RecordedEvent event = nextEvent();
+        EventPlan plan = plans.get(event);
+        return CapturedEvent.capture(plan, event, CapturedEvent.threadName(event), plan.admit(), null);
+    }
+
+    @Benchmark
+    public CapturedEvent captureWithStack() {
+        RecordedEvent event = nextEvent();
+        EventPlan plan = plans.get(event);
+        return CapturedEvent.capture(plan, event, CapturedEvent.threadName(event), plan.admit(),
+                plan.hasStackTrace() ? stacks.intern(event.getStackTrace()) : null);
+    }
+
+    @Benchmark
+    public byte[] captureAndEncode() {
+        return encoder.encode(capture());
+    }
+
+    @Benchmark
+    public byte[] legacyMapAndJson() {
+        RecordedEvent event = nextEvent();
+        JfrEvent jfrEvent = new JfrEvent();
+        jfrEvent.setTs(event.getStartTime());
+        jfrEvent.setPid(CapturedEvent.PID);
+        jfrEvent.setEvent(event.getEventType().getName());
+        jfrEvent.setThread(event.getThread() != null ? event.getThread().getJavaName() : "System");
+        if (event.hasField("duration")) {
+            jfrEvent.setDurationMs(event.getDuration("duration").toNanos() / 1_000_000.0);
+        }
+        Map<String, Object> fields = new HashMap<>();
+        for (ValueDescriptor descriptor : event.getEventType().getFields()) {
+            String name = descriptor.getName();
+            if ("startTime".equals(name) || "duration".equals(name) || "eventThread".equals(name)
+                    || "stackTrace".equals(name)) {
+                continue;
+            }
+            fields.put(name, legacyValue(event.getValue(name)));
+        }
+        jfrEvent.setFields(fields);
+        return (JsonUtils.toJson(jfrEvent) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Object legacyValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof RecordedClass) {
+            return ((RecordedClass) value).getName();
+        } else if (value instanceof RecordedThread) {
+            return ((RecordedThread) value).getJavaName();
+        } else if (value instanceof RecordedObject) {
+            RecordedObject object = (RecordedObject) value;
+            Map<String, Object> map = new HashMap<>();
+            for (ValueDescriptor v : object.getFields()) {
+                map.put(v.getName(), legacyValue(object.getValue(v.getName())));
+            }
+            return map;
+        }
+        return value.toString();
+    }
+
+    /** Events of each type in the recording, to put the per-event numbers in context. */
+    public static void main(String[] args) throws Exception {
+        List<RecordedEvent> events = Recordings.highProfile();
+        Map<String, Integer> types = new HashMap<>();
+        for (RecordedEvent event : events) {
+            types.merge(event.getEventType().getName(), 1, Integer::sum);
+        }
+        System.out.println(events.size() + " events: " + types);
+    }
+}
@@ -0,0 +1,123 @@
+package io.jfrtail.benchmarks;
+
+import io.jfrtail.common.security.JwtLite;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of one {@link JwtLite#verifyToken} call, as paid by every HTTP request
+ * and TCP login. {@code cached} repeats one token (a polling dashboard),
+ * {@code uncached} cycles through more valid tokens than the cache holds, so
+ * every call signs; {@code legacy} is the implementation before the per-thread
+ * Mac and the verified-token cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtVerifyBenchmark {
+    private static final String SECRET = "s3cret";
+    // Twice the verified-token cache, visited in order: every lookup misses
+    private static final int DISTINCT_TOKENS = 2048;
+
+    private String token;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        token = JwtLite.generateToken(SECRET, 3600);
+        tokens = new String[DISTINCT_TOKENS];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = JwtLite.generateToken(SECRET, 3600 + i);
+        }
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return JwtLite.verifyToken(token, SECRET);
+    }
+
+    @Benchmark
+    public boolean uncached() {
+        String t = tokens[next];
+        next = next + 1 == tokens.length ? 0 : next + 1;
+        return JwtLite.verifyToken(t, SECRET);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        return Legacy.verifyToken(token, SECRET);
+    }
+
+    /** verifyToken before the per-thread Mac and the cache, unchanged. */
+    static final class Legacy {
+        private static final Pattern PAYLOAD_PATTERN = Pattern.compile("\"exp\":(\\d+)");
+
+        static boolean verifyToken(String token, String secret) {
+            if (token == null || secret == null)
+                return false;
+
+            String[] parts = token.split("\\.");
+            if (parts.length != 3)
+                return false;
+
+            String b64Header = parts[0];
+            String b64Payload = parts[1];
+            String signature = parts[2];
+
+            String expectedSignature = sign(b64Header + "." + b64Payload, secret);
+            if (!expectedSignature.equals(signature)) {
+                return false;
+            }
+
+            try {
+                String payloadJson = new String(Base64.getUrlDecoder().decode(b64Payload), StandardCharsets.UTF_8);
+                Matcher matcher = PAYLOAD_PATTERN.matcher(payloadJson);
+                if (matcher.find()) {
+                    long exp = Long.parseLong(matcher.group(1));
+                    if (Instant.now().getEpochSecond() > exp) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            } catch (Exception e) {
+                return false;
+            }
+            return true;
+        }
+
+        private static String sign(String data, String secret) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+                byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new RuntimeException("Encryption Error", e);
+            }
+        }
+    }
+}
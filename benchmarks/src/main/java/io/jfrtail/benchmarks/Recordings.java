@@ -0,0 +1,97 @@
+package io.jfrtail.benchmarks;
+
+import io.jfrtail.agent.control.RecordingController;
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.pipeline.EventPlan;
+import io.jfrtail.agent.pipeline.PlanCache;
+import io.jfrtail.agent.pipeline.StackInterner;
+import io.jfrtail.common.CollectorProfile;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Real JFR events for the benchmarks: a short recording with the agent's HIGH
+ * profile settings over a workload that contends on a monitor, parks,
+ * allocates outside TLABs and triggers GCs, read back from the file.
+ */
+final class Recordings {
+    private static final long WORKLOAD_MILLIS = 1500;
+    /** The agent's default {@code stackDepth}. */
+    static final int STACK_DEPTH = 16;
+
+    private static List<RecordedEvent> highProfile;
+
+    private Recordings() {
+    }
+
+    /** Recorded once per JVM; every benchmark of a fork replays the same events. */
+    static synchronized List<RecordedEvent> highProfile() throws IOException, InterruptedException {
+        if (highProfile == null) {
+            Path file = Files.createTempFile("jfr-tail-bench", ".jfr");
+            try {
+                try (Recording recording = new Recording()) {
+                    recording.setSettings(new RecordingController(null, CollectorProfile.HIGH).getSettings());
+                    recording.start();
+                    runWorkload();
+                    recording.stop();
+                    recording.dump(file);
+                }
+                highProfile = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+        return highProfile;
+    }
+
+    /** Captures the events the way the JFR thread does: plan, weight, interned stack. */
+    static List<CapturedEvent> capture(List<RecordedEvent> events) {
+        PlanCache plans = new PlanCache();
+        StackInterner stacks = new StackInterner(STACK_DEPTH);
+        List<CapturedEvent> captured = new ArrayList<>(events.size());
+        for (RecordedEvent event : events) {
+            EventPlan plan = plans.get(event);
+            captured.add(CapturedEvent.capture(plan, event, CapturedEvent.threadName(event), plan.admit(),
+                    plan.hasStackTrace() ? stacks.intern(event.getStackTrace()) : null));
+        }
+        return captured;
+    }
+
+    private static void runWorkload() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WORKLOAD_MILLIS;
+        Object lock = new Object();
+        Runnable contender = () -> {
+            while (System.currentTimeMillis() < deadline) {
+                synchronized (lock) {
+                    LockSupport.parkNanos(200_000);
+                }
+            }
+        };
+        Thread a = new Thread(contender, "bench-contender-a");
+        Thread b = new Thread(contender, "bench-contender-b");
+        a.start();
+        b.start();
+        List<byte[]> retained = new ArrayList<>();
+        int round = 0;
+        while (System.currentTimeMillis() < deadline) {
+            retained.add(new byte[256 * 1024]);
+            if (retained.size() == 64) {
+                retained.clear();
+            }
+            if (++round % 500 == 0) {
+                System.gc();
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        a.join();
+        b.join();
+    }
+}
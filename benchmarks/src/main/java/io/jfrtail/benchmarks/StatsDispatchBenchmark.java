@@ -0,0 +1,80 @@
+package io.jfrtail.benchmarks;
+
+import io.jfrtail.agent.api.StatsManager;
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.common.EventCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-event cost on the stats consumer thread. {@code accept} is the whole of
+ * {@link StatsManager#accept}; the two dispatch benchmarks isolate the part
+ * that changed when types got a category and an index in their plan:
+ * {@code legacyDispatch} hashes the type name into a counter map and matches
+ * it against the category substrings on every event, {@code planDispatch}
+ * reads both from the plan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StatsDispatchBenchmark {
+    private CapturedEvent[] events;
+    private int next;
+
+    private StatsManager stats;
+    private final Map<String, AtomicLong> countsByName = new ConcurrentHashMap<>();
+    private long[] countsByIndex;
+
+    @Setup
+    public void setUp() throws Exception {
+        events = Recordings.capture(Recordings.highProfile()).toArray(new CapturedEvent[0]);
+        int types = 0;
+        for (CapturedEvent event : events) {
+            types = Math.max(types, event.getEventPlan().getIndex() + 1);
+        }
+        countsByIndex = new long[types];
+        stats = new StatsManager();
+    }
+
+    private CapturedEvent nextEvent() {
+        CapturedEvent event = events[next];
+        next = next + 1 == events.length ? 0 : next + 1;
+        return event;
+    }
+
+    @Benchmark
+    public void accept() {
+        stats.accept(nextEvent());
+    }
+
+    @Benchmark
+    public EventCategory legacyDispatch() {
+        CapturedEvent event = nextEvent();
+        String type = event.getType();
+        countsByName.computeIfAbsent(type, k -> new AtomicLong()).addAndGet(event.getWeight());
+        return EventCategory.of(type);
+    }
+
+    @Benchmark
+    public EventCategory planDispatch() {
+        CapturedEvent event = nextEvent();
+        countsByIndex[event.getEventPlan().getIndex()] += event.getWeight();
+        return event.getCategory();
+    }
+}
@@ -0,0 +1,200 @@
+package io.jfrtail.benchmarks;
+
+import io.jfrtail.agent.pipeline.CapturedEvent;
+import io.jfrtail.agent.server.FlushPolicy;
+import io.jfrtail.agent.server.OverflowPolicy;
+import io.jfrtail.agent.server.TcpStreamServer;
+import io.jfrtail.common.security.JwtLite;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivery to one local JSONL client for several batch sizes, with and
+ * without deflate. The benchmark thread plays the network consumer: it encodes
+ * and enqueues each event.
+ * <p>
+ * {@code saturated} waits only when more than {@value #IN_FLIGHT} events are
+ * queued, so the score is the rate the selector thread and the client keep up
+ * with, and nothing is dropped. The queue is then never empty and every write
+ * takes whatever is queued, whatever the batch size. {@code paced} sends
+ * {@value #PACED_RATE} events per second, a busy agent that is not saturated:
+ * that is where the batch size decides how many writes (and deflate flushes)
+ * there are.
+ * <p>
+ * Besides events per second, {@code selectorCpuNanos} is the CPU time of the
+ * selector thread and {@code wireBytes} what it wrote, both per second: divide
+ * by the score for the cost per event.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TcpBatchingBenchmark {
+    private static final String SECRET = "bench-secret";
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int IN_FLIGHT = 2048;
+    private static final int SAMPLE_EVERY = 1024;
+    private static final int PACED_RATE = 10_000;
+    private static final long PACED_INTERVAL_NANOS = 1_000_000_000L / PACED_RATE;
+
+    @Param({ "1", "16", "64", "256" })
+    public int batchEvents;
+
+    @Param({ "none", "deflate" })
+    public String compress;
+
+    private CapturedEvent[] events;
+    private int next;
+    private TcpStreamServer server;
+    private Socket client;
+    private Thread drain;
+    private long nextDue;
+
+    @Setup
+    public void setUp() throws Exception {
+        events = Recordings.capture(Recordings.highProfile()).toArray(new CapturedEvent[0]);
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new TcpStreamServer(port, SECRET, QUEUE_CAPACITY, OverflowPolicy.DROP_NEWEST,
+                new FlushPolicy(batchEvents, FlushPolicy.DEFAULT.getMaxBytes(),
+                        FlushPolicy.DEFAULT.getMaxDelayMillis()));
+        server.start();
+
+        client = new Socket(InetAddress.getLoopbackAddress(), port);
+        OutputStream out = client.getOutputStream();
+        String auth = "AUTH " + JwtLite.generateToken(SECRET, 3600) + " format=jsonl"
+                + ("deflate".equals(compress) ? " compress=deflate" : "") + "\n";
+        out.write(auth.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        InputStream in = client.getInputStream();
+        StringBuilder reply = new StringBuilder();
+        for (int b; (b = in.read()) != '\n';) {
+            if (b < 0) {
+                throw new IOException("Connection closed during handshake: " + reply);
+            }
+            reply.append((char) b);
+        }
+        if (!reply.toString().startsWith("OK")) {
+            throw new IOException("Handshake refused: " + reply);
+        }
+        while (!server.hasClients()) {
+            Thread.onSpinWait();
+        }
+        drain = new Thread(() -> {
+            byte[] buffer = new byte[64 * 1024];
+            try {
+                while (in.read(buffer) >= 0) {
+                    // Discard: only the server side is measured
+                }
+            } catch (IOException closed) {
+                // Socket closed at teardown
+            }
+        }, "bench-client");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        long dropped = server.getDropped();
+        client.close();
+        server.stop();
+        drain.join(1000);
+        if (dropped > 0) {
+            throw new IllegalStateException(dropped + " events dropped; the score would not be a delivery rate");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPace() {
+        nextDue = System.nanoTime();
+    }
+
+    @Benchmark
+    public void saturated(SelectorCost cost) {
+        while (server.getQueueDepth() > IN_FLIGHT) {
+            Thread.onSpinWait();
+        }
+        send(cost);
+    }
+
+    @Benchmark
+    public void paced(SelectorCost cost) {
+        long now;
+        while ((now = System.nanoTime()) < nextDue) {
+            LockSupport.parkNanos(nextDue - now);
+        }
+        nextDue += PACED_INTERVAL_NANOS;
+        send(cost);
+    }
+
+    private void send(SelectorCost cost) {
+        server.broadcast(events[next]);
+        next = next + 1 == events.length ? 0 : next + 1;
+        if (++cost.ops == SAMPLE_EVERY) {
+            cost.sample(server);
+        }
+    }
+
+    /** Selector thread CPU time and bytes written, sampled from the benchmark thread. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class SelectorCost {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        public long selectorCpuNanos;
+        public long wireBytes;
+
+        int ops;
+        private long lastCpu = -1;
+        private long lastBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            selectorCpuNanos = 0;
+            wireBytes = 0;
+            ops = 0;
+            lastCpu = -1;
+        }
+
+        void sample(TcpStreamServer server) {
+            ops = 0;
+            long cpu = THREADS.getThreadCpuTime(server.getThreadId());
+            long bytes = server.getBytesSent();
+            if (lastCpu >= 0) {
+                selectorCpuNanos += cpu - lastCpu;
+                wireBytes += bytes - lastBytes;
+            }
+            lastCpu = cpu;
+            lastBytes = bytes;
+        }
+    }
+}
@@ -42,7 +42,7 @@ subprojects {
         }
     }
 
-    if (project.name == "sample" || project.name == "spring-sample") {
+    if (project.name == "sample" || project.name == "spring-sample" || project.name == "benchmarks") {
         tasks.withType<GenerateMavenPom> { enabled = false }
         tasks.withType<PublishToMavenRepository> { enabled = false }
         tasks.withType<PublishToMavenLocal> { enabled = false }
@@ -36,7 +36,13 @@ public class JfrTailCli implements Callable<Integer> {
             @Option(names = { "--actuator-user" }, description = "Actuator Basic Auth User") String actuatorUser,
             @Option(names = { "--actuator-pass" }, description = "Actuator Basic Auth Password") String actuatorPass,
             @Option(names = { "-s", "--secret" }, description = "Shared Secret (Owner)") String secret,
-            @Option(names = { "-t", "--token" }, description = "Existing JWT Token (Guest)") String token) {
+            @Option(names = { "-t", "--token" }, description = "Existing JWT Token (Guest)") String token,
+            @Option(names = {
+                    "--format" }, defaultValue = "jsonl", description = "Stream wire format: jsonl or binary") String format,
+            @Option(names = {
+                    "--compress" }, defaultValue = "none", description = "Stream compression: none or deflate") String compress,
+            @Option(names = {
+                    "--summary" }, description = "Receive per-second rollups instead of individual events") boolean summary) {
         try {
             System.out.println("Attaching to PID " + pid + "...");
 
@@ -80,7 +86,9 @@ public class JfrTailCli implements Callable<Integer> {
             }
 
             TuiManager tui = new TuiManager("localhost", port, recordFile, actuatorUrl, actuatorUser, actuatorPass,
-                    finalToken);
+                    finalToken, io.jfrtail.common.wire.WireFormat.parse(format),
+                    io.jfrtail.common.wire.Compression.parse(compress));
+            tui.setSummaryMode(summary);
             tui.start();
             return 0;
         } catch (Exception e) {
@@ -98,7 +106,13 @@ public class JfrTailCli implements Callable<Integer> {
             @Option(names = { "--actuator-user" }, description = "Actuator Basic Auth User") String actuatorUser,
             @Option(names = { "--actuator-pass" }, description = "Actuator Basic Auth Password") String actuatorPass,
             @Option(names = { "-s", "--secret" }, description = "Shared Secret (Owner)") String secret,
-            @Option(names = { "-t", "--token" }, description = "Existing JWT Token (Guest)") String token) {
+            @Option(names = { "-t", "--token" }, description = "Existing JWT Token (Guest)") String token,
+            @Option(names = {
+                    "--format" }, defaultValue = "jsonl", description = "Stream wire format: jsonl or binary") String format,
+            @Option(names = {
+                    "--compress" }, defaultValue = "none", description = "Stream compression: none or deflate") String compress,
+            @Option(names = {
+                    "--summary" }, description = "Receive per-second rollups instead of individual events") boolean summary) {
         try {
             System.out.println("Connecting to agent at " + host + ":" + port + "...");
 
@@ -109,7 +123,9 @@ public class JfrTailCli implements Callable<Integer> {
             }
 
             TuiManager tui = new TuiManager(host, port, recordFile, actuatorUrl, actuatorUser, actuatorPass,
-                    finalToken);
+                    finalToken, io.jfrtail.common.wire.WireFormat.parse(format),
+                    io.jfrtail.common.wire.Compression.parse(compress));
+            tui.setSummaryMode(summary);
             tui.start();
             return 0;
         } catch (Exception e) {
@@ -125,7 +141,9 @@ public class JfrTailCli implements Callable<Integer> {
             @Option(names = { "-s", "--secret" }, description = "Shared Secret (Owner)") String secret,
             @Option(names = { "-t", "--token" }, description = "Existing JWT Token (Guest)") String token,
             @Option(names = { "-o",
-                    "--output" }, defaultValue = "jfr-bundle.json", description = "Output file") String output) {
+                    "--output" }, defaultValue = "jfr-bundle.json", description = "Output file") String output,
+            @Option(names = { "--jfr" }, arity = "0..1", fallbackValue = "true",
+                    description = "Also get the last N minutes (default: all) of the rolling recording, as a zip") String jfr) {
         try {
             String finalToken = token;
             if (finalToken == null && secret != null) {
@@ -136,11 +154,34 @@ public class JfrTailCli implements Callable<Integer> {
                 return 1;
             }
 
+            String uri = "http://" + host + ":" + port + "/jfr/bundle";
+            if (jfr != null) {
+                uri += "?jfr=" + java.net.URLEncoder.encode(jfr, java.nio.charset.StandardCharsets.UTF_8);
+                if (output.equals("jfr-bundle.json")) {
+                    output = "jfr-bundle.zip";
+                }
+            }
             System.out.println("Downloading bundle from " + host + ":" + port + "...");
-            java.net.URL url = java.net.URI.create("http://" + host + ":" + port + "/jfr/bundle?token=" + finalToken)
-                    .toURL();
-            java.nio.file.Files.copy(url.openStream(), java.nio.file.Paths.get(output),
-                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder(java.net.URI.create(uri))
+                    .header("Authorization", "Bearer " + finalToken)
+                    .header("Accept-Encoding", "gzip")
+                    .GET().build();
+            java.net.http.HttpResponse<java.io.InputStream> response = java.net.http.HttpClient.newHttpClient()
+                    .send(request, java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+            java.io.InputStream body = response.body();
+            if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+                body = new java.util.zip.GZIPInputStream(body);
+            }
+            try (java.io.InputStream in = body) {
+                if (response.statusCode() != 200) {
+                    System.err.println("Error: HTTP " + response.statusCode() + " "
+                            + new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8));
+                    return 1;
+                }
+                // Streamed to disk, the bundle is never held in memory
+                java.nio.file.Files.copy(in, java.nio.file.Paths.get(output),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            }
             System.out.println("Bundle saved to: " + output);
             return 0;
         } catch (Exception e) {
@@ -149,6 +190,82 @@ public class JfrTailCli implements Callable<Integer> {
         }
     }
 
+    @Command(name = "config", description = "Show or change the live recording settings of a running agent")
+    public Integer config(
+            @Option(names = { "--host" }, defaultValue = "localhost", description = "Agent host") String host,
+            @Option(names = { "--port" }, defaultValue = "8080", description = "Agent Web port") int port,
+            @Option(names = { "-s", "--secret" }, description = "Shared Secret (Owner)") String secret,
+            @Option(names = { "-t", "--token" }, description = "Existing JWT Token (Guest)") String token,
+            @Option(names = { "-e", "--event" }, description = "Event type to override, e.g. jdk.ObjectAllocationSample") String event,
+            @Option(names = { "--enable" }, description = "Enable the event") boolean enable,
+            @Option(names = { "--disable" }, description = "Disable the event") boolean disable,
+            @Option(names = { "--threshold" }, description = "Threshold, e.g. '10 ms'") String threshold,
+            @Option(names = { "--period" }, description = "Period, e.g. '1 s'") String period,
+            @Option(names = { "--stack-trace" }, description = "Record stack traces: true or false") Boolean stackTrace,
+            @Option(names = { "--ttl" }, defaultValue = "0", description = "Revert after this many seconds (0 = keep)") long ttl,
+            @Option(names = { "--revert" }, description = "Remove the override of --event") boolean revert) {
+        try {
+            String finalToken = token;
+            if (finalToken == null && secret != null) {
+                finalToken = io.jfrtail.common.security.JwtLite.generateToken(secret, 60);
+            }
+            if (finalToken == null) {
+                System.err.println("Error: Secret or Token required for config.");
+                return 1;
+            }
+            if (enable && disable) {
+                System.err.println("Error: --enable and --disable are exclusive.");
+                return 1;
+            }
+
+            String base = "http://" + host + ":" + port + "/jfr/config";
+            java.net.http.HttpRequest.Builder request = java.net.http.HttpRequest.newBuilder()
+                    .header("Authorization", "Bearer " + finalToken);
+            if (event == null) {
+                request.uri(java.net.URI.create(base)).GET();
+            } else if (revert) {
+                request.uri(java.net.URI.create(base + "?event="
+                        + java.net.URLEncoder.encode(event, java.nio.charset.StandardCharsets.UTF_8))).DELETE();
+            } else {
+                java.util.Map<String, Object> body = new java.util.LinkedHashMap<>();
+                body.put("event", event);
+                if (enable || disable) {
+                    body.put("enabled", enable);
+                }
+                if (threshold != null) {
+                    body.put("threshold", threshold);
+                }
+                if (period != null) {
+                    body.put("period", period);
+                }
+                if (stackTrace != null) {
+                    body.put("stackTrace", stackTrace);
+                }
+                if (ttl > 0) {
+                    body.put("ttlSeconds", ttl);
+                }
+                request.uri(java.net.URI.create(base))
+                        .header("Content-Type", "application/json")
+                        .POST(java.net.http.HttpRequest.BodyPublishers
+                                .ofString(io.jfrtail.common.JsonUtils.toJson(body)));
+            }
+
+            java.net.http.HttpResponse<String> response = java.net.http.HttpClient.newHttpClient()
+                    .send(request.build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                System.err.println("Error: HTTP " + response.statusCode() + " " + response.body());
+                return 1;
+            }
+            Object json = io.jfrtail.common.JsonUtils.fromJson(response.body(), Object.class);
+            System.out.println(new com.fasterxml.jackson.databind.ObjectMapper().writerWithDefaultPrettyPrinter()
+                    .writeValueAsString(json));
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
     @Override
     public Integer call() throws Exception {
         CommandLine.usage(this, System.out);
@@ -9,25 +9,43 @@ import com.googlecode.lanterna.screen.Screen;
 import com.googlecode.lanterna.screen.TerminalScreen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
 import com.googlecode.lanterna.terminal.Terminal;
+import io.jfrtail.common.EventCategory;
+import io.jfrtail.common.EventSummary;
 import io.jfrtail.common.JfrEvent;
 import io.jfrtail.common.JsonUtils;
+import io.jfrtail.common.wire.BinaryEventReader;
+import io.jfrtail.common.wire.Compression;
+import io.jfrtail.common.wire.StackDictionary;
+import io.jfrtail.common.wire.Subscription;
+import io.jfrtail.common.wire.WireFormat;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.InflaterInputStream;
 
 public class TuiManager {
     private final String host;
     private final int port;
     private final String recordFilePath;
     private final String token;
+    private final WireFormat format;
+    private final Compression compression;
 
     private final io.jfrtail.cli.spring.ActuatorClient actuatorClient;
 
@@ -49,6 +67,14 @@ public class TuiManager {
     private boolean showLocks = true;
     private boolean showExceptions = true;
     private boolean showCPU = true;
+    // Server-side subscription (":min <ms>", ":thread <glob>")
+    private double minDurationMs = 0;
+    private String threadFilter = null;
+    // ":mode summary": the agent sends one rollup per second instead of events
+    private volatile boolean summaryMode = false;
+    private final Queue<EventSummary> pendingSummaries = new ConcurrentLinkedQueue<>();
+    private EventSummary latestSummary;
+    private volatile PrintWriter connection;
     private boolean commandMode = false;
     private final StringBuilder commandInput = new StringBuilder();
 
@@ -56,7 +82,14 @@ public class TuiManager {
     private long lockCount = 0;
     private long exceptionCount = 0;
     private long totalEvents = 0;
+    // Windowed counts from the agent's "last_minute" section; null until polled
+    private volatile Long gcLastMinute;
+    private volatile Long exceptionsLastMinute;
+    // Cursor of the last stats delta, so each poll only carries new events
+    private long statsCursor = 0;
     private final java.util.Map<String, Long> memoryStats = new java.util.concurrent.ConcurrentHashMap<>();
+    // Event type -> category, resolved once per type
+    private final java.util.Map<String, EventCategory> categories = new java.util.concurrent.ConcurrentHashMap<>();
     private String lastAlert = "";
     private long lastAlertTime = 0;
 
@@ -67,12 +100,19 @@ public class TuiManager {
 
     private PrintWriter fileWriter;
 
+    /** Starts in summary mode; must be called before {@link #start()}. */
+    public void setSummaryMode(boolean summaryMode) {
+        this.summaryMode = summaryMode;
+    }
+
     public TuiManager(String host, int port, String recordFilePath, String actuatorUrl, String actuatorUser,
-            String actuatorPass, String token) {
+            String actuatorPass, String token, WireFormat format, Compression compression) {
         this.host = host;
         this.port = port;
         this.recordFilePath = recordFilePath;
         this.token = token;
+        this.format = format != null ? format : WireFormat.JSONL;
+        this.compression = compression != null ? compression : Compression.NONE;
 
         if (actuatorUrl != null) {
             this.actuatorClient = new io.jfrtail.cli.spring.ActuatorClient(actuatorUrl, actuatorUser, actuatorPass,
@@ -82,6 +122,16 @@ public class TuiManager {
         }
     }
 
+    public TuiManager(String host, int port, String recordFilePath, String actuatorUrl, String actuatorUser,
+            String actuatorPass, String token, WireFormat format) {
+        this(host, port, recordFilePath, actuatorUrl, actuatorUser, actuatorPass, token, format, Compression.NONE);
+    }
+
+    public TuiManager(String host, int port, String recordFilePath, String actuatorUrl, String actuatorUser,
+            String actuatorPass, String token) {
+        this(host, port, recordFilePath, actuatorUrl, actuatorUser, actuatorPass, token, WireFormat.JSONL);
+    }
+
     // Constructor for backward compatibility (JVM Mode / No Token)
     public TuiManager(String host, int port, String recordFilePath) {
         this(host, port, recordFilePath, null, null, null, null);
@@ -116,7 +166,7 @@ public class TuiManager {
             while (running) {
                 try (Socket socket = new Socket(host, port);
                         PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                        InputStream in = new BufferedInputStream(socket.getInputStream())) {
 
                     initDebugLog();
                     logDebug("CLI Network Thread Connected to " + host + ":" + port);
@@ -129,10 +179,32 @@ public class TuiManager {
                     events.add(0, connEvent);
 
                     // AUTH HANDSHAKE
+                    WireFormat negotiated = WireFormat.JSONL;
+                    boolean deflate = false;
+                    long pid = 0;
                     if (token != null) {
-                        out.println("AUTH " + token);
-                        String response = in.readLine();
+                        // Options are only sent when needed: older agents reject unknown ones
+                        StringBuilder auth = new StringBuilder("AUTH ").append(token);
+                        if (format != WireFormat.JSONL) {
+                            auth.append(" format=").append(format.key());
+                        }
+                        if (compression != Compression.NONE) {
+                            auth.append(" compress=").append(compression.key());
+                        }
+                        out.println(auth);
+                        String response = readHandshakeLine(in);
                         logDebug("Auth Response: " + response);
+                        if (response != null && response.startsWith("OK")
+                                && response.contains("format=" + WireFormat.BINARY.key())) {
+                            negotiated = WireFormat.BINARY;
+                        }
+                        deflate = response != null && response.startsWith("OK")
+                                && response.contains("compress=" + Compression.DEFLATE.key());
+                        for (String part : response != null ? response.split(" ") : new String[0]) {
+                            if (part.startsWith("pid=")) {
+                                pid = Long.parseLong(part.substring(4));
+                            }
+                        }
                         if (response != null && !response.startsWith("OK")) {
                             // Auth Failed
                             JfrEvent err = new JfrEvent();
@@ -143,12 +215,35 @@ public class TuiManager {
                         }
                     }
 
-                    String line;
-                    while (running && (line = in.readLine()) != null) {
-                        logDebug("RCV: " + line);
-                        processEventLine(line);
+                    if (token != null) {
+                        connection = out;
+                        sendSubscription(false);
+                    }
+
+                    // Everything after the handshake line is one deflate stream, flushed per batch
+                    InputStream stream = deflate ? new InflaterInputStream(in) : in;
+                    if (negotiated == WireFormat.BINARY) {
+                        BinaryEventReader reader = new BinaryEventReader(stream, pid);
+                        reader.setSummaryListener(pendingSummaries::add);
+                        JfrEvent event;
+                        while (running && (event = reader.next()) != null) {
+                            if (fileWriter != null)
+                                fileWriter.println(JsonUtils.toJson(event));
+                            processEvent(event);
+                        }
+                    } else {
+                        BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(stream, StandardCharsets.UTF_8));
+                        // Stacks are sent once per connection
+                        StackDictionary stacks = new StackDictionary();
+                        String line;
+                        while (running && (line = reader.readLine()) != null) {
+                            logDebug("RCV: " + line);
+                            processEventLine(line, stacks);
+                        }
                     }
                 } catch (Exception e) {
+                    connection = null;
                     logDebug("Network Error (Will retry): " + e.getMessage());
                     // Notify user via event stream
                     JfrEvent disconn = new JfrEvent();
@@ -211,12 +306,15 @@ public class TuiManager {
                             }
                         }
 
-                        // 3. JFR Stats (New Native Endpoint)
-                        String jfrStats = actuatorClient.get("/jfrtail");
+                        // 3. JFR Stats (New Native Endpoint), only what changed since the last poll
+                        String jfrStats = actuatorClient.jfrStatsSince(statsCursor);
                         if (jfrStats != null && jfrStats.contains("metrics")) {
                             try {
                                 @SuppressWarnings("unchecked")
                                 java.util.Map<String, Object> data = JsonUtils.fromJson(jfrStats, java.util.Map.class);
+                                if (data.get("cursor") instanceof Number) {
+                                    statsCursor = ((Number) data.get("cursor")).longValue();
+                                }
                                 @SuppressWarnings("unchecked")
                                 java.util.Map<String, Object> stats = (java.util.Map<String, Object>) data
                                         .get("metrics");
@@ -236,6 +334,14 @@ public class TuiManager {
                                     exceptionCount = Long
                                             .parseLong(stats.getOrDefault("exception_count", "0").toString());
                                 }
+                                @SuppressWarnings("unchecked")
+                                java.util.Map<String, Object> lastMinute = (java.util.Map<String, Object>) data
+                                        .get("last_minute");
+                                if (lastMinute != null && lastMinute.get("totals") instanceof java.util.Map) {
+                                    java.util.Map<?, ?> totals = (java.util.Map<?, ?>) lastMinute.get("totals");
+                                    gcLastMinute = ((Number) totals.get("gc")).longValue();
+                                    exceptionsLastMinute = ((Number) totals.get("exceptions")).longValue();
+                                }
                             } catch (Exception e) {
                                 logDebug("JFR Stats Parse Error: " + e.getMessage());
                             }
@@ -254,7 +360,10 @@ public class TuiManager {
         // UI Refresh loop
         while (running) {
             long now = System.currentTimeMillis();
-            if (now - lastSecondTick >= 1000) {
+            if (summaryMode) {
+                // The agent counts for us, per second of event time
+                drainSummaries();
+            } else if (now - lastSecondTick >= 1000) {
                 if (eventsPerSecondHistory.size() > 20)
                     eventsPerSecondHistory.removeFirst();
                 eventsPerSecondHistory.add(currentSecondEvents);
@@ -288,6 +397,7 @@ public class TuiManager {
                             running = false;
                             break;
                         }
+                        runSubscriptionCommand(cmd);
                         commandMode = false;
                         commandInput.setLength(0);
                     } else if (keyStroke.getKeyType() == KeyType.Escape) {
@@ -326,12 +436,16 @@ public class TuiManager {
                             filteringMode = true;
                         } else if (c == 'g' || c == 'G') {
                             showGC = !showGC;
+                            sendSubscription(true);
                         } else if (c == 'l' || c == 'L') {
                             showLocks = !showLocks;
+                            sendSubscription(true);
                         } else if (c == 'e' || c == 'E') {
                             showExceptions = !showExceptions;
+                            sendSubscription(true);
                         } else if (c == 'p' || c == 'P') {
                             showCPU = !showCPU;
+                            sendSubscription(true);
                         }
                     }
                 }
@@ -350,7 +464,87 @@ public class TuiManager {
         System.exit(0);
     }
 
-    private void processEventLine(String line) {
+    /**
+     * The toggles and ":min"/":thread" settings as a server-side subscription,
+     * so hidden events are neither serialized by the agent nor sent.
+     */
+    private Subscription currentSubscription() {
+        List<String> excluded = new java.util.ArrayList<>();
+        if (!showGC)
+            excluded.add("*GarbageCollection*");
+        if (!showLocks) {
+            excluded.add("*JavaMonitor*");
+            excluded.add("*ThreadPark*");
+        }
+        if (!showExceptions)
+            excluded.add("*Exception*");
+        if (!showCPU)
+            excluded.add("*CPULoad*");
+        List<String> threads = threadFilter != null ? List.of(threadFilter) : List.of();
+        return new Subscription(List.of(), excluded, threads, (long) (minDurationMs * 1_000_000), summaryMode);
+    }
+
+    private void sendSubscription(boolean changed) {
+        PrintWriter out = connection;
+        if (out == null)
+            return;
+        Subscription subscription = currentSubscription();
+        // A fresh connection already receives everything
+        if (changed || !subscription.isAll()) {
+            out.println(subscription.toCommand());
+            logDebug("Sent: " + subscription.toCommand());
+        }
+    }
+
+    private void runSubscriptionCommand(String cmd) {
+        String[] parts = cmd.split("\\s+", 2);
+        String arg = parts.length > 1 ? parts[1].trim() : "";
+        try {
+            if (parts[0].equalsIgnoreCase(":min")) {
+                minDurationMs = arg.isEmpty() ? 0 : Double.parseDouble(arg);
+                sendSubscription(true);
+            } else if (parts[0].equalsIgnoreCase(":thread")) {
+                threadFilter = arg.isEmpty() ? null : arg;
+                sendSubscription(true);
+            } else if (parts[0].equalsIgnoreCase(":mode")) {
+                if (!arg.equalsIgnoreCase(Subscription.MODE_SUMMARY) && !arg.equalsIgnoreCase(Subscription.MODE_EVENTS)) {
+                    triggerAlert("Usage: :mode summary|events");
+                    return;
+                }
+                summaryMode = arg.equalsIgnoreCase(Subscription.MODE_SUMMARY);
+                clearData();
+                sendSubscription(true);
+            }
+        } catch (NumberFormatException e) {
+            triggerAlert("Invalid number: " + arg);
+        }
+    }
+
+    /**
+     * Reads the handshake reply byte by byte so that nothing past the newline is
+     * consumed: what follows may be binary frames.
+     */
+    private static String readHandshakeLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    private void processEvent(JfrEvent event) {
+        updateStats(event);
+        events.add(0, event);
+        if (events.size() > 500) {
+            events.remove(events.size() - 1);
+        }
+    }
+
+    private void processEventLine(String line, StackDictionary stacks) {
         try {
             if (fileWriter != null)
                 fileWriter.println(line);
@@ -358,12 +552,21 @@ public class TuiManager {
             if (line == null || line.trim().isEmpty())
                 return;
 
+            if (line.startsWith("{\"stack\"")) {
+                defineStack(line, stacks);
+                return;
+            }
+            if (line.startsWith(EventSummary.JSONL_PREFIX)) {
+                pendingSummaries.add(JsonUtils.fromJson(
+                        line.substring(EventSummary.JSONL_PREFIX.length(), line.lastIndexOf('}')),
+                        EventSummary.class));
+                return;
+            }
             JfrEvent event = JsonUtils.fromJson(line, JfrEvent.class);
-            updateStats(event);
-            events.add(0, event);
-            if (events.size() > 500) {
-                events.remove(events.size() - 1);
+            if (event.getStackId() != null) {
+                event.setStackTrace(stacks.get(event.getStackId()));
             }
+            processEvent(event);
         } catch (Exception e) {
             logDebug("JSON PARSE ERROR: " + e.getMessage() + " | LINE: " + line);
             JfrEvent err = new JfrEvent();
@@ -376,7 +579,59 @@ public class TuiManager {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private void defineStack(String line, StackDictionary stacks) {
+        Map<String, Object> stack = (Map<String, Object>) JsonUtils.fromJson(line, Map.class).get("stack");
+        List<String> frames = new ArrayList<>((List<String>) stack.get("frames"));
+        if (Boolean.TRUE.equals(stack.get("truncated"))) {
+            frames.add(JfrEvent.TRUNCATED_FRAME);
+        }
+        stacks.define(((Number) stack.get("id")).longValue(), frames);
+    }
+
+    /** Feeds the chart and counters from the rollups received since the last UI tick. */
+    private void drainSummaries() {
+        EventSummary summary;
+        while ((summary = pendingSummaries.poll()) != null) {
+            if (!summaryMode) {
+                continue;
+            }
+            latestSummary = summary;
+            totalEvents += summary.getTotalEvents();
+            // Same categories as the per event path, so both modes count the same types
+            long exceptions = 0;
+            for (Map.Entry<String, EventSummary.TypeSummary> entry : summary.getTypes().entrySet()) {
+                EventSummary.TypeSummary stats = entry.getValue();
+                switch (categoryOf(entry.getKey())) {
+                    case GC:
+                        gcCount += stats.getCount();
+                        if (stats.getDurationMaxMs() != null && stats.getDurationMaxMs() > 500) {
+                            triggerAlert("STALL DETECTED: GC PAUSE " + stats.getDurationMaxMs() + "ms");
+                        }
+                        break;
+                    case LOCK:
+                        lockCount += stats.getCount();
+                        break;
+                    case EXCEPTION:
+                        exceptions += stats.getCount();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            exceptionCount += exceptions;
+            if (exceptions > 0) {
+                triggerAlert("EXCEPTION SPIKE DETECTED!");
+            }
+            if (eventsPerSecondHistory.size() > 20)
+                eventsPerSecondHistory.removeFirst();
+            eventsPerSecondHistory.add((int) Math.min(Integer.MAX_VALUE, summary.getTotalEvents()));
+        }
+    }
+
     private void clearData() {
+        latestSummary = null;
+        pendingSummaries.clear();
         events.clear();
         gcCount = 0;
         lockCount = 0;
@@ -411,23 +666,62 @@ public class TuiManager {
     private void updateStats(JfrEvent event) {
         totalEvents++;
         currentSecondEvents++;
-        if (event.getEvent() != null) {
-            if (event.getEvent().contains("GarbageCollection"))
+        EventCategory category = categoryOf(event.getEvent());
+        switch (category) {
+            case GC:
                 gcCount++;
-            else if (event.getEvent().contains("JavaMonitorEnter"))
+                break;
+            case LOCK:
                 lockCount++;
-            else if (event.getEvent().contains("ExceptionThrown")) {
+                break;
+            case EXCEPTION:
                 exceptionCount++;
                 triggerAlert("EXCEPTION SPIKE DETECTED!");
-            }
+                break;
+            default:
+                break;
         }
 
         // Threshold check for GC
-        if (event.getDurationMs() != null && event.getDurationMs() > 500) {
+        if (category == EventCategory.GC && event.getDurationMs() != null && event.getDurationMs() > 500) {
             triggerAlert("STALL DETECTED: GC PAUSE " + event.getDurationMs() + "ms");
         }
     }
 
+    private boolean isVisible(JfrEvent e) {
+        switch (categoryOf(e.getEvent())) {
+            case GC:
+                if (!showGC)
+                    return false;
+                break;
+            case LOCK:
+                if (!showLocks)
+                    return false;
+                break;
+            case EXCEPTION:
+                if (!showExceptions)
+                    return false;
+                break;
+            case CPU_LOAD:
+                if (!showCPU)
+                    return false;
+                break;
+            default:
+                break;
+        }
+        if (filterInput.length() == 0)
+            return true;
+
+        String type = e.getEvent() != null ? e.getEvent().toLowerCase() : "";
+        String f = filterInput.toString().toLowerCase();
+        String thread = e.getThread() != null ? e.getThread().toLowerCase() : "";
+        return type.contains(f) || thread.contains(f);
+    }
+
+    private EventCategory categoryOf(String type) {
+        return type != null ? categories.computeIfAbsent(type, EventCategory::of) : EventCategory.OTHER;
+    }
+
     private void triggerAlert(String msg) {
         this.lastAlert = msg;
         this.lastAlertTime = System.currentTimeMillis();
@@ -488,7 +782,7 @@ public class TuiManager {
         // Footer
         tg.setBackgroundColor(TextColor.ANSI.WHITE);
         tg.setForegroundColor(TextColor.ANSI.BLACK);
-        String footer = " : (Cmd) | C:Clear | S:Spring | B:Bundle | F:Filter | G/L/E/P:Toggle | Enter:Detail ";
+        String footer = " : (Cmd) | C:Clear | S:Spring | B:Bundle | F:Filter | G/L/E/P:Toggle | :min/:thread/:mode | Enter:Detail ";
         if (filteringMode) {
             footer = " TYPE TO FILTER... [ENTER/ESC to finish] | Buffer: " + filterInput.toString();
         } else if (commandMode) {
@@ -508,31 +802,51 @@ public class TuiManager {
 
         // --- LOG PANEL (Left) ---
         drawBox(tg, 0, 3, splitCol, height - 4);
+        if (summaryMode) {
+            drawSummaryPanel(tg, splitCol, height);
+        } else {
+            drawEventList(tg, splitCol, height);
+        }
+
+        // --- STATS PANEL (Right) ---
+        drawBox(tg, splitCol, 3, width - splitCol, height - 4);
+        tg.setForegroundColor(TextColor.ANSI.GREEN);
+        tg.putString(splitCol + 2, 4, "STATISTICS");
+
+        tg.setForegroundColor(TextColor.ANSI.WHITE);
+        tg.putString(splitCol + 2, 8, String.format("GC Evt: %d", gcCount));
+        tg.putString(splitCol + 2, 9, String.format("Excep:  %d", exceptionCount));
+        tg.putString(splitCol + 2, 10, String.format("Locks:  %d", lockCount));
+
+        tg.setForegroundColor(TextColor.ANSI.CYAN);
+        tg.putString(splitCol + 2, 11, "MEMORY");
+        tg.setForegroundColor(TextColor.ANSI.WHITE);
+        tg.putString(splitCol + 2, 12, String.format("Used:  %4d MB", memoryStats.getOrDefault("heap_used_mb", 0L)));
+        tg.putString(splitCol + 2, 13,
+                String.format("Comm:  %4d MB", memoryStats.getOrDefault("heap_committed_mb", 0L)));
+        tg.putString(splitCol + 2, 14,
+                String.format("GC Ps: %4d ms", memoryStats.getOrDefault("last_gc_pause_ms", 0L)));
+
+        // ASCII Chart (Simple Bar)
+        tg.setForegroundColor(TextColor.ANSI.CYAN);
+        tg.putString(splitCol + 2, 12, "Events/Sec (Last 20s):");
+        int chartRow = 14;
+        for (Integer val : eventsPerSecondHistory) {
+            if (chartRow >= height - 2)
+                break;
+            String bar = new String(new char[Math.min(val, Math.max(0, (width - splitCol) - 10))]).replace('\0', '#');
+            tg.putString(splitCol + 2, chartRow++, String.format("%3d |%s", val, bar));
+        }
+    }
+
+    private void drawEventList(TextGraphics tg, int splitCol, int height) {
         tg.putString(2, 2, " LIVE EVENTS ");
 
         int row = 4;
 
         // Filter logic
         List<JfrEvent> filtered = events.stream()
-                .filter(e -> {
-                    String type = e.getEvent() != null ? e.getEvent().toLowerCase() : "";
-
-                    if (!showGC && type.contains("garbagecollection"))
-                        return false;
-                    if (!showLocks && (type.contains("jmonitor") || type.contains("threadpark")))
-                        return false;
-                    if (!showExceptions && type.contains("exception"))
-                        return false;
-                    if (!showCPU && type.contains("cpuload"))
-                        return false;
-
-                    if (filterInput.length() == 0)
-                        return true;
-
-                    String f = filterInput.toString().toLowerCase();
-                    String thread = e.getThread() != null ? e.getThread().toLowerCase() : "";
-                    return type.contains(f) || thread.contains(f);
-                })
+                .filter(this::isVisible)
                 .collect(java.util.stream.Collectors.toList());
 
         if (selectedEventIndex >= filtered.size() && filtered.size() > 0) {
@@ -555,16 +869,22 @@ public class TuiManager {
                 tg.setForegroundColor(TextColor.ANSI.BLACK);
             } else {
                 tg.setBackgroundColor(TextColor.ANSI.BLACK);
-                if (type.contains("GarbageCollection"))
-                    tg.setForegroundColor(TextColor.ANSI.YELLOW);
-                else if (type.contains("JavaMonitor") || type.contains("ThreadPark"))
-                    tg.setForegroundColor(TextColor.ANSI.RED);
-                else if (type.contains("ExceptionThrown"))
-                    tg.setForegroundColor(TextColor.ANSI.MAGENTA);
-                else if (type.contains("CPULoad"))
-                    tg.setForegroundColor(TextColor.ANSI.GREEN);
-                else
-                    tg.setForegroundColor(TextColor.ANSI.WHITE);
+                switch (categoryOf(event.getEvent())) {
+                    case GC:
+                        tg.setForegroundColor(TextColor.ANSI.YELLOW);
+                        break;
+                    case LOCK:
+                        tg.setForegroundColor(TextColor.ANSI.RED);
+                        break;
+                    case EXCEPTION:
+                        tg.setForegroundColor(TextColor.ANSI.MAGENTA);
+                        break;
+                    case CPU_LOAD:
+                        tg.setForegroundColor(TextColor.ANSI.GREEN);
+                        break;
+                    default:
+                        tg.setForegroundColor(TextColor.ANSI.WHITE);
+                }
             }
 
             StringBuilder fieldStr = new StringBuilder();
@@ -581,35 +901,34 @@ public class TuiManager {
             tg.putString(2, row++, truncate(line, splitCol - 4));
             tg.setBackgroundColor(TextColor.ANSI.BLACK); // Reset for next line
         }
+    }
 
-        // --- STATS PANEL (Right) ---
-        drawBox(tg, splitCol, 3, width - splitCol, height - 4);
-        tg.setForegroundColor(TextColor.ANSI.GREEN);
-        tg.putString(splitCol + 2, 4, "STATISTICS");
-
-        tg.setForegroundColor(TextColor.ANSI.WHITE);
-        tg.putString(splitCol + 2, 8, String.format("GC Evt: %d", gcCount));
-        tg.putString(splitCol + 2, 9, String.format("Excep:  %d", exceptionCount));
-        tg.putString(splitCol + 2, 10, String.format("Locks:  %d", lockCount));
-
+    /** One row per event type of the last rollup, busiest first. */
+    private void drawSummaryPanel(TextGraphics tg, int splitCol, int height) {
+        tg.putString(2, 2, " SUMMARY (per second) ");
+        EventSummary summary = latestSummary;
+        int row = 4;
+        if (summary == null) {
+            tg.putString(2, row, "Waiting for the first rollup...");
+            return;
+        }
         tg.setForegroundColor(TextColor.ANSI.CYAN);
-        tg.putString(splitCol + 2, 11, "MEMORY");
+        tg.putString(2, row++, truncate(String.format("%s | %-16s | %7s | %8s | %8s | %s",
+                timeFormatter.format(summary.getTs().atZone(java.time.ZoneId.systemDefault())), "TYPE", "COUNT",
+                "AVG", "MAX", "TOP THREAD"), splitCol - 4));
         tg.setForegroundColor(TextColor.ANSI.WHITE);
-        tg.putString(splitCol + 2, 12, String.format("Used:  %4d MB", memoryStats.getOrDefault("heap_used_mb", 0L)));
-        tg.putString(splitCol + 2, 13,
-                String.format("Comm:  %4d MB", memoryStats.getOrDefault("heap_committed_mb", 0L)));
-        tg.putString(splitCol + 2, 14,
-                String.format("GC Ps: %4d ms", memoryStats.getOrDefault("last_gc_pause_ms", 0L)));
-
-        // ASCII Chart (Simple Bar)
-        tg.setForegroundColor(TextColor.ANSI.CYAN);
-        tg.putString(splitCol + 2, 12, "Events/Sec (Last 20s):");
-        int chartRow = 14;
-        for (Integer val : eventsPerSecondHistory) {
-            if (chartRow >= height - 2)
+        for (Map.Entry<String, EventSummary.TypeSummary> entry : summary.getTypes().entrySet()) {
+            if (row >= height - 2)
                 break;
-            String bar = new String(new char[Math.min(val, Math.max(0, (width - splitCol) - 10))]).replace('\0', '#');
-            tg.putString(splitCol + 2, chartRow++, String.format("%3d |%s", val, bar));
+            EventSummary.TypeSummary stats = entry.getValue();
+            Double avg = stats.getDurationAvgMs();
+            Double max = stats.getDurationMaxMs();
+            String topThread = stats.getTopThreads().isEmpty() ? "" : stats.getTopThreads().keySet().iterator().next();
+            String line = String.format("         | %-16s | %7d | %8s | %8s | %s",
+                    compact(entry.getKey().replace("jdk.", ""), 16), stats.getCount(),
+                    avg != null ? String.format("%.1fms", avg) : "", max != null ? String.format("%.1fms", max) : "",
+                    topThread);
+            tg.putString(2, row++, truncate(line, splitCol - 4));
         }
     }
 
@@ -624,8 +943,16 @@ public class TuiManager {
 
         tg.setForegroundColor(TextColor.ANSI.YELLOW);
         tg.putString(2, 10, "Correlated JFR Metrics:");
-        tg.putString(2, 11, "GC Events in last minute: " + gcCount);
-        tg.putString(2, 12, "Exceptions in last minute: " + exceptionCount);
+        Long gcWindow = gcLastMinute;
+        Long exceptionsWindow = exceptionsLastMinute;
+        if (gcWindow != null && exceptionsWindow != null) {
+            tg.putString(2, 11, "GC Events in last minute: " + gcWindow + " (total " + gcCount + ")");
+            tg.putString(2, 12, "Exceptions in last minute: " + exceptionsWindow + " (total " + exceptionCount + ")");
+        } else {
+            // Agent without windowed counts: only totals since start are known
+            tg.putString(2, 11, "GC Events since start: " + gcCount);
+            tg.putString(2, 12, "Exceptions since start: " + exceptionCount);
+        }
     }
 
     private void drawJsonModal(TextGraphics tg, int width, int height) {
@@ -645,35 +972,33 @@ public class TuiManager {
 
         // Get selected event
         List<JfrEvent> filtered = events.stream()
-                .filter(e -> {
-                    String type = e.getEvent() != null ? e.getEvent().toLowerCase() : "";
-
-                    if (!showGC && type.contains("garbagecollection"))
-                        return false;
-                    if (!showLocks && (type.contains("jmonitor") || type.contains("threadpark")))
-                        return false;
-                    if (!showExceptions && type.contains("exception"))
-                        return false;
-                    if (!showCPU && type.contains("cpuload"))
-                        return false;
-
-                    if (filterInput.length() == 0)
-                        return true;
-
-                    String f = filterInput.toString().toLowerCase();
-                    String thread = e.getThread() != null ? e.getThread().toLowerCase() : "";
-                    return type.contains(f) || thread.contains(f);
-                })
+                .filter(this::isVisible)
                 .collect(java.util.stream.Collectors.toList());
 
         if (selectedEventIndex >= 0 && selectedEventIndex < filtered.size()) {
             JfrEvent selected = filtered.get(selectedEventIndex);
             try {
-                String json = JsonUtils.toJson(selected);
-                String[] lines = json.split("\n");
+                // Frames are listed below, one per line
+                List<String> stack = selected.getStackTrace();
+                JfrEvent header = new JfrEvent(selected.getTs(), selected.getPid(), selected.getEvent(),
+                        selected.getThread(), selected.getDurationMs(), selected.getFields());
+                header.setStackId(selected.getStackId());
+                String json = JsonUtils.toJson(header);
+                List<String> lines = new ArrayList<>(List.of(json.split("\n")));
+                if (selected.getStackId() != null) {
+                    lines.add("");
+                    lines.add("Stack trace (id " + selected.getStackId() + "):");
+                    if (stack != null) {
+                        for (String frame : stack) {
+                            lines.add("  at " + frame);
+                        }
+                    } else {
+                        lines.add("  (not received)");
+                    }
+                }
                 tg.setForegroundColor(TextColor.ANSI.WHITE);
-                for (int i = 0; i < lines.length && i < modalH - 4; i++) {
-                    tg.putString(x + 2, y + 2 + i, truncate(lines[i], modalW - 4));
+                for (int i = 0; i < lines.size() && i < modalH - 4; i++) {
+                    tg.putString(x + 2, y + 2 + i, truncate(lines.get(i), modalW - 4));
                 }
             } catch (Exception e) {
                 tg.putString(x + 2, y + 2, "Error rendering JSON: " + e.getMessage());
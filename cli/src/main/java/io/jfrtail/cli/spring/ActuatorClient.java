@@ -58,7 +58,27 @@ public class ActuatorClient {
         return get("/env");
     }
 
+    /**
+     * JFR-Tail stats changed since {@code cursor} (the {@code cursor} of the
+     * previous response, 0 at first). Not cached, as every call has its own
+     * URL.
+     *
+     * @return null if the request failed
+     */
+    public String jfrStatsSince(long cursor) {
+        return fetch("/jfrtail?since=" + cursor);
+    }
+
     public String get(String path) {
+        String body = fetch(path);
+        if (body != null) {
+            cache.put(path, body); // Update cache
+            return body;
+        }
+        return cache.getOrDefault(path, "{}"); // Return stale data or empty
+    }
+
+    private String fetch(String path) {
         try {
             HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(URI.create(baseUrl + path))
@@ -71,13 +91,11 @@ public class ActuatorClient {
 
             HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
             if (response.statusCode() == 200) {
-                String body = response.body();
-                cache.put(path, body); // Update cache
-                return body;
+                return response.body();
             }
         } catch (Exception e) {
             // Ignore (poller will retry)
         }
-        return cache.getOrDefault(path, "{}"); // Return stale data or empty
+        return null;
     }
 }
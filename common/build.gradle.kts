@@ -5,4 +5,12 @@ plugins {
 dependencies {
     api("com.fasterxml.jackson.core:jackson-databind:2.15.2")
     api("com.fasterxml.jackson.datatype:jackson-datatype-jsr310:2.15.2")
+
+    testImplementation(platform("org.junit:junit-bom:5.10.1"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
@@ -0,0 +1,37 @@
+package io.jfrtail.common;
+
+/**
+ * Coarse kind of a JFR event type, as far as stats, alerts and the TUI care.
+ * Resolve it once per type (the agent keeps it in the type's plan) and switch
+ * on it per event, instead of matching the type name every time.
+ */
+public enum EventCategory {
+    GC,
+    HEAP_SUMMARY,
+    LOCK,
+    EXCEPTION,
+    CPU_LOAD,
+    OTHER;
+
+    public static EventCategory of(String type) {
+        if (type == null) {
+            return OTHER;
+        }
+        if (type.contains("GarbageCollection")) {
+            return GC;
+        }
+        if (type.contains("GCHeapSummary")) {
+            return HEAP_SUMMARY;
+        }
+        if (type.contains("JavaMonitor") || type.contains("ThreadPark")) {
+            return LOCK;
+        }
+        if (type.contains("ExceptionThrown")) {
+            return EXCEPTION;
+        }
+        if (type.contains("CPULoad")) {
+            return CPU_LOAD;
+        }
+        return OTHER;
+    }
+}
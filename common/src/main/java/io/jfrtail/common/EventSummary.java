@@ -0,0 +1,148 @@
+package io.jfrtail.common;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One second of events rolled up per event type by the agent. Stream clients
+ * in summary mode ({@code SUBSCRIBE mode=summary}) receive one of these per
+ * second instead of the events themselves.
+ * <p>
+ * Counts and duration sums are weighted, so they keep estimating raw volumes
+ * for sampled or rate limited types; min and max are of the events seen.
+ */
+public class EventSummary {
+    /** A JSONL summary line is this prefix, the summary object and a closing brace. */
+    public static final String JSONL_PREFIX = "{\"summary\":";
+
+    /** Start of the second, events are attributed by their end time. */
+    private Instant ts;
+    private long pid;
+
+    @JsonProperty("total_events")
+    private long totalEvents;
+
+    // Events that arrived after their second was sent, counted in this one instead
+    @JsonProperty("late_events")
+    private long lateEvents;
+
+    private Map<String, TypeSummary> types = new LinkedHashMap<>();
+
+    // Default constructor for Jackson
+    public EventSummary() {
+    }
+
+    public Instant getTs() {
+        return ts;
+    }
+
+    public void setTs(Instant ts) {
+        this.ts = ts;
+    }
+
+    public long getPid() {
+        return pid;
+    }
+
+    public void setPid(long pid) {
+        this.pid = pid;
+    }
+
+    public long getTotalEvents() {
+        return totalEvents;
+    }
+
+    public void setTotalEvents(long totalEvents) {
+        this.totalEvents = totalEvents;
+    }
+
+    public long getLateEvents() {
+        return lateEvents;
+    }
+
+    public void setLateEvents(long lateEvents) {
+        this.lateEvents = lateEvents;
+    }
+
+    public Map<String, TypeSummary> getTypes() {
+        return types;
+    }
+
+    public void setTypes(Map<String, TypeSummary> types) {
+        this.types = types;
+    }
+
+    public static class TypeSummary {
+        private long count;
+
+        @JsonProperty("duration_sum_ms")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Double durationSumMs;
+
+        @JsonProperty("duration_min_ms")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Double durationMinMs;
+
+        @JsonProperty("duration_max_ms")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Double durationMaxMs;
+
+        // Thread name -> weighted count, most frequent first
+        @JsonProperty("top_threads")
+        private Map<String, Long> topThreads = new LinkedHashMap<>();
+
+        // Default constructor for Jackson
+        public TypeSummary() {
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public Double getDurationSumMs() {
+            return durationSumMs;
+        }
+
+        public void setDurationSumMs(Double durationSumMs) {
+            this.durationSumMs = durationSumMs;
+        }
+
+        public Double getDurationMinMs() {
+            return durationMinMs;
+        }
+
+        public void setDurationMinMs(Double durationMinMs) {
+            this.durationMinMs = durationMinMs;
+        }
+
+        public Double getDurationMaxMs() {
+            return durationMaxMs;
+        }
+
+        public void setDurationMaxMs(Double durationMaxMs) {
+            this.durationMaxMs = durationMaxMs;
+        }
+
+        public Map<String, Long> getTopThreads() {
+            return topThreads;
+        }
+
+        public void setTopThreads(Map<String, Long> topThreads) {
+            this.topThreads = topThreads;
+        }
+
+        /** @return mean duration in ms, or null if the type has no duration. */
+        @JsonIgnore
+        public Double getDurationAvgMs() {
+            return durationSumMs != null && count > 0 ? durationSumMs / count : null;
+        }
+    }
+}
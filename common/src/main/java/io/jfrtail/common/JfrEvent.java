@@ -1,10 +1,15 @@
 package io.jfrtail.common;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 public class JfrEvent {
+    /** Last element of a stack trace cut at the configured depth. */
+    public static final String TRUNCATED_FRAME = "...";
+
     private Instant ts;
     private long pid;
     private String event;
@@ -15,6 +20,15 @@ public class JfrEvent {
 
     private Map<String, Object> fields;
 
+    // Stacks travel once per connection; events refer to them by id
+    @JsonProperty("stack_id")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long stackId;
+
+    @JsonProperty("stack_trace")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> stackTrace;
+
     // Default constructor for Jackson
     public JfrEvent() {
     }
@@ -75,4 +89,21 @@ public class JfrEvent {
     public void setFields(Map<String, Object> fields) {
         this.fields = fields;
     }
+
+    public Long getStackId() {
+        return stackId;
+    }
+
+    public void setStackId(Long stackId) {
+        this.stackId = stackId;
+    }
+
+    /** Frames as {@code class.method:line}, innermost first; null if not known. */
+    public List<String> getStackTrace() {
+        return stackTrace;
+    }
+
+    public void setStackTrace(List<String> stackTrace) {
+        this.stackTrace = stackTrace;
+    }
 }
@@ -1,9 +1,13 @@
 package io.jfrtail.common;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public class JsonUtils {
     private static final ObjectMapper mapper = new ObjectMapper()
             .registerModule(new JavaTimeModule())
@@ -17,6 +21,15 @@ public class JsonUtils {
         }
     }
 
+    /**
+     * A generator whose {@code writeObject} serializes like {@link #toJson},
+     * for documents written piece by piece instead of built in memory. Closing
+     * it does not close {@code out}.
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return mapper.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
     public static <T> T fromJson(String json, Class<T> clazz) {
         try {
             return mapper.readValue(json, clazz);
@@ -4,20 +4,33 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.Base64;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * reliable, zero-dependency JWT implementation for Java 8+.
  * Supports HS256 (HMAC-SHA256) only.
+ * <p>
+ * Every HTTP request and TCP login verifies a token, mostly the same few
+ * ones again and again (a dashboard polls with one token). Each thread keeps
+ * its {@link Mac} initialized for the last secret it used, and tokens that
+ * passed are remembered until their {@code exp}, so a repeated token costs
+ * one map lookup. Signatures are compared in constant time.
  */
 public class JwtLite {
 
     private static final String HEADER = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
-    private static final Pattern PAYLOAD_PATTERN = Pattern.compile("\"exp\":(\\d+)");
+    private static final String EXP_CLAIM = "\"exp\":";
+
+    // Tokens already verified, with the secret they were verified with; cleared when full
+    private static final int MAX_VERIFIED = 1024;
+    private static final Map<String, Verified> VERIFIED = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Signer> SIGNER = new ThreadLocal<>();
 
     /**
      * Generates a JWT token signed with the given secret.
@@ -53,52 +66,102 @@ public class JwtLite {
         if (token == null || secret == null)
             return false;
 
-        String[] parts = token.split("\\.");
-        if (parts.length != 3)
+        long now = Instant.now().getEpochSecond();
+        Verified verified = VERIFIED.get(token);
+        if (verified != null && verified.secret.equals(secret)) {
+            if (now <= verified.exp) {
+                return true;
+            }
+            VERIFIED.remove(token);
             return false;
+        }
 
-        String b64Header = parts[0];
-        String b64Payload = parts[1];
-        String signature = parts[2];
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0)
+            return false;
 
         // 1. Verify Signature
-        String expectedSignature = sign(b64Header + "." + b64Payload, secret);
-        if (!expectedSignature.equals(signature)) {
+        String expectedSignature = sign(token.substring(0, payloadEnd), secret);
+        String signature = token.substring(payloadEnd + 1);
+        if (!MessageDigest.isEqual(expectedSignature.getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII))) {
             return false;
         }
 
         // 2. Verify Expiration
+        long exp;
         try {
-            String payloadJson = new String(Base64.getUrlDecoder().decode(b64Payload), StandardCharsets.UTF_8);
-            Matcher matcher = PAYLOAD_PATTERN.matcher(payloadJson);
-            if (matcher.find()) {
-                long exp = Long.parseLong(matcher.group(1));
-                if (Instant.now().getEpochSecond() > exp) {
-                    return false; // Expired
-                }
-            } else {
-                return false; // No exp claim
-            }
+            String payloadJson = new String(Base64.getUrlDecoder().decode(token.substring(headerEnd + 1, payloadEnd)),
+                    StandardCharsets.UTF_8);
+            exp = parseExp(payloadJson);
         } catch (Exception e) {
             return false;
         }
+        if (exp < 0) {
+            return false; // No exp claim
+        }
+        if (now > exp) {
+            return false; // Expired
+        }
 
+        if (VERIFIED.size() >= MAX_VERIFIED) {
+            VERIFIED.clear();
+        }
+        VERIFIED.put(token, new Verified(secret, exp));
         return true;
     }
 
+    /** @return the {@code exp} claim, -1 if missing. */
+    private static long parseExp(String payloadJson) {
+        int start = payloadJson.indexOf(EXP_CLAIM);
+        if (start < 0) {
+            return -1;
+        }
+        int i = start + EXP_CLAIM.length();
+        int end = i;
+        while (end < payloadJson.length() && Character.isDigit(payloadJson.charAt(end))) {
+            end++;
+        }
+        return end > i ? Long.parseLong(payloadJson.substring(i, end)) : -1;
+    }
+
     private static String sign(String data, String secret) {
-        try {
-            Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secret_key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-            sha256_HMAC.init(secret_key);
-            byte[] hash = sha256_HMAC.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return base64UrlEncode(hash);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            throw new RuntimeException("Encryption Error", e);
+        Signer signer = SIGNER.get();
+        if (signer == null || !signer.secret.equals(secret)) {
+            signer = new Signer(secret);
+            SIGNER.set(signer);
         }
+        return base64UrlEncode(signer.mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
     }
 
     private static String base64UrlEncode(byte[] bytes) {
         return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
+
+    /** A {@link Mac} initialized with one secret; doFinal resets it for the next use. */
+    private static final class Signer {
+        final String secret;
+        final Mac mac;
+
+        Signer(String secret) {
+            this.secret = secret;
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new RuntimeException("Encryption Error", e);
+            }
+        }
+    }
+
+    private static final class Verified {
+        final String secret;
+        final long exp;
+
+        Verified(String secret, long exp) {
+            this.secret = secret;
+            this.exp = exp;
+        }
+    }
 }
@@ -0,0 +1,258 @@
+package io.jfrtail.common.wire;
+
+import io.jfrtail.common.EventSummary;
+import io.jfrtail.common.JfrEvent;
+import io.jfrtail.common.JsonUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static io.jfrtail.common.wire.BinaryProtocol.*;
+
+/**
+ * Decodes the binary stream written by {@link BinaryEventWriter} back into
+ * {@link JfrEvent}s. One instance per connection.
+ */
+public final class BinaryEventReader {
+    private final InputStream in;
+    private final long pid;
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private final List<String>[] dictionaries = new List[DICT_KINDS];
+    private final StackDictionary stacks = new StackDictionary();
+    private long base;
+    private Consumer<EventSummary> summaryListener;
+
+    private byte[] frame = new byte[256];
+    private int pos;
+    private int limit;
+
+    /**
+     * @param pid process id announced in the handshake; binary frames do not
+     *            repeat it on every event.
+     */
+    public BinaryEventReader(InputStream in, long pid) {
+        this.in = in;
+        this.pid = pid;
+        for (int i = 0; i < DICT_KINDS; i++) {
+            dictionaries[i] = new ArrayList<>();
+        }
+    }
+
+    /** Receives SUMMARY frames, from within {@link #next()}; without one they are skipped. */
+    public void setSummaryListener(Consumer<EventSummary> summaryListener) {
+        this.summaryListener = summaryListener;
+    }
+
+    /**
+     * @return the next event, or {@code null} at end of stream.
+     */
+    public JfrEvent next() throws IOException {
+        while (readFrame()) {
+            byte type = frame[pos++];
+            if (type == FRAME_DICT) {
+                byte kind = frame[pos++];
+                int id = (int) readVarLong();
+                String value = readString();
+                List<String> dictionary = dictionaries[kind];
+                if (id != dictionary.size()) {
+                    throw new IOException("Out of order dictionary entry " + id);
+                }
+                dictionary.add(value);
+            } else if (type == FRAME_BASE) {
+                base = readLong();
+            } else if (type == FRAME_STACK) {
+                readStack();
+            } else if (type == FRAME_SUMMARY) {
+                String json = readString();
+                if (summaryListener != null) {
+                    summaryListener.accept(JsonUtils.fromJson(json, EventSummary.class));
+                }
+            } else if (type == FRAME_EVENT) {
+                return readEvent();
+            } else {
+                throw new IOException("Unknown frame type " + type);
+            }
+        }
+        return null;
+    }
+
+    private JfrEvent readEvent() throws IOException {
+        JfrEvent event = new JfrEvent();
+        event.setPid(pid);
+        event.setEvent(readSymbol(DICT_TYPE));
+        event.setTs(Instant.ofEpochSecond(0, base + unzigzag(readVarLong())));
+        event.setThread(readSymbol(DICT_THREAD));
+        long duration = readVarLong();
+        if (duration > 0) {
+            event.setDurationMs((duration - 1) / 1_000_000.0);
+        }
+        long stack = readVarLong();
+        if (stack > 0) {
+            event.setStackId(stack - 1);
+            event.setStackTrace(stacks.get(stack - 1));
+        }
+        event.setFields(readFields());
+        return event;
+    }
+
+    private void readStack() throws IOException {
+        long id = readVarLong();
+        if (pos >= limit) {
+            throw new EOFException("Truncated frame");
+        }
+        boolean truncated = frame[pos++] != 0;
+        int count = (int) readVarLong();
+        List<String> frames = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            frames.add(readSymbol(DICT_FRAME));
+        }
+        if (truncated) {
+            frames.add(JfrEvent.TRUNCATED_FRAME);
+        }
+        stacks.define(id, frames);
+    }
+
+    private Map<String, Object> readFields() throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        while (true) {
+            long ref = readVarLong();
+            if (ref == 0) {
+                return fields;
+            }
+            String name = lookup(DICT_FIELD, ref);
+            byte tag = frame[pos++];
+            switch (tag) {
+                case VALUE_NULL:
+                    fields.put(name, null);
+                    break;
+                case VALUE_LONG:
+                    fields.put(name, unzigzag(readVarLong()));
+                    break;
+                case VALUE_DOUBLE:
+                    fields.put(name, Double.longBitsToDouble(readLong()));
+                    break;
+                case VALUE_TRUE:
+                    fields.put(name, Boolean.TRUE);
+                    break;
+                case VALUE_FALSE:
+                    fields.put(name, Boolean.FALSE);
+                    break;
+                case VALUE_STRING:
+                    fields.put(name, readString());
+                    break;
+                case VALUE_CLASS:
+                    fields.put(name, readSymbol(DICT_CLASS));
+                    break;
+                case VALUE_THREAD:
+                    fields.put(name, readSymbol(DICT_THREAD));
+                    break;
+                case VALUE_OBJECT:
+                    fields.put(name, readFields());
+                    break;
+                default:
+                    throw new IOException("Unknown value tag " + tag);
+            }
+        }
+    }
+
+    private String readSymbol(byte kind) throws IOException {
+        long ref = readVarLong();
+        if (ref == 0) {
+            return readString();
+        }
+        return lookup(kind, ref);
+    }
+
+    private String lookup(byte kind, long ref) throws IOException {
+        List<String> dictionary = dictionaries[kind];
+        if (ref > dictionary.size()) {
+            throw new IOException("Unknown dictionary reference " + ref);
+        }
+        return dictionary.get((int) ref - 1);
+    }
+
+    private boolean readFrame() throws IOException {
+        long length = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return false;
+                }
+                throw new EOFException();
+            }
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+        if (length <= 0 || length > MAX_FRAME) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        if (frame.length < length) {
+            frame = new byte[(int) Math.max(length, frame.length * 2L)];
+        }
+        int read = 0;
+        while (read < length) {
+            int n = in.read(frame, read, (int) length - read);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        pos = 0;
+        limit = (int) length;
+        return true;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (pos >= limit) {
+                throw new EOFException("Truncated frame");
+            }
+            byte b = frame[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    private long readLong() throws IOException {
+        if (pos + 8 > limit) {
+            throw new EOFException("Truncated frame");
+        }
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (frame[pos++] & 0xFF);
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        if (length < 0 || pos + length > limit) {
+            throw new EOFException("Truncated frame");
+        }
+        String value = new String(frame, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
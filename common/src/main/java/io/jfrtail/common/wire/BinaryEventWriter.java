@@ -0,0 +1,304 @@
+package io.jfrtail.common.wire;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.jfrtail.common.wire.BinaryProtocol.*;
+
+/**
+ * Per-connection encoder for the binary stream (see {@link BinaryProtocol}).
+ * Keeps the connection's dictionaries and timestamp base, so one instance must
+ * be used for exactly one connection, from one thread.
+ * <p>
+ * Encoding an event yields two parts: the event frame, which the sender may
+ * drop under backpressure, and the state frames (new dictionary entries, a new
+ * timestamp base) which must reach the client, in order, before any later event.
+ *
+ * <pre>
+ * writer.beginEvent(type, epochNanos, thread, durationNanos);
+ * writer.writeLong("gcId", 12);
+ * byte[] event = writer.endEvent();
+ * byte[] state = writer.takeStateFrames(); // null if nothing changed
+ * </pre>
+ */
+public final class BinaryEventWriter {
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private final Map<String, Integer>[] dictionaries = new Map[DICT_KINDS];
+    private final Buffer state = new Buffer(256);
+    private final Buffer out = new Buffer(512);
+    private final Buffer body = new Buffer(512);
+    private final StackDictionary stacks = new StackDictionary();
+    private long base;
+    private boolean hasBase;
+    private int depth;
+
+    public BinaryEventWriter() {
+        for (int i = 0; i < DICT_KINDS; i++) {
+            dictionaries[i] = new HashMap<>();
+        }
+    }
+
+    /**
+     * @param durationNanos event duration, or a negative value if the event has
+     *                      none.
+     */
+    public void beginEvent(String type, long epochNanos, String thread, long durationNanos) {
+        beginEvent(type, epochNanos, thread, durationNanos, -1);
+    }
+
+    /**
+     * @param stackId id of a stack already passed to {@link #defineStack}, or a
+     *                negative value for none.
+     */
+    public void beginEvent(String type, long epochNanos, String thread, long durationNanos, long stackId) {
+        out.reset();
+        body.reset();
+        depth = 0;
+        body.put(FRAME_EVENT);
+        symbol(DICT_TYPE, type);
+        long delta = epochNanos - base;
+        if (!hasBase || delta < -MAX_TIME_DELTA || delta > MAX_TIME_DELTA) {
+            rebase(epochNanos);
+            delta = 0;
+        }
+        body.putVarLong(zigzag(delta));
+        symbol(DICT_THREAD, thread);
+        body.putVarLong(durationNanos < 0 ? 0 : durationNanos + 1);
+        body.putVarLong(stackId < 0 ? 0 : stackId + 1);
+    }
+
+    /** @return true if the stack has to be passed to {@link #defineStack} before use. */
+    public boolean needsStack(long stackId) {
+        return stacks.needsDefinition(stackId);
+    }
+
+    /**
+     * Queues a stack definition as state. Must only be called when
+     * {@link #needsStack} said so.
+     *
+     * @param frames {@code class.method:line} strings, innermost first
+     */
+    public void defineStack(long stackId, String[] frames, boolean truncated) {
+        Buffer stack = new Buffer(16 + frames.length * 2);
+        stack.put(FRAME_STACK);
+        stack.putVarLong(stackId);
+        stack.put((byte) (truncated ? 1 : 0));
+        stack.putVarLong(frames.length);
+        for (String frame : frames) {
+            symbol(stack, DICT_FRAME, frame);
+        }
+        frame(state, stack);
+    }
+
+    public void writeNull(String name) {
+        field(name, VALUE_NULL);
+    }
+
+    public void writeLong(String name, long value) {
+        field(name, VALUE_LONG);
+        body.putVarLong(zigzag(value));
+    }
+
+    public void writeDouble(String name, double value) {
+        field(name, VALUE_DOUBLE);
+        body.putLong(Double.doubleToRawLongBits(value));
+    }
+
+    public void writeBoolean(String name, boolean value) {
+        field(name, value ? VALUE_TRUE : VALUE_FALSE);
+    }
+
+    public void writeString(String name, String value) {
+        if (value == null) {
+            writeNull(name);
+            return;
+        }
+        field(name, VALUE_STRING);
+        body.putString(value);
+    }
+
+    public void writeClass(String name, String className) {
+        if (className == null) {
+            writeNull(name);
+            return;
+        }
+        field(name, VALUE_CLASS);
+        symbol(DICT_CLASS, className);
+    }
+
+    public void writeThread(String name, String threadName) {
+        if (threadName == null) {
+            writeNull(name);
+            return;
+        }
+        field(name, VALUE_THREAD);
+        symbol(DICT_THREAD, threadName);
+    }
+
+    public void beginObject(String name) {
+        field(name, VALUE_OBJECT);
+        depth++;
+    }
+
+    public void endObject() {
+        if (depth == 0) {
+            throw new IllegalStateException("No object to end");
+        }
+        depth--;
+        body.putVarLong(0);
+    }
+
+    /**
+     * @return the event frame, ready to be written to the socket.
+     */
+    public byte[] endEvent() {
+        if (depth != 0) {
+            throw new IllegalStateException("Unclosed object");
+        }
+        body.putVarLong(0);
+        frame(out, body);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return state frames accumulated since the last call, or {@code null} if
+     *         there are none. They must be sent before the event frames that
+     *         followed them and must never be dropped.
+     */
+    public byte[] takeStateFrames() {
+        if (state.size == 0) {
+            return null;
+        }
+        byte[] frames = state.toByteArray();
+        state.reset();
+        return frames;
+    }
+
+    /**
+     * @param json an encoded {@link io.jfrtail.common.EventSummary}
+     * @return a SUMMARY frame. Uses no connection state, so any thread may call it.
+     */
+    public static byte[] summaryFrame(byte[] json) {
+        Buffer payload = new Buffer(json.length + 6);
+        payload.put(FRAME_SUMMARY);
+        payload.putVarLong(json.length);
+        payload.put(json, 0, json.length);
+        Buffer frame = new Buffer(payload.size + 5);
+        frame(frame, payload);
+        return frame.toByteArray();
+    }
+
+    private void field(String name, byte tag) {
+        symbol(DICT_FIELD, name);
+        body.put(tag);
+    }
+
+    private void symbol(byte kind, String value) {
+        symbol(body, kind, value);
+    }
+
+    /** Writes a symbol reference into {@code target}; new entries go to the state frames. */
+    private void symbol(Buffer target, byte kind, String value) {
+        if (value == null) {
+            value = "";
+        }
+        Map<String, Integer> dictionary = dictionaries[kind];
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            // Field names are always interned: an inline name would collide
+            // with the 0 that terminates a field list. They come from JFR
+            // metadata, so the set is small and bounded anyway.
+            if (kind != DICT_FIELD && dictionary.size() >= MAX_DICT_SIZE) {
+                target.putVarLong(0);
+                target.putString(value);
+                return;
+            }
+            id = dictionary.size();
+            dictionary.put(value, id);
+            Buffer dict = new Buffer(value.length() + 8);
+            dict.put(FRAME_DICT);
+            dict.put(kind);
+            dict.putVarLong(id);
+            dict.putString(value);
+            frame(state, dict);
+        }
+        target.putVarLong(id + 1L);
+    }
+
+    private void rebase(long epochNanos) {
+        base = epochNanos;
+        hasBase = true;
+        Buffer frame = new Buffer(9);
+        frame.put(FRAME_BASE);
+        frame.putLong(epochNanos);
+        frame(state, frame);
+    }
+
+    private static void frame(Buffer target, Buffer payload) {
+        target.putVarLong(payload.size);
+        target.put(payload.data, 0, payload.size);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /** Minimal growable byte buffer, reused across events. */
+    private static final class Buffer {
+        byte[] data;
+        int size;
+
+        Buffer(int initial) {
+            data = new byte[initial];
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        void put(byte b) {
+            ensure(1);
+            data[size++] = b;
+        }
+
+        void put(byte[] src, int offset, int length) {
+            ensure(length);
+            System.arraycopy(src, offset, data, size, length);
+            size += length;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int i = 56; i >= 0; i -= 8) {
+                data[size++] = (byte) (value >>> i);
+            }
+        }
+
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(bytes.length);
+            put(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.jfrtail.common.wire;
+
+/**
+ * Constants of the binary event stream.
+ *
+ * <pre>
+ * frame   := varint(length) payload
+ * payload := DICT  kind:byte id:varint utf8
+ *          | BASE  epochNanos:8 bytes
+ *          | STACK id:varint truncated:byte count:varint frame:sym*
+ *          | EVENT type:sym tsDelta:zigzag thread:sym duration:varint stack:varint fields
+ *          | SUMMARY json:utf8
+ * fields  := (name:ref value)* 0   -- field names are always interned
+ * ref     := varint(id + 1)
+ * value   := NULL | LONG zigzag | DOUBLE 8 bytes | TRUE | FALSE
+ *          | STRING utf8 | CLASS sym | THREAD sym | OBJECT fields
+ * sym     := varint(0) utf8         -- not interned
+ *          | varint(id + 1)         -- previously sent DICT entry
+ * utf8    := varint(length) bytes
+ * </pre>
+ *
+ * Timestamps are epoch nanoseconds sent as the difference to the last BASE
+ * frame; the writer emits a new base whenever the delta would exceed
+ * {@link #MAX_TIME_DELTA}. Deltas are not chained from event to event so that
+ * the agent can drop event frames under backpressure without corrupting the
+ * timestamps that follow. DICT and BASE frames are never dropped.
+ * <p>
+ * Duration is {@code nanos + 1}, 0 meaning "no duration"; likewise the stack
+ * is {@code id + 1} of a STACK frame sent earlier, 0 meaning none. Stack
+ * frames are {@code class.method:line} strings interned in their own
+ * dictionary. Dictionaries are per connection and per kind; STACK frames count
+ * as state like DICT frames (see {@link StackDictionary}).
+ * <p>
+ * SUMMARY frames carry a per-second {@link io.jfrtail.common.EventSummary} as
+ * JSON, the same object a JSONL client gets. They are stateless and sent once a
+ * second, so compactness does not matter there.
+ */
+public final class BinaryProtocol {
+    public static final byte FRAME_DICT = 1;
+    public static final byte FRAME_EVENT = 2;
+    public static final byte FRAME_BASE = 3;
+    public static final byte FRAME_STACK = 4;
+    public static final byte FRAME_SUMMARY = 5;
+
+    public static final byte DICT_TYPE = 0;
+    public static final byte DICT_THREAD = 1;
+    public static final byte DICT_CLASS = 2;
+    public static final byte DICT_FIELD = 3;
+    public static final byte DICT_FRAME = 4;
+    static final int DICT_KINDS = 5;
+
+    public static final byte VALUE_NULL = 0;
+    public static final byte VALUE_LONG = 1;
+    public static final byte VALUE_DOUBLE = 2;
+    public static final byte VALUE_TRUE = 3;
+    public static final byte VALUE_FALSE = 4;
+    public static final byte VALUE_STRING = 5;
+    public static final byte VALUE_CLASS = 6;
+    public static final byte VALUE_THREAD = 7;
+    public static final byte VALUE_OBJECT = 8;
+
+    /**
+     * Entries per dictionary before new names are sent inline instead. Does not
+     * apply to field names.
+     */
+    public static final int MAX_DICT_SIZE = 64 * 1024;
+
+    /** Largest timestamp delta (~134 ms) before a new base is sent; fits a 4 byte varint. */
+    public static final long MAX_TIME_DELTA = (1L << 27) - 1;
+
+    /** Largest frame a reader accepts. */
+    public static final int MAX_FRAME = 16 * 1024 * 1024;
+
+    private BinaryProtocol() {
+    }
+}
@@ -0,0 +1,28 @@
+package io.jfrtail.common.wire;
+
+/**
+ * Compression of the event stream, negotiated on the {@code AUTH} line next to
+ * the {@link WireFormat}: {@code AUTH <jwt> compress=deflate}. The agent
+ * confirms with {@code compress=deflate} in its {@code OK} reply; everything
+ * after that line is a single zlib stream, sync-flushed at the end of every
+ * batch, so the client only has to wrap the socket in an
+ * {@code InflaterInputStream}.
+ */
+public enum Compression {
+    NONE,
+    /** One deflate context per connection, kept across batches. */
+    DEFLATE;
+
+    public String key() {
+        return name().toLowerCase();
+    }
+
+    public static Compression parse(String value) {
+        for (Compression compression : values()) {
+            if (compression.key().equalsIgnoreCase(value)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression: " + value);
+    }
+}
@@ -0,0 +1,54 @@
+package io.jfrtail.common.wire;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-connection bookkeeping of stack traces, used on both ends of a stream.
+ * The agent ships each stack once per connection and afterwards refers to it
+ * by id; the sender asks {@link #needsDefinition} before every reference and
+ * the receiver records what it got with {@link #define}.
+ * <p>
+ * Both sides are bounded to {@link #MAX_STACKS} entries. When full, both clear
+ * themselves on the same new definition (definitions are never dropped, so
+ * they see the same sequence) and stacks are simply sent again when next used.
+ * Stack ids are never reused by the agent.
+ */
+public final class StackDictionary {
+    public static final int MAX_STACKS = 16 * 1024;
+
+    private final Set<Long> sent = new HashSet<>();
+    private final Map<Long, List<String>> received = new HashMap<>();
+
+    /**
+     * Sender side: marks the stack as sent.
+     *
+     * @return true if its definition must be sent before the event that uses it.
+     */
+    public boolean needsDefinition(long id) {
+        if (sent.contains(id)) {
+            return false;
+        }
+        if (sent.size() >= MAX_STACKS) {
+            sent.clear();
+        }
+        sent.add(id);
+        return true;
+    }
+
+    /** Receiver side: records a definition. */
+    public void define(long id, List<String> frames) {
+        if (!received.containsKey(id) && received.size() >= MAX_STACKS) {
+            received.clear();
+        }
+        received.put(id, List.copyOf(frames));
+    }
+
+    /** @return the frames of a defined stack, or null if unknown. */
+    public List<String> get(long id) {
+        return received.get(id);
+    }
+}
@@ -0,0 +1,233 @@
+package io.jfrtail.common.wire;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side event filter of one stream client, sent after {@code AUTH} and
+ * re-sendable at any time to replace the previous one:
+ *
+ * <pre>
+ * SUBSCRIBE types=jdk.GC*,jdk.JavaMonitorEnter exclude=*CPULoad threads=http-* minDuration=10
+ * </pre>
+ *
+ * All keys are optional; a bare {@code SUBSCRIBE} receives everything again.
+ * Patterns are case-insensitive globs ({@code *} and {@code ?}), lists are
+ * comma separated. {@code minDuration} is in milliseconds and only applies to
+ * events that have a duration. The agent does not acknowledge the command.
+ * <p>
+ * {@code mode=summary} replaces the events with one
+ * {@link io.jfrtail.common.EventSummary} per second; {@code types} and
+ * {@code exclude} then select the event types it lists, {@code threads} and
+ * {@code minDuration} do not apply. {@code mode=events} is the default.
+ * <p>
+ * {@link #matches} caches its per-type decision and is meant to be called from
+ * a single thread.
+ */
+public final class Subscription {
+    public static final String COMMAND = "SUBSCRIBE";
+
+    /** Matches every event. */
+    public static final Subscription ALL = new Subscription(List.of(), List.of(), List.of(), 0);
+
+    public static final String MODE_EVENTS = "events";
+    public static final String MODE_SUMMARY = "summary";
+
+    private static final int MAX_CACHED_TYPES = 1024;
+
+    private final List<String> types;
+    private final List<String> excludedTypes;
+    private final List<String> threads;
+    private final long minDurationNanos;
+    private final boolean summary;
+    private final Map<String, Boolean> typeDecisions = new HashMap<>();
+
+    public Subscription(List<String> types, List<String> excludedTypes, List<String> threads,
+            long minDurationNanos) {
+        this(types, excludedTypes, threads, minDurationNanos, false);
+    }
+
+    public Subscription(List<String> types, List<String> excludedTypes, List<String> threads,
+            long minDurationNanos, boolean summary) {
+        this.types = List.copyOf(types);
+        this.excludedTypes = List.copyOf(excludedTypes);
+        this.threads = List.copyOf(threads);
+        this.minDurationNanos = Math.max(0, minDurationNanos);
+        this.summary = summary;
+    }
+
+    /**
+     * Parses the arguments of a {@code SUBSCRIBE} line (without the command
+     * itself).
+     *
+     * @throws IllegalArgumentException on an unknown key or a bad value.
+     */
+    public static Subscription parse(String arguments) {
+        List<String> types = List.of();
+        List<String> excluded = List.of();
+        List<String> threads = List.of();
+        long minDurationNanos = 0;
+        boolean summary = false;
+        String trimmed = arguments == null ? "" : arguments.trim();
+        if (trimmed.isEmpty()) {
+            return ALL;
+        }
+        for (String part : trimmed.split("\\s+")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value: " + part);
+            }
+            String key = part.substring(0, eq);
+            String value = part.substring(eq + 1);
+            switch (key) {
+                case "types":
+                    types = splitList(value);
+                    break;
+                case "exclude":
+                    excluded = splitList(value);
+                    break;
+                case "threads":
+                    threads = splitList(value);
+                    break;
+                case "minDuration":
+                    minDurationNanos = (long) (Double.parseDouble(value) * 1_000_000);
+                    break;
+                case "mode":
+                    if (!value.equals(MODE_EVENTS) && !value.equals(MODE_SUMMARY)) {
+                        throw new IllegalArgumentException("Unknown mode: " + value);
+                    }
+                    summary = value.equals(MODE_SUMMARY);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown subscription key: " + key);
+            }
+        }
+        return new Subscription(types, excluded, threads, minDurationNanos, summary);
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> list = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isEmpty()) {
+                list.add(item);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /** The line a client sends to install this subscription. */
+    public String toCommand() {
+        StringBuilder sb = new StringBuilder(COMMAND);
+        if (!types.isEmpty()) {
+            sb.append(" types=").append(String.join(",", types));
+        }
+        if (!excludedTypes.isEmpty()) {
+            sb.append(" exclude=").append(String.join(",", excludedTypes));
+        }
+        if (!threads.isEmpty()) {
+            sb.append(" threads=").append(String.join(",", threads));
+        }
+        if (minDurationNanos > 0) {
+            sb.append(" minDuration=").append(minDurationNanos / 1_000_000.0);
+        }
+        if (summary) {
+            sb.append(" mode=").append(MODE_SUMMARY);
+        }
+        return sb.toString();
+    }
+
+    public boolean isAll() {
+        return types.isEmpty() && excludedTypes.isEmpty() && threads.isEmpty() && minDurationNanos == 0
+                && !summary;
+    }
+
+    /** @return true if the client wants per-second rollups instead of events. */
+    public boolean isSummary() {
+        return summary;
+    }
+
+    /** @return true if {@code types} and {@code exclude} let every type through. */
+    public boolean isAllTypes() {
+        return types.isEmpty() && excludedTypes.isEmpty();
+    }
+
+    /**
+     * @param durationNanos event duration, or a negative value if the event has
+     *                      none.
+     */
+    public boolean matches(String type, String thread, long durationNanos) {
+        if (durationNanos >= 0 && durationNanos < minDurationNanos) {
+            return false;
+        }
+        if (!matchesType(type)) {
+            return false;
+        }
+        return threads.isEmpty() || anyMatch(threads, thread);
+    }
+
+    /** Type part of {@link #matches}; also selects the types of a summary. */
+    public boolean matchesType(String type) {
+        if (types.isEmpty() && excludedTypes.isEmpty()) {
+            return true;
+        }
+        Boolean decision = typeDecisions.get(type);
+        if (decision == null) {
+            decision = (types.isEmpty() || anyMatch(types, type)) && !anyMatch(excludedTypes, type);
+            if (typeDecisions.size() < MAX_CACHED_TYPES) {
+                typeDecisions.put(type, decision);
+            }
+        }
+        return decision;
+    }
+
+    private static boolean anyMatch(List<String> patterns, String value) {
+        if (value == null) {
+            return false;
+        }
+        for (String pattern : patterns) {
+            if (glob(pattern, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Case-insensitive {@code *}/{@code ?} matching without regex. */
+    static boolean glob(String pattern, String value) {
+        int p = 0;
+        int v = 0;
+        int star = -1;
+        int mark = 0;
+        while (v < value.length()) {
+            char c = p < pattern.length() ? pattern.charAt(p) : 0;
+            if (c == '*') {
+                star = p++;
+                mark = v;
+            } else if (p < pattern.length() && (c == '?' || sameChar(c, value.charAt(v)))) {
+                p++;
+                v++;
+            } else if (star >= 0) {
+                p = star + 1;
+                v = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static boolean sameChar(char a, char b) {
+        return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
+
+    @Override
+    public String toString() {
+        return toCommand();
+    }
+}
@@ -0,0 +1,26 @@
+package io.jfrtail.common.wire;
+
+/**
+ * Encoding of the agent-to-CLI event stream, negotiated on the {@code AUTH}
+ * line: {@code AUTH <jwt> format=binary}. The agent confirms with
+ * {@code OK Welcome format=binary pid=<pid>}; anything else means JSONL.
+ */
+public enum WireFormat {
+    /** One JSON event per line (default). */
+    JSONL,
+    /** Length-prefixed frames, see {@link BinaryEventWriter}. */
+    BINARY;
+
+    public String key() {
+        return name().toLowerCase();
+    }
+
+    public static WireFormat parse(String value) {
+        for (WireFormat format : values()) {
+            if (format.key().equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown wire format: " + value);
+    }
+}
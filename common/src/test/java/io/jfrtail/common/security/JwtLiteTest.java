@@ -0,0 +1,82 @@
+package io.jfrtail.common.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtLiteTest {
+    private static final String SECRET = "s3cret";
+
+    @Test
+    void acceptsFreshToken() {
+        String token = JwtLite.generateToken(SECRET, 60);
+        assertTrue(JwtLite.verifyToken(token, SECRET));
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        assertFalse(JwtLite.verifyToken(JwtLite.generateToken(SECRET, -5), SECRET));
+    }
+
+    @Test
+    void rejectsWrongSecret() {
+        assertFalse(JwtLite.verifyToken(JwtLite.generateToken(SECRET, 60), "other"));
+    }
+
+    @Test
+    void rejectsBadSignature() {
+        String token = JwtLite.generateToken(SECRET, 60);
+        int dot = token.lastIndexOf('.');
+        char first = token.charAt(dot + 1);
+        String tampered = token.substring(0, dot + 1) + (first == 'A' ? 'B' : 'A') + token.substring(dot + 2);
+        assertFalse(JwtLite.verifyToken(tampered, SECRET));
+    }
+
+    @Test
+    void rejectsPayloadSignedForAnotherExp() {
+        String token = JwtLite.generateToken(SECRET, 60);
+        String[] parts = token.split("\\.");
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"exp\":99999999999,\"role\":\"admin\"}".getBytes(StandardCharsets.UTF_8));
+        assertFalse(JwtLite.verifyToken(parts[0] + "." + payload + "." + parts[2], SECRET));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertFalse(JwtLite.verifyToken(null, SECRET));
+        assertFalse(JwtLite.verifyToken("abc", SECRET));
+        assertFalse(JwtLite.verifyToken("a.b", SECRET));
+        assertFalse(JwtLite.verifyToken(JwtLite.generateToken(SECRET, 60) + ".extra", SECRET));
+        assertFalse(JwtLite.verifyToken(JwtLite.generateToken(SECRET, 60), null));
+    }
+
+    @Test
+    void rejectsEmptySecret() {
+        assertThrows(IllegalArgumentException.class, () -> JwtLite.generateToken("", 60));
+    }
+
+    @Test
+    void cachedTokenStillChecksSecret() {
+        String token = JwtLite.generateToken(SECRET, 60);
+        assertTrue(JwtLite.verifyToken(token, SECRET));
+        // Second call is a cache hit; a different secret must not ride on it
+        assertTrue(JwtLite.verifyToken(token, SECRET));
+        assertFalse(JwtLite.verifyToken(token, "other"));
+        assertTrue(JwtLite.verifyToken(token, SECRET));
+    }
+
+    @Test
+    void cachedTokenExpires() throws InterruptedException {
+        String token = JwtLite.generateToken(SECRET, 1);
+        assertTrue(JwtLite.verifyToken(token, SECRET));
+        // exp has a one second resolution and is inclusive
+        Thread.sleep(2100);
+        assertFalse(JwtLite.verifyToken(token, SECRET));
+        assertFalse(JwtLite.verifyToken(token, SECRET));
+    }
+}
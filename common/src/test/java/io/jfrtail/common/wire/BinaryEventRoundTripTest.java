@@ -0,0 +1,203 @@
+package io.jfrtail.common.wire;
+
+import io.jfrtail.common.EventSummary;
+import io.jfrtail.common.JfrEvent;
+import io.jfrtail.common.JsonUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryEventRoundTripTest {
+    private static final long PID = 4242;
+    private static final long T0 = 1_700_000_000_123_456_789L;
+
+    private final BinaryEventWriter writer = new BinaryEventWriter();
+    private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    /** Sends the frames the way the server does: state first, then the event. */
+    private void send(byte[] event) throws IOException {
+        byte[] state = writer.takeStateFrames();
+        if (state != null) {
+            stream.write(state);
+        }
+        stream.write(event);
+    }
+
+    private BinaryEventReader reader() {
+        return new BinaryEventReader(new ByteArrayInputStream(stream.toByteArray()), PID);
+    }
+
+    @Test
+    void fieldsOfEveryKind() throws IOException {
+        writer.beginEvent("jdk.ObjectAllocationSample", T0, "main", -1);
+        writer.writeLong("weight", 1024);
+        writer.writeLong("negative", -7);
+        writer.writeDouble("ratio", 0.25);
+        writer.writeBoolean("yes", true);
+        writer.writeBoolean("no", false);
+        writer.writeString("message", "caf\u00e9");
+        writer.writeString("missing", null);
+        writer.writeClass("objectClass", "java.lang.String");
+        writer.writeThread("eventThread", "worker-1");
+        writer.writeNull("none");
+        writer.beginObject("gcHeap");
+        writer.writeLong("used", 10);
+        writer.beginObject("inner");
+        writer.writeLong("deep", 3);
+        writer.endObject();
+        writer.endObject();
+        writer.writeLong("after", 1);
+        send(writer.endEvent());
+
+        BinaryEventReader reader = reader();
+        JfrEvent event = reader.next();
+        assertEquals("jdk.ObjectAllocationSample", event.getEvent());
+        assertEquals(PID, event.getPid());
+        assertEquals("main", event.getThread());
+        assertEquals(Instant.ofEpochSecond(0, T0), event.getTs());
+        assertNull(event.getDurationMs());
+        assertNull(event.getStackId());
+
+        Map<String, Object> fields = event.getFields();
+        assertEquals(List.of("weight", "negative", "ratio", "yes", "no", "message", "missing", "objectClass",
+                "eventThread", "none", "gcHeap", "after"), new ArrayList<>(fields.keySet()));
+        assertEquals(1024L, fields.get("weight"));
+        assertEquals(-7L, fields.get("negative"));
+        assertEquals(0.25, fields.get("ratio"));
+        assertEquals(Boolean.TRUE, fields.get("yes"));
+        assertEquals(Boolean.FALSE, fields.get("no"));
+        assertEquals("caf\u00e9", fields.get("message"));
+        assertNull(fields.get("missing"));
+        assertTrue(fields.containsKey("missing"));
+        assertEquals("java.lang.String", fields.get("objectClass"));
+        assertEquals("worker-1", fields.get("eventThread"));
+        assertNull(fields.get("none"));
+        assertEquals(Map.of("used", 10L, "inner", Map.of("deep", 3L)), fields.get("gcHeap"));
+        assertEquals(1L, fields.get("after"));
+
+        assertNull(reader.next());
+    }
+
+    @Test
+    void durationsAndTimestamps() throws IOException {
+        writer.beginEvent("jdk.ThreadPark", T0, "main", 0);
+        send(writer.endEvent());
+        writer.beginEvent("jdk.ThreadPark", T0 + 1_500_000, "main", 2_500_000);
+        send(writer.endEvent());
+        // Earlier than the base, within the delta range
+        writer.beginEvent("jdk.ThreadPark", T0 - 1000, "main", -1);
+        send(writer.endEvent());
+        // Far enough to need a new base, in both directions
+        writer.beginEvent("jdk.ThreadPark", T0 + 3_600_000_000_000L, "main", -1);
+        send(writer.endEvent());
+        writer.beginEvent("jdk.ThreadPark", T0, "main", -1);
+        send(writer.endEvent());
+
+        BinaryEventReader reader = reader();
+        JfrEvent zero = reader.next();
+        assertEquals(0.0, zero.getDurationMs());
+        JfrEvent parked = reader.next();
+        assertEquals(2.5, parked.getDurationMs());
+        assertEquals(Instant.ofEpochSecond(0, T0 + 1_500_000), parked.getTs());
+        assertEquals(Instant.ofEpochSecond(0, T0 - 1000), reader.next().getTs());
+        assertEquals(Instant.ofEpochSecond(0, T0 + 3_600_000_000_000L), reader.next().getTs());
+        assertEquals(Instant.ofEpochSecond(0, T0), reader.next().getTs());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void symbolsAreInternedOnce() throws IOException {
+        writer.beginEvent("jdk.JavaMonitorEnter", T0, "http-1", 10);
+        writer.writeClass("monitorClass", "java.lang.Object");
+        byte[] first = writer.endEvent();
+        byte[] firstState = writer.takeStateFrames();
+        writer.beginEvent("jdk.JavaMonitorEnter", T0, "http-1", 10);
+        writer.writeClass("monitorClass", "java.lang.Object");
+        byte[] second = writer.endEvent();
+
+        assertTrue(firstState.length > 0);
+        assertNull(writer.takeStateFrames());
+        assertEquals(first.length, second.length);
+
+        stream.write(firstState);
+        stream.write(first);
+        stream.write(second);
+        BinaryEventReader reader = reader();
+        for (int i = 0; i < 2; i++) {
+            JfrEvent event = reader.next();
+            assertEquals("jdk.JavaMonitorEnter", event.getEvent());
+            assertEquals("http-1", event.getThread());
+            assertEquals("java.lang.Object", event.getFields().get("monitorClass"));
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    void stacksAreDefinedOnceAndShared() throws IOException {
+        String[] frames = { "a.B.c:1", "a.B.d:2" };
+        assertTrue(writer.needsStack(7));
+        writer.defineStack(7, frames, true);
+        writer.beginEvent("jdk.JavaMonitorEnter", T0, "main", 1_000_000, 7);
+        send(writer.endEvent());
+        assertFalse(writer.needsStack(7));
+        writer.beginEvent("jdk.JavaMonitorEnter", T0, "main", 1_000_000, 7);
+        send(writer.endEvent());
+
+        BinaryEventReader reader = reader();
+        for (int i = 0; i < 2; i++) {
+            JfrEvent event = reader.next();
+            assertEquals(7L, event.getStackId());
+            assertEquals(List.of("a.B.c:1", "a.B.d:2", JfrEvent.TRUNCATED_FRAME), event.getStackTrace());
+            assertEquals(1.0, event.getDurationMs());
+        }
+    }
+
+    @Test
+    void summaryFramesGoToTheListener() throws IOException {
+        EventSummary summary = new EventSummary();
+        summary.setPid(PID);
+        summary.setTotalEvents(12);
+        summary.setTs(Instant.ofEpochSecond(1_700_000_000));
+        stream.write(BinaryEventWriter.summaryFrame(JsonUtils.toJson(summary).getBytes(StandardCharsets.UTF_8)));
+        writer.beginEvent("jdk.CPULoad", T0, "main", -1);
+        send(writer.endEvent());
+
+        List<EventSummary> received = new ArrayList<>();
+        BinaryEventReader reader = reader();
+        reader.setSummaryListener(received::add);
+        assertEquals("jdk.CPULoad", reader.next().getEvent());
+        assertEquals(1, received.size());
+        assertEquals(12, received.get(0).getTotalEvents());
+        assertEquals(summary.getTs(), received.get(0).getTs());
+    }
+
+    @Test
+    void unbalancedObjectsAreRejected() {
+        writer.beginEvent("x", T0, "main", -1);
+        assertThrows(IllegalStateException.class, writer::endObject);
+        writer.beginEvent("x", T0, "main", -1);
+        writer.beginObject("o");
+        assertThrows(IllegalStateException.class, writer::endEvent);
+    }
+
+    @Test
+    void eventBeforeItsDictionaryIsAnError() {
+        writer.beginEvent("jdk.CPULoad", T0, "main", -1);
+        byte[] event = writer.endEvent();
+        stream.write(event, 0, event.length);
+        assertThrows(IOException.class, () -> reader().next());
+    }
+}
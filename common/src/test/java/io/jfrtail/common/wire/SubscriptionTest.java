@@ -0,0 +1,99 @@
+package io.jfrtail.common.wire;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriptionTest {
+
+    @Test
+    void globLiteralAndWildcards() {
+        assertTrue(Subscription.glob("jdk.GarbageCollection", "jdk.GarbageCollection"));
+        assertFalse(Subscription.glob("jdk.GarbageCollection", "jdk.GarbageCollectionX"));
+        assertTrue(Subscription.glob("jdk.GC*", "jdk.GCHeapSummary"));
+        assertTrue(Subscription.glob("jdk.GC*", "jdk.GC"));
+        assertTrue(Subscription.glob("*CPULoad", "jdk.ThreadCPULoad"));
+        assertTrue(Subscription.glob("*", ""));
+        assertTrue(Subscription.glob("*Monitor*", "jdk.JavaMonitorEnter"));
+        assertFalse(Subscription.glob("*Monitor*", "jdk.ThreadPark"));
+        assertTrue(Subscription.glob("http-?", "http-1"));
+        assertFalse(Subscription.glob("http-?", "http-"));
+        assertFalse(Subscription.glob("http-?", "http-12"));
+        assertFalse(Subscription.glob("", "x"));
+    }
+
+    @Test
+    void globBacktracksAfterPartialMatch() {
+        assertTrue(Subscription.glob("*ab", "aab"));
+        assertTrue(Subscription.glob("a*b*c", "axbybzc"));
+        assertFalse(Subscription.glob("a*b*c", "axbybz"));
+    }
+
+    @Test
+    void globIgnoresCase() {
+        assertTrue(Subscription.glob("JDK.gc*", "jdk.GCHeapSummary"));
+        assertTrue(Subscription.glob("*cpuload", "jdk.CPULoad"));
+    }
+
+    @Test
+    void typesAndExclude() {
+        Subscription s = Subscription.parse("types=jdk.GC*,jdk.JavaMonitorEnter exclude=*Summary");
+        assertTrue(s.matches("jdk.GCPhasePause", "main", -1));
+        assertTrue(s.matches("jdk.JavaMonitorEnter", "main", -1));
+        assertFalse(s.matches("jdk.GCHeapSummary", "main", -1));
+        assertFalse(s.matches("jdk.ThreadPark", "main", -1));
+        // Decisions are cached per type; asking again gives the same answer
+        assertFalse(s.matchesType("jdk.GCHeapSummary"));
+        assertTrue(s.matchesType("jdk.GCPhasePause"));
+    }
+
+    @Test
+    void threadsAndMinDuration() {
+        Subscription s = Subscription.parse("threads=http-* minDuration=10");
+        assertTrue(s.matches("jdk.ThreadPark", "http-nio-1", 10_000_000));
+        assertFalse(s.matches("jdk.ThreadPark", "http-nio-1", 9_999_999));
+        assertFalse(s.matches("jdk.ThreadPark", "main", 20_000_000));
+        assertFalse(s.matches("jdk.ThreadPark", null, 20_000_000));
+        // minDuration only applies to events that have a duration
+        assertTrue(s.matches("jdk.CPULoad", "http-nio-1", -1));
+    }
+
+    @Test
+    void emptyArgumentsMatchEverything() {
+        assertSame(Subscription.ALL, Subscription.parse(""));
+        assertSame(Subscription.ALL, Subscription.parse(null));
+        assertTrue(Subscription.ALL.isAll());
+        assertTrue(Subscription.ALL.matches("anything", null, 0));
+    }
+
+    @Test
+    void summaryMode() {
+        Subscription s = Subscription.parse("mode=summary types=jdk.GC*");
+        assertTrue(s.isSummary());
+        assertFalse(s.isAll());
+        assertFalse(s.isAllTypes());
+        assertFalse(Subscription.parse("mode=events").isSummary());
+    }
+
+    @Test
+    void rejectsBadArguments() {
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("types"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("=x"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("colour=red"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("mode=fast"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("minDuration=soon"));
+    }
+
+    @Test
+    void toCommandRoundTrips() {
+        String command = "SUBSCRIBE types=jdk.GC*,jdk.JavaMonitorEnter exclude=*CPULoad threads=http-*"
+                + " minDuration=2.5 mode=summary";
+        Subscription s = Subscription.parse(command.substring(Subscription.COMMAND.length()));
+        assertEquals(command, s.toCommand());
+        assertEquals(Subscription.COMMAND, Subscription.ALL.toCommand());
+    }
+}
@@ -1,6 +1,7 @@
 package io.jfrtail.spring.autoconfigure;
 
 import io.jfrtail.agent.api.JfrTailMonitor;
+import io.jfrtail.agent.api.MonitorConfig;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -25,6 +26,26 @@ public class JfrTailAutoConfiguration {
         }
 
         try {
+            MonitorConfig config = JfrTailMonitor.getInstance().getConfig();
+            config.setClientQueueCapacity(properties.getClientQueueCapacity());
+            config.setOverflowPolicy(properties.getOverflowPolicy());
+            properties.getRateLimits().forEach(config::setRateLimit);
+            properties.getSample().forEach(config::setSampleProbability);
+            config.setGovernorEnabled(properties.isGovernorEnabled());
+            config.setOverheadBudgetPercent(properties.getOverheadBudgetPercent());
+            config.setStackDepth(properties.getStackDepth());
+            config.setBatchEvents(properties.getBatchEvents());
+            config.setBatchBytes(properties.getBatchBytes());
+            config.setBatchMillis(properties.getBatchMillis());
+            config.setHistorySize(properties.getHistorySize());
+            config.setTopK(properties.getTopK());
+            config.setTopHalfLifeSeconds(properties.getTopHalfLife());
+            config.setSnapshotIntervalMillis(properties.getSnapshotMillis());
+            config.setHttpGzip(properties.isHttpGzip());
+            config.setBundleJfrMinutes(properties.getBundleJfrMinutes());
+            config.setMaxSessions(properties.getMaxSessions());
+            config.setVirtualThreads(properties.isVirtualThreads());
+
             JfrTailMonitor.getInstance().start(
                     properties.getWebPort(),
                     properties.getTcpPort(),
@@ -4,6 +4,7 @@ import io.jfrtail.agent.api.JfrTailMonitor;
 import io.jfrtail.agent.api.StatsManager;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -12,9 +13,18 @@ import java.util.Map;
 @Endpoint(id = "jfrtail")
 public class JfrTailEndpoint {
 
+    /**
+     * The cached snapshot, or with {@code ?since=<cursor>} only what changed
+     * since a previous response's {@code cursor}.
+     */
     @ReadOperation
-    public Map<String, Object> jfrStats() {
+    public Map<String, Object> jfrStats(@Nullable Long since, @Nullable Integer limit) {
         StatsManager statsManager = JfrTailMonitor.getInstance().getStatsManager();
-        return statsManager.getSnapshot();
+        if (since == null) {
+            return statsManager.getCachedSnapshot();
+        }
+        int capacity = statsManager.getEventHistory().getCapacity();
+        int max = limit != null && limit > 0 ? Math.min(limit, capacity) : capacity;
+        return statsManager.getSnapshotSince(Math.max(0, since), max);
     }
 }
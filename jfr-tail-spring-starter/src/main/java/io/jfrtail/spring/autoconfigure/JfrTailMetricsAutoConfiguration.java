@@ -2,9 +2,12 @@ package io.jfrtail.spring.autoconfigure;
 
 import io.jfrtail.agent.api.JfrTailMonitor;
 import io.jfrtail.agent.api.StatsManager;
+import io.jfrtail.agent.pipeline.LatencyHistogram;
+import io.micrometer.core.instrument.FunctionTimer;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -12,6 +15,7 @@ import org.springframework.context.annotation.Configuration;
 
 import jakarta.annotation.PostConstruct;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 @AutoConfiguration(after = JfrTailAutoConfiguration.class)
 @ConditionalOnClass(MeterRegistry.class)
@@ -51,5 +55,33 @@ public class JfrTailMetricsAutoConfiguration {
         Gauge.builder("jfrtail.heap.used", stats, stats1 -> stats1.getHeapUsed() / (1024.0 * 1024.0))
                 .description("Current heap used in MB")
                 .register(registry);
+
+        bindHistogram("jfrtail.gc.pause.time", stats.getGcPauseHistogram(), Tags.empty(),
+                "Total pause time of each garbage collection");
+
+        // Types show up as their first timed event arrives
+        stats.addLatencyTypeListener(type -> bindDurationHistogram(stats, type));
+        stats.getDurationHistograms().keySet().forEach(type -> bindDurationHistogram(stats, type));
+    }
+
+    private void bindDurationHistogram(StatsManager stats, String type) {
+        bindHistogram("jfrtail.event.duration", stats.getDurationHistogram(type), Tags.of("type", type),
+                "Duration of JFR events, per event type");
+    }
+
+    /** Count and total as a timer, percentiles as gauges named like Micrometer's own. */
+    private void bindHistogram(String name, LatencyHistogram histogram, Tags tags, String description) {
+        FunctionTimer.builder(name, histogram, LatencyHistogram::getCount, LatencyHistogram::getSumNanos,
+                TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description(description)
+                .register(registry);
+        for (double phi : new double[] { 0.5, 0.9, 0.99 }) {
+            Gauge.builder(name + ".percentile", histogram, h -> h.percentileNanos(phi) / 1e9)
+                    .tags(tags.and(Tag.of("phi", String.valueOf(phi))))
+                    .baseUnit("seconds")
+                    .description(description)
+                    .register(registry);
+        }
     }
 }
@@ -1,7 +1,11 @@
 package io.jfrtail.spring.autoconfigure;
 
+import io.jfrtail.agent.server.OverflowPolicy;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "jfr-tail")
 public class JfrTailProperties {
     /**
@@ -34,6 +38,96 @@ public class JfrTailProperties {
      */
     private boolean statsEnabled = true;
 
+    /**
+     * Maximum number of events queued per TCP client before the overflow policy applies.
+     */
+    private int clientQueueCapacity = 4096;
+
+    /**
+     * What to do when a TCP client falls behind: drop-oldest, drop-newest or disconnect.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * Maximum events per second per event type, e.g. {@code rate-limits[jdk.ThreadPark]=100}.
+     */
+    private Map<String, Double> rateLimits = new LinkedHashMap<>();
+
+    /**
+     * Fraction of events kept per event type, e.g. {@code sample[jdk.JavaMonitorEnter]=0.1}.
+     */
+    private Map<String, Double> sample = new LinkedHashMap<>();
+
+    /**
+     * Whether to step the collector profile down automatically when the agent exceeds its overhead budget.
+     */
+    private boolean governorEnabled = false;
+
+    /**
+     * CPU the agent's own threads may use, in percent of one core, before the governor steps down.
+     */
+    private double overheadBudgetPercent = 5.0;
+
+    /**
+     * Frames kept per captured stack trace; 0 disables stack capture.
+     */
+    private int stackDepth = 16;
+
+    /**
+     * Events queued for a TCP client before they are written out (1 = every event at once).
+     */
+    private int batchEvents = 64;
+
+    /**
+     * Bytes queued for a TCP client before they are written out.
+     */
+    private int batchBytes = 16 * 1024;
+
+    /**
+     * Longest time, in milliseconds, an event waits in a batch before it is written out.
+     */
+    private long batchMillis = 5;
+
+    /**
+     * Recent events kept in memory for /jfr/history.
+     */
+    private int historySize = 500;
+
+    /**
+     * Entries in the top exception and blocked thread lists of /jfr/stats.
+     */
+    private int topK = 10;
+
+    /**
+     * Half-life, in seconds, of the top list counts; 0 never decays.
+     */
+    private long topHalfLife = 300;
+
+    /**
+     * How long, in ms, stats/history/metrics responses reuse one snapshot; 0 rebuilds per request.
+     */
+    private long snapshotMillis = 1000;
+
+    /**
+     * Gzip HTTP responses for clients that send Accept-Encoding: gzip.
+     */
+    private boolean httpGzip = true;
+
+    /**
+     * Minutes of JFR data kept on disk for /jfr/bundle?jfr=true; 0 disables the rolling recording.
+     */
+    private int bundleJfrMinutes = 0;
+
+    /**
+     * Max open TCP viewer connections, and max HTTP requests handled at once.
+     */
+    private int maxSessions = 16;
+
+    /**
+     * Handle HTTP requests on virtual threads (Java 21+, ignored on older JVMs).
+     */
+    private boolean virtualThreads = false;
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -81,4 +175,148 @@ public class JfrTailProperties {
     public void setStatsEnabled(boolean statsEnabled) {
         this.statsEnabled = statsEnabled;
     }
+
+    public int getClientQueueCapacity() {
+        return clientQueueCapacity;
+    }
+
+    public void setClientQueueCapacity(int clientQueueCapacity) {
+        this.clientQueueCapacity = clientQueueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public Map<String, Double> getRateLimits() {
+        return rateLimits;
+    }
+
+    public void setRateLimits(Map<String, Double> rateLimits) {
+        this.rateLimits = rateLimits;
+    }
+
+    public Map<String, Double> getSample() {
+        return sample;
+    }
+
+    public void setSample(Map<String, Double> sample) {
+        this.sample = sample;
+    }
+
+    public boolean isGovernorEnabled() {
+        return governorEnabled;
+    }
+
+    public void setGovernorEnabled(boolean governorEnabled) {
+        this.governorEnabled = governorEnabled;
+    }
+
+    public double getOverheadBudgetPercent() {
+        return overheadBudgetPercent;
+    }
+
+    public void setOverheadBudgetPercent(double overheadBudgetPercent) {
+        this.overheadBudgetPercent = overheadBudgetPercent;
+    }
+
+    public int getStackDepth() {
+        return stackDepth;
+    }
+
+    public void setStackDepth(int stackDepth) {
+        this.stackDepth = stackDepth;
+    }
+
+    public int getBatchEvents() {
+        return batchEvents;
+    }
+
+    public void setBatchEvents(int batchEvents) {
+        this.batchEvents = batchEvents;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(int batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public long getBatchMillis() {
+        return batchMillis;
+    }
+
+    public void setBatchMillis(long batchMillis) {
+        this.batchMillis = batchMillis;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+
+    public long getTopHalfLife() {
+        return topHalfLife;
+    }
+
+    public void setTopHalfLife(long topHalfLife) {
+        this.topHalfLife = topHalfLife;
+    }
+
+    public long getSnapshotMillis() {
+        return snapshotMillis;
+    }
+
+    public void setSnapshotMillis(long snapshotMillis) {
+        this.snapshotMillis = snapshotMillis;
+    }
+
+    public boolean isHttpGzip() {
+        return httpGzip;
+    }
+
+    public void setHttpGzip(boolean httpGzip) {
+        this.httpGzip = httpGzip;
+    }
+
+    public int getBundleJfrMinutes() {
+        return bundleJfrMinutes;
+    }
+
+    public void setBundleJfrMinutes(int bundleJfrMinutes) {
+        this.bundleJfrMinutes = bundleJfrMinutes;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
 }
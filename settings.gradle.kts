@@ -1,2 +1,2 @@
 rootProject.name = "jfr-tail"
-include("common", "agent", "cli", "sample", "spring-sample", "jfr-tail-spring-starter")
+include("common", "agent", "cli", "sample", "spring-sample", "jfr-tail-spring-starter", "benchmarks")